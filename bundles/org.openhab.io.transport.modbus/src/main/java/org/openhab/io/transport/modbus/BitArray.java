@@ -14,7 +14,7 @@ package org.openhab.io.transport.modbus;
 
 import java.util.BitSet;
 import java.util.Iterator;
-import java.util.stream.IntStream;
+import java.util.NoSuchElementException;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -118,7 +118,23 @@ public class BitArray implements Iterable<Boolean> {
 
     @Override
     public Iterator<Boolean> iterator() {
-        return IntStream.range(0, size()).mapToObj(i -> getBit(i)).iterator();
+        return new Iterator<Boolean>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < length;
+            }
+
+            @Override
+            public Boolean next() {
+                if (index >= length) {
+                    throw new NoSuchElementException();
+                }
+                // Boolean.valueOf returns the shared TRUE and FALSE instances
+                return Boolean.valueOf(wrapped.get(index++));
+            }
+        };
     }
 
     @Override
@@ -135,7 +151,9 @@ public class BitArray implements Iterable<Boolean> {
      */
     public String toBinaryString() {
         final StringBuilder buffer = new StringBuilder(size());
-        IntStream.range(0, size()).mapToObj(i -> getBit(i) ? '1' : '0').forEach(buffer::append);
+        for (int i = 0; i < length; i++) {
+            buffer.append(wrapped.get(i) ? '1' : '0');
+        }
         return buffer.toString();
     }
 }
@@ -14,8 +14,6 @@ package org.openhab.io.transport.modbus;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.charset.Charset;
 import java.util.Optional;
 
@@ -31,6 +29,7 @@ import org.openhab.core.types.Command;
  * Utilities for working with binary data.
  *
  * @author Sami Salonen - Initial contribution
+ * @author Karel Goderis - Decode registers without intermediate buffers
  */
 @NonNullByDefault
 public class ModbusBitUtilities {
@@ -111,107 +110,74 @@ public class ModbusBitUtilities {
         }
         switch (type) {
             case BIT:
-                return Optional
-                        .of(new DecimalType((registers.getRegister(index / 16).toUnsignedShort() >> (index % 16)) & 1));
+                return Optional.of(new DecimalType((registers.getRegisterValue(index / 16) >> (index % 16)) & 1));
             case INT8:
-                return Optional.of(new DecimalType(registers.getRegister(index / 2).getBytes()[1 - (index % 2)]));
+                return Optional
+                        .of(new DecimalType((byte) (registers.getRegisterValue(index / 2) >> (8 * (index % 2)))));
             case UINT8:
-                return Optional.of(new DecimalType(
-                        (registers.getRegister(index / 2).toUnsignedShort() >> (8 * (index % 2))) & 0xff));
-            case INT16: {
-                ByteBuffer buff = ByteBuffer.allocate(2);
-                buff.put(registers.getRegister(index).getBytes());
-                return Optional.of(new DecimalType(buff.order(ByteOrder.BIG_ENDIAN).getShort(0)));
-            }
+                return Optional
+                        .of(new DecimalType((registers.getRegisterValue(index / 2) >> (8 * (index % 2))) & 0xff));
+            case INT16:
+                return Optional.of(new DecimalType((short) registers.getRegisterValue(index)));
             case UINT16:
-                return Optional.of(new DecimalType(registers.getRegister(index).toUnsignedShort()));
-            case INT32: {
-                ByteBuffer buff = ByteBuffer.allocate(4);
-                buff.put(registers.getRegister(index).getBytes());
-                buff.put(registers.getRegister(index + 1).getBytes());
-                return Optional.of(new DecimalType(buff.order(ByteOrder.BIG_ENDIAN).getInt(0)));
-            }
-            case UINT32: {
-                ByteBuffer buff = ByteBuffer.allocate(8);
-                buff.position(4);
-                buff.put(registers.getRegister(index).getBytes());
-                buff.put(registers.getRegister(index + 1).getBytes());
-                return Optional.of(new DecimalType(buff.order(ByteOrder.BIG_ENDIAN).getLong(0)));
-            }
-            case FLOAT32: {
-                ByteBuffer buff = ByteBuffer.allocate(4);
-                buff.put(registers.getRegister(index).getBytes());
-                buff.put(registers.getRegister(index + 1).getBytes());
-                try {
-                    return Optional.of(new DecimalType(buff.order(ByteOrder.BIG_ENDIAN).getFloat(0)));
-                } catch (NumberFormatException e) {
-                    // floating point NaN or infinity encountered
-                    return Optional.empty();
-                }
-            }
-            case INT64: {
-                ByteBuffer buff = ByteBuffer.allocate(8);
-                buff.put(registers.getRegister(index).getBytes());
-                buff.put(registers.getRegister(index + 1).getBytes());
-                buff.put(registers.getRegister(index + 2).getBytes());
-                buff.put(registers.getRegister(index + 3).getBytes());
-                return Optional.of(new DecimalType(buff.order(ByteOrder.BIG_ENDIAN).getLong(0)));
-            }
-            case UINT64: {
-                ByteBuffer buff = ByteBuffer.allocate(8);
-                buff.put(registers.getRegister(index).getBytes());
-                buff.put(registers.getRegister(index + 1).getBytes());
-                buff.put(registers.getRegister(index + 2).getBytes());
-                buff.put(registers.getRegister(index + 3).getBytes());
+                return Optional.of(new DecimalType(registers.getRegisterValue(index)));
+            case INT32:
+                return Optional.of(new DecimalType(int32(registers, index, index + 1)));
+            case UINT32:
+                return Optional.of(new DecimalType(int32(registers, index, index + 1) & 0xffffffffL));
+            case FLOAT32:
+                return float32(int32(registers, index, index + 1));
+            case INT64:
+                return Optional.of(new DecimalType(int64(registers, index, index + 1, index + 2, index + 3)));
+            case UINT64:
                 return Optional.of(
-                        new DecimalType(new BigDecimal(new BigInteger(1, buff.order(ByteOrder.BIG_ENDIAN).array()))));
-            }
-            case INT32_SWAP: {
-                ByteBuffer buff = ByteBuffer.allocate(4);
-                buff.put(registers.getRegister(index + 1).getBytes());
-                buff.put(registers.getRegister(index).getBytes());
-                return Optional.of(new DecimalType(buff.order(ByteOrder.BIG_ENDIAN).getInt(0)));
-            }
-            case UINT32_SWAP: {
-                ByteBuffer buff = ByteBuffer.allocate(8);
-                buff.position(4);
-                buff.put(registers.getRegister(index + 1).getBytes());
-                buff.put(registers.getRegister(index).getBytes());
-                return Optional.of(new DecimalType(buff.order(ByteOrder.BIG_ENDIAN).getLong(0)));
-            }
-            case FLOAT32_SWAP: {
-                ByteBuffer buff = ByteBuffer.allocate(4);
-                buff.put(registers.getRegister(index + 1).getBytes());
-                buff.put(registers.getRegister(index).getBytes());
-                try {
-                    return Optional.of(new DecimalType(buff.order(ByteOrder.BIG_ENDIAN).getFloat(0)));
-                } catch (NumberFormatException e) {
-                    // floating point NaN or infinity encountered
-                    return Optional.empty();
-                }
-            }
-            case INT64_SWAP: {
-                ByteBuffer buff = ByteBuffer.allocate(8);
-                buff.put(registers.getRegister(index + 3).getBytes());
-                buff.put(registers.getRegister(index + 2).getBytes());
-                buff.put(registers.getRegister(index + 1).getBytes());
-                buff.put(registers.getRegister(index).getBytes());
-                return Optional.of(new DecimalType(buff.order(ByteOrder.BIG_ENDIAN).getLong(0)));
-            }
-            case UINT64_SWAP: {
-                ByteBuffer buff = ByteBuffer.allocate(8);
-                buff.put(registers.getRegister(index + 3).getBytes());
-                buff.put(registers.getRegister(index + 2).getBytes());
-                buff.put(registers.getRegister(index + 1).getBytes());
-                buff.put(registers.getRegister(index).getBytes());
+                        new DecimalType(unsigned64(int64(registers, index, index + 1, index + 2, index + 3))));
+            case INT32_SWAP:
+                return Optional.of(new DecimalType(int32(registers, index + 1, index)));
+            case UINT32_SWAP:
+                return Optional.of(new DecimalType(int32(registers, index + 1, index) & 0xffffffffL));
+            case FLOAT32_SWAP:
+                return float32(int32(registers, index + 1, index));
+            case INT64_SWAP:
+                return Optional.of(new DecimalType(int64(registers, index + 3, index + 2, index + 1, index)));
+            case UINT64_SWAP:
                 return Optional.of(
-                        new DecimalType(new BigDecimal(new BigInteger(1, buff.order(ByteOrder.BIG_ENDIAN).array()))));
-            }
+                        new DecimalType(unsigned64(int64(registers, index + 3, index + 2, index + 1, index))));
             default:
                 throw new IllegalArgumentException(type.getConfigValue());
         }
     }
 
+    /**
+     * 32 bit integer of two registers, most significant register first
+     */
+    private static int int32(ModbusRegisterArray registers, int high, int low) {
+        return (registers.getRegisterValue(high) << 16) | registers.getRegisterValue(low);
+    }
+
+    /**
+     * 64 bit integer of four registers, most significant register first
+     */
+    private static long int64(ModbusRegisterArray registers, int r1, int r2, int r3, int r4) {
+        return ((long) int32(registers, r1, r2) << 32) | (int32(registers, r3, r4) & 0xffffffffL);
+    }
+
+    private static BigDecimal unsigned64(long value) {
+        if (value >= 0) {
+            return BigDecimal.valueOf(value);
+        }
+        return new BigDecimal(BigInteger.valueOf(value & Long.MAX_VALUE).setBit(63));
+    }
+
+    private static Optional<DecimalType> float32(int bits) {
+        try {
+            return Optional.of(new DecimalType(Float.intBitsToFloat(bits)));
+        } catch (NumberFormatException e) {
+            // floating point NaN or infinity encountered
+            return Optional.empty();
+        }
+    }
+
     /**
      * Read data from registers and convert the result to StringType
      * Strings should start the the first byte of a register, but could
@@ -249,9 +215,9 @@ public class ModbusBitUtilities {
 
             byte chr;
             if (dest % 2 == 0) {
-                chr = (byte) ((registers.getRegister(src).getValue() >> 8));
+                chr = (byte) ((registers.getRegisterValue(src) >> 8));
             } else {
-                chr = (byte) (registers.getRegister(src).getValue() & 0xff);
+                chr = (byte) (registers.getRegisterValue(src) & 0xff);
                 src++;
             }
             if (chr == 0) {
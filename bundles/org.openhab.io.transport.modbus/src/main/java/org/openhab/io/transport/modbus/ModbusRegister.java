@@ -14,17 +14,16 @@ package org.openhab.io.transport.modbus;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 
-import net.wimpi.modbus.procimg.SimpleInputRegister;
-
 /**
  * Basic {@link ModbusRegister} implementation
  *
  * @author Sami Salonen - Initial contribution
+ * @author Karel Goderis - Primitive register value
  */
 @NonNullByDefault
 public class ModbusRegister {
 
-    private final SimpleInputRegister wrapped;
+    private final short value;
 
     /**
      * Constructs a new instance for bytes
@@ -33,7 +32,7 @@ public class ModbusRegister {
      * @param b2 the second (low) byte of the word.
      */
     public ModbusRegister(byte b1, byte b2) {
-        wrapped = new SimpleInputRegister(b1, b2);
+        value = (short) ((b1 << 8) | (b2 & 0xff));
     }
 
     /**
@@ -42,7 +41,7 @@ public class ModbusRegister {
      * @param val value representing register data. The <code>int</code> will be downcasted to <code>short</code>.
      */
     public ModbusRegister(int val) {
-        wrapped = new SimpleInputRegister(val);
+        value = (short) val;
     }
 
     /**
@@ -51,7 +50,7 @@ public class ModbusRegister {
      * @return byte array of length 2, high byte first.
      */
     public byte[] getBytes() {
-        return wrapped.toBytes();
+        return new byte[] { (byte) (value >> 8), (byte) value };
     }
 
     /**
@@ -60,7 +59,7 @@ public class ModbusRegister {
      * @return the register content as unsigned integer
      */
     public int getValue() {
-        return wrapped.getValue();
+        return value & 0xffff;
     }
 
     /**
@@ -69,7 +68,7 @@ public class ModbusRegister {
      * @return the register content as unsigned integer
      */
     public int toUnsignedShort() {
-        return wrapped.toUnsignedShort();
+        return value & 0xffff;
     }
 
     @Override
@@ -96,18 +95,22 @@ public class ModbusRegister {
      *
      */
     public StringBuffer appendHexString(StringBuffer buffer) {
-        byte[] bytes = getBytes();
-        for (int i = 0; i < 2; i++) {
-            byte b = bytes[i];
-            String byteHex = Long.toHexString(b & 0xff);
-            if ((b & 0xff) < 0x10) {
-                buffer.append('0');
-            }
-            buffer.append(byteHex);
-            if (i == 0) {
-                buffer.append(' ');
-            }
+        return appendHexString(buffer, value);
+    }
+
+    /**
+     * Appends the 16 bit register value as hex string to the given StringBuffer
+     *
+     */
+    static StringBuffer appendHexString(StringBuffer buffer, int registerValue) {
+        appendHexByte(buffer, registerValue >> 8).append(' ');
+        return appendHexByte(buffer, registerValue);
+    }
+
+    private static StringBuffer appendHexByte(StringBuffer buffer, int b) {
+        if ((b & 0xff) < 0x10) {
+            buffer.append('0');
         }
-        return buffer;
+        return buffer.append(Integer.toHexString(b & 0xff));
     }
 }
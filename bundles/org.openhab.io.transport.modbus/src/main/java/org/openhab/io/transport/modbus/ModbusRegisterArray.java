@@ -12,20 +12,30 @@
  */
 package org.openhab.io.transport.modbus;
 
+import java.nio.ByteBuffer;
 import java.util.Iterator;
-import java.util.stream.IntStream;
+import java.util.NoSuchElementException;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 
 /**
  * Immutable {@link ModbusRegisterArray} implementation
  *
+ * The register data is stored as bytes, two bytes per register with the high byte first, as it is transferred on the
+ * wire. {@link ModbusRegister} objects are only created when they are asked for, and {@link #slice(int, int)} returns
+ * views that share the data.
+ *
  * @author Sami Salonen - Initial contribution
+ * @author Karel Goderis - Byte array backed registers and slice views
  */
 @NonNullByDefault
 public class ModbusRegisterArray implements Iterable<ModbusRegister> {
 
-    private final ModbusRegister[] registers;
+    private final byte[] bytes;
+    /** Index of the high byte of the first register in bytes */
+    private final int offset;
+    /** Number of registers */
+    private final int length;
 
     /**
      * Construct plain <code>ModbusRegister[]</code> array from register values
@@ -47,7 +57,12 @@ public class ModbusRegisterArray implements Iterable<ModbusRegister> {
      * @param registers
      */
     public ModbusRegisterArray(ModbusRegister[] registers) {
-        this.registers = registers;
+        this(new byte[registers.length * 2], 0, registers.length);
+        for (int i = 0; i < registers.length; i++) {
+            int value = registers[i].getValue();
+            bytes[2 * i] = (byte) (value >> 8);
+            bytes[2 * i + 1] = (byte) value;
+        }
     }
 
     /**
@@ -57,7 +72,42 @@ public class ModbusRegisterArray implements Iterable<ModbusRegister> {
      * @return
      */
     public ModbusRegisterArray(int... registerValues) {
-        this(registersFromValues(registerValues));
+        this(new byte[registerValues.length * 2], 0, registerValues.length);
+        for (int i = 0; i < registerValues.length; i++) {
+            bytes[2 * i] = (byte) (registerValues[i] >> 8);
+            bytes[2 * i + 1] = (byte) registerValues[i];
+        }
+    }
+
+    /**
+     * Construct ModbusRegisterArrayImpl from register data. The array is not copied, and must not be modified
+     * afterwards.
+     *
+     * @param bytes register data, two bytes per register, high byte first
+     * @throws IllegalArgumentException if the number of bytes is odd
+     */
+    public ModbusRegisterArray(byte[] bytes) {
+        this(bytes, 0, checkedLength(bytes));
+    }
+
+    private ModbusRegisterArray(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    private static int checkedLength(byte[] bytes) {
+        if (bytes.length % 2 != 0) {
+            throw new IllegalArgumentException(
+                    String.format("Register data must have an even number of bytes, got %d", bytes.length));
+        }
+        return bytes.length / 2;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for length %d", index, length));
+        }
     }
 
     /**
@@ -70,7 +120,47 @@ public class ModbusRegisterArray implements Iterable<ModbusRegister> {
      * @throws IndexOutOfBoundsException if the index is out of bounds.
      */
     public ModbusRegister getRegister(int index) {
-        return registers[index];
+        checkIndex(index);
+        return new ModbusRegister(bytes[offset + 2 * index], bytes[offset + 2 * index + 1]);
+    }
+
+    /**
+     * Return the value of the register at the given index as unsigned 16 bit integer, like
+     * {@link ModbusRegister#getValue()}, without creating a register object.
+     *
+     * @param index the index of the register
+     * @return the register content as unsigned integer
+     * @throws IndexOutOfBoundsException if the index is out of bounds.
+     */
+    public int getRegisterValue(int index) {
+        checkIndex(index);
+        return ((bytes[offset + 2 * index] & 0xff) << 8) | (bytes[offset + 2 * index + 1] & 0xff);
+    }
+
+    /**
+     * Return a view of a range of the registers. The view shares the data of this instance.
+     *
+     * @param index the index of the first register of the view
+     * @param length the number of registers in the view
+     * @return registers index ... index + length - 1 of this instance
+     * @throws IndexOutOfBoundsException if the range is out of bounds.
+     */
+    public ModbusRegisterArray slice(int index, int length) {
+        if (index < 0 || length < 0 || index + length > this.length) {
+            throw new IndexOutOfBoundsException(
+                    String.format("Range [%d, %d) out of bounds for length %d", index, index + length, this.length));
+        }
+        return new ModbusRegisterArray(bytes, offset + 2 * index, length);
+    }
+
+    /**
+     * Return the register data as read-only buffer, two bytes per register, high byte first. The buffer shares the
+     * data of this instance.
+     *
+     * @return the register data
+     */
+    public ByteBuffer asByteBuffer() {
+        return ByteBuffer.wrap(bytes, offset, length * 2).slice().asReadOnlyBuffer();
     }
 
     /**
@@ -79,15 +169,15 @@ public class ModbusRegisterArray implements Iterable<ModbusRegister> {
      * @return
      */
     public int size() {
-        return registers.length;
+        return length;
     }
 
     @Override
     public String toString() {
-        if (registers.length == 0) {
+        if (length == 0) {
             return "ModbusRegisterArrayImpl(<empty>)";
         }
-        StringBuffer buffer = new StringBuffer(registers.length * 2).append("ModbusRegisterArrayImpl(");
+        StringBuffer buffer = new StringBuffer(length * 2).append("ModbusRegisterArrayImpl(");
         return appendHexString(buffer).append(')').toString();
     }
 
@@ -96,7 +186,22 @@ public class ModbusRegisterArray implements Iterable<ModbusRegister> {
      */
     @Override
     public Iterator<ModbusRegister> iterator() {
-        return IntStream.range(0, size()).mapToObj(i -> getRegister(i)).iterator();
+        return new Iterator<ModbusRegister>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < length;
+            }
+
+            @Override
+            public ModbusRegister next() {
+                if (index >= length) {
+                    throw new NoSuchElementException();
+                }
+                return getRegister(index++);
+            }
+        };
     }
 
     /**
@@ -120,12 +225,12 @@ public class ModbusRegisterArray implements Iterable<ModbusRegister> {
      *
      */
     public StringBuffer appendHexString(StringBuffer buffer) {
-        IntStream.range(0, size()).forEachOrdered(index -> {
-            getRegister(index).appendHexString(buffer);
-            if (index < size() - 1) {
+        for (int index = 0; index < length; index++) {
+            ModbusRegister.appendHexString(buffer, getRegisterValue(index));
+            if (index < length - 1) {
                 buffer.append(' ');
             }
-        });
+        }
         return buffer;
     }
 }
@@ -12,9 +12,9 @@
  */
 package org.openhab.io.transport.modbus.internal;
 
+import java.util.BitSet;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import org.eclipse.jdt.annotation.NonNull;
@@ -24,7 +24,6 @@ import org.openhab.io.transport.modbus.BitArray;
 import org.openhab.io.transport.modbus.ModbusReadCallback;
 import org.openhab.io.transport.modbus.ModbusReadFunctionCode;
 import org.openhab.io.transport.modbus.ModbusReadRequestBlueprint;
-import org.openhab.io.transport.modbus.ModbusRegister;
 import org.openhab.io.transport.modbus.ModbusRegisterArray;
 import org.openhab.io.transport.modbus.ModbusWriteCoilRequestBlueprint;
 import org.openhab.io.transport.modbus.ModbusWriteRegisterRequestBlueprint;
@@ -79,19 +78,23 @@ public class ModbusLibraryWrapper {
     }
 
     private static BitArray bitArrayFromBitVector(BitVector bitVector, int count) {
-        boolean[] bits = new boolean[count];
+        BitSet bits = new BitSet(count);
         for (int i = 0; i < count; i++) {
-            bits[i] = bitVector.getBit(i);
+            if (bitVector.getBit(i)) {
+                bits.set(i);
+            }
         }
-        return new BitArray(bits);
+        return new BitArray(bits, count);
     }
 
     private static ModbusRegisterArray modbusRegisterArrayFromInputRegisters(InputRegister[] inputRegisters) {
-        ModbusRegister[] registers = new ModbusRegister[inputRegisters.length];
+        byte[] bytes = new byte[inputRegisters.length * 2];
         for (int i = 0; i < inputRegisters.length; i++) {
-            registers[i] = new ModbusRegister(inputRegisters[i].getValue());
+            int value = inputRegisters[i].getValue();
+            bytes[2 * i] = (byte) (value >> 8);
+            bytes[2 * i + 1] = (byte) value;
         }
-        return new ModbusRegisterArray(registers);
+        return new ModbusRegisterArray(bytes);
     }
 
     /**
@@ -270,8 +273,11 @@ public class ModbusLibraryWrapper {
      * @return
      */
     public static Register[] convertRegisters(ModbusRegisterArray arr) {
-        return IntStream.range(0, arr.size()).mapToObj(i -> new SimpleInputRegister(arr.getRegister(i).getValue()))
-                .collect(Collectors.toList()).toArray(new Register[0]);
+        Register[] registers = new Register[arr.size()];
+        for (int i = 0; i < registers.length; i++) {
+            registers[i] = new SimpleInputRegister(arr.getRegisterValue(i));
+        }
+        return registers;
     }
 
     /**
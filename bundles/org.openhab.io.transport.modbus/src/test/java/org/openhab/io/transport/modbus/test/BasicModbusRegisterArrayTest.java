@@ -0,0 +1,84 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.io.transport.modbus.test;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+import org.openhab.io.transport.modbus.ModbusRegister;
+import org.openhab.io.transport.modbus.ModbusRegisterArray;
+
+/**
+ * @author Karel Goderis - Initial contribution
+ */
+public class BasicModbusRegisterArrayTest {
+
+    @Test
+    public void testConstructorsAgree() {
+        ModbusRegisterArray fromValues = new ModbusRegisterArray(0x1234, 0xFFFE, -1);
+        ModbusRegisterArray fromRegisters = new ModbusRegisterArray(
+                new ModbusRegister[] { new ModbusRegister((byte) 0x12, (byte) 0x34), new ModbusRegister(0xFFFE),
+                        new ModbusRegister(-1) });
+        ModbusRegisterArray fromBytes = new ModbusRegisterArray(
+                new byte[] { 0x12, 0x34, (byte) 0xFF, (byte) 0xFE, (byte) 0xFF, (byte) 0xFF });
+
+        for (ModbusRegisterArray registers : new ModbusRegisterArray[] { fromValues, fromRegisters, fromBytes }) {
+            assertThat(registers.size(), is(equalTo(3)));
+            assertThat(registers.getRegisterValue(0), is(equalTo(0x1234)));
+            assertThat(registers.getRegisterValue(1), is(equalTo(0xFFFE)));
+            assertThat(registers.getRegisterValue(2), is(equalTo(0xFFFF)));
+            assertThat(registers.getRegister(1).getValue(), is(equalTo(0xFFFE)));
+            assertThat(registers.toHexString(), is(equalTo("12 34 ff fe ff ff")));
+        }
+    }
+
+    @Test
+    public void testSlice() {
+        ModbusRegisterArray registers = new ModbusRegisterArray(1, 2, 3, 4, 5);
+        ModbusRegisterArray slice = registers.slice(1, 3);
+
+        assertThat(slice.size(), is(equalTo(3)));
+        assertThat(slice.getRegisterValue(0), is(equalTo(2)));
+        assertThat(slice.getRegisterValue(2), is(equalTo(4)));
+        assertThat(slice.slice(1, 1).getRegisterValue(0), is(equalTo(3)));
+        assertThat(slice.toHexString(), is(equalTo("00 02 00 03 00 04")));
+
+        int sum = 0;
+        for (ModbusRegister register : slice) {
+            sum += register.getValue();
+        }
+        assertThat(sum, is(equalTo(9)));
+
+        ByteBuffer buffer = slice.asByteBuffer();
+        assertThat(buffer.remaining(), is(equalTo(6)));
+        assertThat(buffer.getShort(0), is(equalTo((short) 2)));
+        assertThat(buffer.isReadOnly(), is(equalTo(true)));
+    }
+
+    @Test
+    public void testOutOfBounds() {
+        ModbusRegisterArray slice = new ModbusRegisterArray(1, 2, 3, 4, 5).slice(1, 3);
+        assertThrows(IndexOutOfBoundsException.class, () -> slice.getRegisterValue(3));
+        assertThrows(IndexOutOfBoundsException.class, () -> slice.getRegister(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> slice.slice(2, 2));
+    }
+
+    @Test
+    public void testOddNumberOfBytes() {
+        assertThrows(IllegalArgumentException.class, () -> new ModbusRegisterArray(new byte[] { 1, 2, 3 }));
+    }
+}
@@ -16,8 +16,8 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.UUID;
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -50,7 +50,7 @@ public abstract class AbstractBufferedPersistenceService<T> implements Persisten
 
     protected void resetWithBufferSize(int bufferSize) {
         int capacity = Math.max(1, bufferSize);
-        buffer = new ArrayBlockingQueue<>(capacity, true);
+        buffer = new LinkedBlockingQueue<>(capacity);
         writeImmediately = bufferSize == 0;
     }
 
@@ -60,6 +60,11 @@ public abstract class AbstractBufferedPersistenceService<T> implements Persisten
 
     protected abstract void flushBufferedData();
 
+    /**
+     * Requests the buffered data to be flushed asynchronously, without blocking the calling thread.
+     */
+    protected abstract void requestFlush();
+
     @Override
     public void store(Item item) {
         store(item, null);
@@ -76,7 +81,8 @@ public abstract class AbstractBufferedPersistenceService<T> implements Persisten
         if (!isReadyToStore()) {
             return;
         }
-        if (buffer == null) {
+        BlockingQueue<T> localBuffer = buffer;
+        if (localBuffer == null) {
             throw new IllegalStateException("Buffer not initialized with resetWithBufferSize. Bug?");
         }
         ZonedDateTime time = ZonedDateTime.ofInstant(Instant.ofEpochMilli(storeStart), ZoneId.systemDefault());
@@ -96,21 +102,20 @@ public abstract class AbstractBufferedPersistenceService<T> implements Persisten
             }
         } else {
             long bufferStart = System.currentTimeMillis();
-            boolean buffered = addToBuffer(persistenceItem);
+            boolean buffered = localBuffer.offer(persistenceItem);
             if (buffered) {
                 logger.debug("Buffered item {} in {} ms. Total time for store(): {} [{}]", realName,
                         System.currentTimeMillis() - bufferStart, System.currentTimeMillis() - storeStart, uuid);
             } else {
-                logger.debug(
-                        "Buffer is full. Writing buffered data immediately and trying again. Consider increasing bufferSize");
-                // Buffer is full, commit it immediately
-                flushBufferedData();
+                logger.debug("Buffer is full. Requesting a flush and trying again. Consider increasing bufferSize");
+                // Buffer is full, let the flusher commit it while waiting for room in the buffer
+                requestFlush();
                 boolean buffered2 = addToBuffer(persistenceItem);
                 if (buffered2) {
-                    logger.debug("Buffered item in {} ms (2nd try, flushed buffer in-between) [{}]",
+                    logger.debug("Buffered item in {} ms (2nd try, waited for the flush) [{}]",
                             System.currentTimeMillis() - bufferStart, uuid);
                 } else {
-                    // The unlikely case happened -- buffer got full again immediately
+                    // The flusher could not make room in time, e.g. because the writes are throttled
                     logger.warn("Buffering failed for the second time -- Too small bufferSize? Discarding data [{}]",
                             uuid);
                 }
@@ -0,0 +1,393 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.dynamodb.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.common.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.dynamodbv2.model.PutRequest;
+import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
+import com.amazonaws.services.dynamodbv2.model.ReturnConsumedCapacity;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+/**
+ * Writes {@link DynamoDBItem}s with BatchWriteItem requests of at most 25 items, running up to the configured number
+ * of requests concurrently. Items of different tables are combined into the same requests. If a table of a request
+ * does not exist, the tables of the request are written on their own, so that only the items of a table which cannot
+ * be created fail.
+ *
+ * The write rate adapts to the responses of DynamoDB: when a request is throttled, the rate is limited to half of the
+ * recently consumed write capacity, and the limit is raised again step by step while requests succeed. Unprocessed
+ * items are retried with exponential back-off and jitter.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+@NonNullByDefault
+public class DynamoDBBatchFlusher {
+    private final Logger logger = LoggerFactory.getLogger(DynamoDBBatchFlusher.class);
+
+    /**
+     * The maximum number of items in a single BatchWriteItem request, as defined by DynamoDB
+     */
+    public static final int MAX_BATCH_WRITE_ITEMS = 25;
+
+    private static final int MAX_RETRIES = 8;
+    private static final long BASE_BACKOFF_MILLIS = 50;
+    private static final long MAX_BACKOFF_MILLIS = 5000;
+    private static final double MIN_RATE = 1.0;
+    // write capacity units per second the rate limit is raised by after each successful request
+    private static final double RATE_INCREASE = 1.0;
+    private static final int LATENCY_SAMPLES = 1024;
+
+    /**
+     * Creates a missing table.
+     */
+    @FunctionalInterface
+    public interface TableCreator {
+        /**
+         * @param tableName the name of the table
+         * @param dtoClass the class of the items stored in the table
+         * @return whether the table exists and is active
+         */
+        boolean createTable(String tableName, Class<?> dtoClass);
+    }
+
+    private final AmazonDynamoDB client;
+    private final DynamoDBMapper mapper;
+    private final TableCreator tableCreator;
+    private final double fallbackRate;
+    private final ExecutorService executor;
+
+    // rate limiting, guarded by this
+    private double rate;
+    private long nextFreeNanos;
+    private double observedRate;
+    private long windowStartNanos = System.nanoTime();
+    private double windowUnits;
+
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int latencyCount;
+
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong throttledCount = new AtomicLong();
+
+    /**
+     * @param client the client to write with
+     * @param parallelism the maximum number of concurrent requests
+     * @param writeCapacityUnits the write capacity to limit the rate to when throttled before any capacity was
+     *            reported
+     * @param tableCreator creates tables that do not exist yet
+     */
+    public DynamoDBBatchFlusher(AmazonDynamoDB client, int parallelism, long writeCapacityUnits,
+            TableCreator tableCreator) {
+        this.client = client;
+        this.mapper = new DynamoDBMapper(client);
+        this.tableCreator = tableCreator;
+        this.fallbackRate = Math.max(MIN_RATE, writeCapacityUnits);
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism),
+                new NamedThreadFactory("dynamodbWriter"));
+    }
+
+    /**
+     * Writes the items and waits until all of them have been written or have failed.
+     *
+     * @param itemsByTable the items to write, by table name
+     * @return the items that have been written
+     */
+    public List<DynamoDBItem<?>> write(Map<String, ? extends List<DynamoDBItem<?>>> itemsByTable) {
+        List<Future<List<DynamoDBItem<?>>>> futures = new ArrayList<>();
+        Map<String, List<WriteRequest>> chunk = new HashMap<>();
+        Map<Map<String, AttributeValue>, DynamoDBItem<?>> chunkItems = new HashMap<>();
+        Map<String, Class<?>> classes = new HashMap<>();
+        int chunkSize = 0;
+        for (Entry<String, ? extends List<DynamoDBItem<?>>> entry : itemsByTable.entrySet()) {
+            String tableName = entry.getKey();
+            for (DynamoDBItem<?> item : entry.getValue()) {
+                classes.putIfAbsent(tableName, item.getClass());
+                Map<String, AttributeValue> attributes = convert(item);
+                chunkItems.put(attributes, item);
+                chunk.computeIfAbsent(tableName, t -> new ArrayList<>())
+                        .add(new WriteRequest(new PutRequest(attributes)));
+                if (++chunkSize == MAX_BATCH_WRITE_ITEMS) {
+                    futures.add(submit(chunk, chunkItems, classes, chunkSize));
+                    chunk = new HashMap<>();
+                    chunkItems = new HashMap<>();
+                    classes = new HashMap<>();
+                    chunkSize = 0;
+                }
+            }
+        }
+        if (chunkSize > 0) {
+            futures.add(submit(chunk, chunkItems, classes, chunkSize));
+        }
+        List<DynamoDBItem<?>> written = new ArrayList<>();
+        for (Future<List<DynamoDBItem<?>>> future : futures) {
+            try {
+                written.addAll(future.get());
+            } catch (ExecutionException e) {
+                logger.warn("Unexpected error while writing to DynamoDB", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return written;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, AttributeValue> convert(DynamoDBItem<?> item) {
+        return mapper.getTableModel((Class<Object>) item.getClass()).convert(item);
+    }
+
+    private Future<List<DynamoDBItem<?>>> submit(Map<String, List<WriteRequest>> requestItems,
+            Map<Map<String, AttributeValue>, DynamoDBItem<?>> items, Map<String, Class<?>> classes, int size) {
+        return executor.submit(() -> writeChunk(requestItems, items, classes, size));
+    }
+
+    /**
+     * @param items the items of the requests, by their attributes
+     * @return the items that have been written
+     */
+    private List<DynamoDBItem<?>> writeChunk(Map<String, List<WriteRequest>> requestItems,
+            Map<Map<String, AttributeValue>, DynamoDBItem<?>> items, Map<String, Class<?>> classes, int size) {
+        long start = System.nanoTime();
+        Map<String, List<WriteRequest>> unprocessed = writeRequests(requestItems, classes);
+        int failed = count(unprocessed);
+        if (failed > 0) {
+            failedCount.addAndGet(failed);
+            logger.warn("Failed to write {} of {} items to DynamoDB", failed, size);
+            for (List<WriteRequest> requests : unprocessed.values()) {
+                for (WriteRequest request : requests) {
+                    items.remove(request.getPutRequest().getItem());
+                }
+            }
+        }
+        recordLatency(System.nanoTime() - start);
+        return new ArrayList<>(items.values());
+    }
+
+    /**
+     * @return the requests that could not be written
+     */
+    private Map<String, List<WriteRequest>> writeRequests(Map<String, List<WriteRequest>> requestItems,
+            Map<String, Class<?>> classes) {
+        Map<String, List<WriteRequest>> unprocessed = requestItems;
+        boolean tableCreated = false;
+        int retry = 0;
+        while (!unprocessed.isEmpty()) {
+            int pending = count(unprocessed);
+            if (!acquire(pending)) {
+                break;
+            }
+            boolean throttled;
+            try {
+                BatchWriteItemResult result = client.batchWriteItem(new BatchWriteItemRequest()
+                        .withRequestItems(unprocessed).withReturnConsumedCapacity(ReturnConsumedCapacity.TOTAL));
+                unprocessed = result.getUnprocessedItems();
+                if (unprocessed == null) {
+                    unprocessed = Map.of();
+                }
+                writtenCount.addAndGet(pending - count(unprocessed));
+                throttled = !unprocessed.isEmpty();
+                consumed(result.getConsumedCapacity(), throttled);
+            } catch (ResourceNotFoundException e) {
+                if (unprocessed.size() > 1) {
+                    // the error does not tell which table is missing
+                    logger.debug("Table not found. Writing to tables {} one by one", unprocessed.keySet());
+                    Map<String, List<WriteRequest>> failed = new HashMap<>();
+                    for (Entry<String, List<WriteRequest>> table : unprocessed.entrySet()) {
+                        failed.putAll(writeRequests(Map.of(table.getKey(), table.getValue()), classes));
+                    }
+                    return failed;
+                }
+                String tableName = unprocessed.keySet().iterator().next();
+                if (tableCreated) {
+                    logger.warn("Table {} not found even after creating it: {}", tableName, e.getMessage());
+                    break;
+                }
+                logger.debug("Table {} not found. Trying to create it and to write again", tableName);
+                tableCreated = true;
+                Class<?> dtoClass = classes.get(tableName);
+                if (dtoClass == null || !tableCreator.createTable(tableName, dtoClass)) {
+                    logger.warn("Creation of table {} failed, not writing {} items", tableName, pending);
+                    break;
+                }
+                continue;
+            } catch (ProvisionedThroughputExceededException e) {
+                logger.debug("Write request throttled: {}", e.getMessage());
+                consumed(null, true);
+                throttled = true;
+            } catch (AmazonClientException e) {
+                logger.debug("Write request failed: {}", e.getMessage());
+                throttled = false;
+            }
+            if (unprocessed.isEmpty()) {
+                break;
+            }
+            if (throttled) {
+                throttledCount.incrementAndGet();
+            }
+            if (retry == MAX_RETRIES || !backoff(retry++)) {
+                break;
+            }
+        }
+        return unprocessed;
+    }
+
+    private static int count(Map<String, List<WriteRequest>> requestItems) {
+        return requestItems.values().stream().mapToInt(List::size).sum();
+    }
+
+    private boolean backoff(int retry) {
+        long max = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << retry);
+        return sleep(TimeUnit.MILLISECONDS.toNanos(ThreadLocalRandom.current().nextLong(max / 2, max + 1)));
+    }
+
+    private boolean sleep(long nanos) {
+        if (nanos <= 0) {
+            return true;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+            return true;
+        } catch (InterruptedException e) {
+            logger.debug("Interrupted while writing data!");
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Waits until the given number of write capacity units may be consumed, if the rate is limited. Each item is
+     * expected to consume one unit.
+     */
+    private boolean acquire(int units) {
+        long wait;
+        synchronized (this) {
+            if (rate <= 0) {
+                return true;
+            }
+            long now = System.nanoTime();
+            long start = Math.max(now, nextFreeNanos);
+            nextFreeNanos = start + (long) (units / rate * 1_000_000_000L);
+            wait = start - now;
+        }
+        return sleep(wait);
+    }
+
+    /**
+     * Adapts the rate limit to the outcome of a request: multiplicative decrease on throttling, additive increase on
+     * success.
+     */
+    private synchronized void consumed(@Nullable List<ConsumedCapacity> capacities,
+            boolean throttled) {
+        if (capacities != null) {
+            for (ConsumedCapacity capacity : capacities) {
+                Double units = capacity.getCapacityUnits();
+                if (units != null) {
+                    windowUnits += units;
+                }
+            }
+        }
+        long now = System.nanoTime();
+        long elapsed = now - windowStartNanos;
+        if (elapsed >= 1_000_000_000L) {
+            observedRate = windowUnits * 1_000_000_000L / elapsed;
+            windowUnits = 0;
+            windowStartNanos = now;
+        }
+        if (throttled) {
+            double base = observedRate > 0 ? observedRate : (rate > 0 ? rate : 2 * fallbackRate);
+            double newRate = Math.max(MIN_RATE, base / 2);
+            if (rate <= 0 || newRate < rate) {
+                rate = newRate;
+                logger.debug("Throttled by DynamoDB, limiting the write rate to {} units/s", rate);
+            }
+        } else if (rate > 0) {
+            rate += RATE_INCREASE;
+        }
+    }
+
+    private synchronized void recordLatency(long nanos) {
+        latencies[latencyCount++ % LATENCY_SAMPLES] = nanos;
+    }
+
+    /**
+     * @return the 99th percentile of the latency of the recent chunk writes, including retries, in milliseconds
+     */
+    public long getFlushLatencyP99() {
+        long[] samples;
+        synchronized (this) {
+            samples = Arrays.copyOf(latencies, Math.min(latencyCount, LATENCY_SAMPLES));
+        }
+        if (samples.length == 0) {
+            return 0;
+        }
+        Arrays.sort(samples);
+        return TimeUnit.NANOSECONDS.toMillis(samples[(int) Math.ceil(samples.length * 0.99) - 1]);
+    }
+
+    /**
+     * @return the current write rate limit in capacity units per second, or 0 if the rate is not limited
+     */
+    public synchronized double getRateLimit() {
+        return rate;
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(MAX_BACKOFF_MILLIS * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
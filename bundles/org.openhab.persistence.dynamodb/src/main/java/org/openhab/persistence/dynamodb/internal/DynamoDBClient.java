@@ -12,11 +12,13 @@
  */
 package org.openhab.persistence.dynamodb.internal;
 
+import org.eclipse.jdt.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
@@ -33,13 +35,29 @@ public class DynamoDBClient {
     private AmazonDynamoDB client;
 
     public DynamoDBClient(AWSCredentials credentials, Regions region) {
-        client = AmazonDynamoDBClientBuilder.standard().withRegion(region)
-                .withCredentials(new AWSStaticCredentialsProvider(credentials)).build();
+        this(credentials, region, null);
+    }
+
+    /**
+     * @param credentials the AWS credentials
+     * @param region the AWS region
+     * @param endpoint the endpoint to use instead of the one of the region, e.g. http://localhost:8000 for DynamoDB
+     *            Local, or null
+     */
+    public DynamoDBClient(AWSCredentials credentials, Regions region, @Nullable String endpoint) {
+        AmazonDynamoDBClientBuilder builder = AmazonDynamoDBClientBuilder.standard()
+                .withCredentials(new AWSStaticCredentialsProvider(credentials));
+        if (endpoint != null) {
+            builder.withEndpointConfiguration(new EndpointConfiguration(endpoint, region.getName()));
+        } else {
+            builder.withRegion(region);
+        }
+        client = builder.build();
         dynamo = new DynamoDB(client);
     }
 
     public DynamoDBClient(DynamoDBConfig clientConfig) {
-        this(clientConfig.getCredentials(), clientConfig.getRegion());
+        this(clientConfig.getCredentials(), clientConfig.getRegion(), clientConfig.getEndpoint());
     }
 
     public AmazonDynamoDB getDynamoClient() {
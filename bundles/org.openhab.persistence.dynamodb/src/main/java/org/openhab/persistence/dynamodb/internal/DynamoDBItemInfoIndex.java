@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.dynamodb.internal;
+
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.persistence.PersistenceItemInfo;
+
+/**
+ * Keeps track of the persisted items and the time range of their data. The index is updated with every item that is
+ * written or read, so that the item info can be provided without scanning the tables.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+@NonNullByDefault
+public class DynamoDBItemInfoIndex {
+
+    private static class DynamoDBItemInfo implements PersistenceItemInfo {
+        private final String name;
+        private final Date earliest;
+        private final Date latest;
+
+        private DynamoDBItemInfo(String name, Date earliest, Date latest) {
+            this.name = name;
+            this.earliest = earliest;
+            this.latest = latest;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public @Nullable Integer getCount() {
+            // unknown without scanning the table
+            return null;
+        }
+
+        @Override
+        public @Nullable Date getEarliest() {
+            return earliest;
+        }
+
+        @Override
+        public @Nullable Date getLatest() {
+            return latest;
+        }
+    }
+
+    private final Map<String, DynamoDBItemInfo> index = new ConcurrentHashMap<>();
+
+    /**
+     * Records that the item has data at the given time.
+     *
+     * @param name the name of the item
+     * @param time the time of the data
+     */
+    public void update(String name, ZonedDateTime time) {
+        Date date = Date.from(time.toInstant());
+        index.compute(name, (key, info) -> {
+            if (info == null) {
+                return new DynamoDBItemInfo(name, date, date);
+            }
+            if (date.before(info.earliest)) {
+                return new DynamoDBItemInfo(name, date, info.latest);
+            }
+            if (date.after(info.latest)) {
+                return new DynamoDBItemInfo(name, info.earliest, date);
+            }
+            return info;
+        });
+    }
+
+    public void update(DynamoDBItem<?> item) {
+        update(item.getName(), item.getTime());
+    }
+
+    public boolean contains(String name) {
+        return index.containsKey(name);
+    }
+
+    public Set<PersistenceItemInfo> getItemInfo() {
+        return new HashSet<>(index.values());
+    }
+
+    public void clear() {
+        index.clear();
+    }
+}
@@ -12,22 +12,26 @@
  */
 package org.openhab.persistence.dynamodb.internal;
 
+import java.time.Duration;
 import java.time.ZonedDateTime;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -55,19 +59,16 @@ import org.slf4j.LoggerFactory;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
-import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper.FailedBatch;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig.PaginationLoadingStrategy;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.PaginatedQueryList;
-import com.amazonaws.services.dynamodbv2.document.BatchWriteItemOutcome;
 import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
 import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndex;
 import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
 import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
 import com.amazonaws.services.dynamodbv2.model.TableDescription;
 import com.amazonaws.services.dynamodbv2.model.TableStatus;
-import com.amazonaws.services.dynamodbv2.model.WriteRequest;
 
 /**
  * This is the implementation of the DynamoDB {@link PersistenceService}. It persists item values
@@ -92,77 +93,10 @@ public class DynamoDBPersistenceService extends AbstractBufferedPersistenceServi
 
     protected static final String CONFIG_URI = "persistence:dynamodb";
 
-    private class ExponentialBackoffRetry implements Runnable {
-        private int retry;
-        private Map<String, List<WriteRequest>> unprocessedItems;
-        private @Nullable Exception lastException;
-
-        public ExponentialBackoffRetry(Map<String, List<WriteRequest>> unprocessedItems) {
-            this.unprocessedItems = unprocessedItems;
-        }
-
-        @Override
-        public void run() {
-            logger.debug("Error storing object to dynamo, unprocessed items: {}. Retrying with exponential back-off",
-                    unprocessedItems);
-            lastException = null;
-            while (!unprocessedItems.isEmpty() && retry < WAIT_MILLIS_IN_RETRIES.length) {
-                if (!sleep()) {
-                    // Interrupted
-                    return;
-                }
-                retry++;
-                try {
-                    BatchWriteItemOutcome outcome = DynamoDBPersistenceService.this.db.getDynamoDB()
-                            .batchWriteItemUnprocessed(unprocessedItems);
-                    unprocessedItems = outcome.getUnprocessedItems();
-                    lastException = null;
-                } catch (AmazonServiceException e) {
-                    if (e instanceof ResourceNotFoundException) {
-                        logger.debug(
-                                "DynamoDB query raised unexpected exception: {}. This might happen if table was recently created",
-                                e.getMessage());
-                    } else {
-                        logger.debug("DynamoDB query raised unexpected exception: {}.", e.getMessage());
-                    }
-                    lastException = e;
-                    continue;
-                }
-            }
-            if (unprocessedItems.isEmpty()) {
-                logger.debug("After {} retries successfully wrote all unprocessed items", retry);
-            } else {
-                logger.warn(
-                        "Even after retries failed to write some items. Last exception: {} {}, unprocessed items: {}",
-                        lastException == null ? "null" : lastException.getClass().getName(),
-                        lastException == null ? "null" : lastException.getMessage(), unprocessedItems);
-            }
-        }
-
-        private boolean sleep() {
-            try {
-                long sleepTime;
-                if (retry == 1 && lastException != null && lastException instanceof ResourceNotFoundException) {
-                    sleepTime = WAIT_ON_FIRST_RESOURCE_NOT_FOUND_MILLIS;
-                } else {
-                    sleepTime = WAIT_MILLIS_IN_RETRIES[retry];
-                }
-                Thread.sleep(sleepTime);
-                return true;
-            } catch (InterruptedException e) {
-                logger.debug("Interrupted while writing data!");
-                return false;
-            }
-        }
-
-        public Map<String, List<WriteRequest>> getUnprocessedItems() {
-            return unprocessedItems;
-        }
-    }
-
-    private static final int WAIT_ON_FIRST_RESOURCE_NOT_FOUND_MILLIS = 5000;
-    private static final int[] WAIT_MILLIS_IN_RETRIES = new int[] { 100, 100, 200, 300, 500 };
     private static final String DYNAMODB_THREADPOOL_NAME = "dynamodbPersistenceService";
+    private static final Duration TABLE_CACHE_TTL = Duration.ofMinutes(5);
+    // pause between the items queried to seed the item info index, each item costs two queries
+    private static final long SEED_INTERVAL_MILLIS = 100;
 
     private final ItemRegistry itemRegistry;
     private @Nullable DynamoDBClient db;
@@ -173,6 +107,16 @@ public class DynamoDBPersistenceService extends AbstractBufferedPersistenceServi
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1,
             new NamedThreadFactory(DYNAMODB_THREADPOOL_NAME));
     private @Nullable ScheduledFuture<?> writeBufferedDataFuture;
+    // seeds the item info index, separate from the scheduler so that it never delays the flushing
+    private final ExecutorService seeder = Executors
+            .newSingleThreadExecutor(new NamedThreadFactory(DYNAMODB_THREADPOOL_NAME + "Seeder"));
+    private @Nullable Future<?> seedItemInfoIndexFuture;
+    private @Nullable DynamoDBBatchFlusher flusher;
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private @Nullable DynamoDBTableCache tableCache;
+    private final Map<String, DynamoDBMapper> mappers = new ConcurrentHashMap<>();
+    private final DynamoDBItemInfoIndex itemInfoIndex = new DynamoDBItemInfoIndex();
 
     @Activate
     public DynamoDBPersistenceService(final @Reference ItemRegistry itemRegistry) {
@@ -210,6 +154,10 @@ public class DynamoDBPersistenceService extends AbstractBufferedPersistenceServi
             return;
         }
 
+        tableCache = new DynamoDBTableCache(db.getDynamoClient(), TABLE_CACHE_TTL);
+        flusher = new DynamoDBBatchFlusher(db.getDynamoClient(), dbConfig.getWriteParallelism(),
+                dbConfig.getWriteCapacityUnits(),
+                (tableName, dtoClass) -> createTable(getDBMapper(tableName), dtoClass));
         writeBufferedDataFuture = null;
         resetWithBufferSize(dbConfig.getBufferSize());
         long commitIntervalMillis = dbConfig.getBufferCommitIntervalMillis();
@@ -232,6 +180,7 @@ public class DynamoDBPersistenceService extends AbstractBufferedPersistenceServi
             }, 0, commitIntervalMillis, TimeUnit.MILLISECONDS);
         }
         isProperlyConfigured = true;
+        seedItemInfoIndexFuture = seeder.submit(this::seedItemInfoIndex);
         logger.debug("dynamodb persistence service activated");
     }
 
@@ -242,6 +191,15 @@ public class DynamoDBPersistenceService extends AbstractBufferedPersistenceServi
             writeBufferedDataFuture.cancel(false);
             writeBufferedDataFuture = null;
         }
+        Future<?> localSeedFuture = seedItemInfoIndexFuture;
+        if (localSeedFuture != null) {
+            localSeedFuture.cancel(true);
+            seedItemInfoIndexFuture = null;
+        }
+        // a deactivated instance is not activated again, so its seeder thread is not needed anymore
+        seeder.shutdownNow();
+        // write what is still buffered before the client is shut down
+        flushBufferedData();
         resetClient();
     }
 
@@ -295,10 +253,12 @@ public class DynamoDBPersistenceService extends AbstractBufferedPersistenceServi
             }
             tableName = request.getTableName();
             try {
-                db.getDynamoClient().describeTable(tableName);
-            } catch (ResourceNotFoundException e) {
-                // No table present, continue with creation
-                db.getDynamoClient().createTable(request);
+                // DynamoDB reported the table missing, so do not rely on the cache
+                tableCache.invalidate(tableName);
+                if (tableCache.describe(tableName) == null) {
+                    // No table present, continue with creation
+                    db.getDynamoClient().createTable(request);
+                }
             } catch (AmazonClientException e) {
                 logger.error("Table creation failed due to error in describeTable operation", e);
                 return false;
@@ -328,6 +288,7 @@ public class DynamoDBPersistenceService extends AbstractBufferedPersistenceServi
                 return false;
             }
             boolean success = TableStatus.ACTIVE.equals(TableStatus.fromValue(tableDescription.getTableStatus()));
+            tableCache.put(tableName, tableDescription);
             if (success) {
                 logger.debug("Creation of table '{}' successful, table status is now {}", tableName,
                         tableDescription.getTableStatus());
@@ -346,17 +307,29 @@ public class DynamoDBPersistenceService extends AbstractBufferedPersistenceServi
     }
 
     private void resetClient() {
+        DynamoDBBatchFlusher localFlusher = flusher;
+        if (localFlusher != null) {
+            localFlusher.shutdown();
+            flusher = null;
+        }
         if (db == null) {
             return;
         }
         db.shutdown();
         db = null;
+        tableCache = null;
+        mappers.clear();
+        itemInfoIndex.clear();
         dbConfig = null;
         tableNameResolver = null;
         isProperlyConfigured = false;
     }
 
     private DynamoDBMapper getDBMapper(String tableName) {
+        return mappers.computeIfAbsent(tableName, this::createDBMapper);
+    }
+
+    private DynamoDBMapper createDBMapper(String tableName) {
         try {
             DynamoDBMapperConfig mapperConfig = new DynamoDBMapperConfig.Builder()
                     .withTableNameOverride(new DynamoDBMapperConfig.TableNameOverride(tableName))
@@ -385,104 +358,105 @@ public class DynamoDBPersistenceService extends AbstractBufferedPersistenceServi
 
     @Override
     public Set<PersistenceItemInfo> getItemInfo() {
-        return Collections.emptySet();
+        return itemInfoIndex.getItemInfo();
     }
 
-    @Override
-    protected void flushBufferedData() {
-        if (buffer != null && buffer.isEmpty()) {
+    /**
+     * Adds the items of the registry that have data to the item info index, using two single item queries per item
+     * instead of scanning the tables. The items are queried one by one with a pause in between, so that the seeding
+     * does not consume much of the read capacity.
+     */
+    private void seedItemInfoIndex() {
+        Collection<Item> items;
+        try {
+            items = itemRegistry.getItems();
+        } catch (RuntimeException e) {
+            logger.debug("Could not get the items to build the item info index from: {}", e.getMessage());
             return;
         }
-        logger.debug("Writing buffered data. Buffer size: {}", buffer.size());
-
-        for (;;) {
-            Map<String, Deque<DynamoDBItem<?>>> itemsByTable = readBuffer();
-            // Write batch of data, one table at a time
-            for (Entry<String, Deque<DynamoDBItem<?>>> entry : itemsByTable.entrySet()) {
-                String tableName = entry.getKey();
-                Deque<DynamoDBItem<?>> batch = entry.getValue();
-                if (!batch.isEmpty()) {
-                    flushBatch(getDBMapper(tableName), batch);
+        for (Item item : items) {
+            if (!isProperlyConfigured || Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            if (itemInfoIndex.contains(item.getName())) {
+                continue;
+            }
+            try {
+                Class<DynamoDBItem<?>> dtoClass = AbstractDynamoDBItem.getDynamoItemClass(item.getClass());
+                String tableName = tableNameResolver.fromClass(dtoClass);
+                DynamoDBTableCache localTableCache = tableCache;
+                if (localTableCache == null || !localTableCache.isActive(tableName)) {
+                    continue;
                 }
+                DynamoDBMapper mapper = getDBMapper(tableName);
+                for (boolean ascending : new boolean[] { true, false }) {
+                    DynamoDBQueryExpression<DynamoDBItem<?>> queryExpression = new DynamoDBQueryExpression<>();
+                    queryExpression.withHashKeyValues(DynamoDBQueryUtils.getDynamoDBHashKey(dtoClass, item.getName()))
+                            .withScanIndexForward(ascending).withLimit(1);
+                    for (DynamoDBItem<?> dynamoItem : mapper.queryPage(dtoClass, queryExpression).getResults()) {
+                        itemInfoIndex.update(dynamoItem);
+                    }
+                }
+            } catch (IllegalArgumentException e) {
+                // not an item type that is persisted by this service
+                continue;
+            } catch (AmazonClientException e) {
+                logger.debug("Could not get the time range of item {}: {}", item.getName(), e.getMessage());
             }
-            if (buffer != null && buffer.isEmpty()) {
-                break;
+            try {
+                Thread.sleep(SEED_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
             }
         }
     }
 
-    private Map<String, Deque<DynamoDBItem<?>>> readBuffer() {
-        Map<String, Deque<DynamoDBItem<?>>> batchesByTable = new HashMap<>(2);
-        // Get batch of data
-        while (!buffer.isEmpty()) {
-            DynamoDBItem<?> dynamoItem = buffer.poll();
-            if (dynamoItem == null) {
-                break;
+    @Override
+    protected void flushBufferedData() {
+        synchronized (flushLock) {
+            flushRequested.set(false);
+            BlockingQueue<DynamoDBItem<?>> localBuffer = buffer;
+            DynamoDBBatchFlusher localFlusher = flusher;
+            if (localBuffer == null || localBuffer.isEmpty() || localFlusher == null) {
+                return;
             }
-            String tableName = tableNameResolver.fromItem(dynamoItem);
-            Deque<DynamoDBItem<?>> batch = batchesByTable.computeIfAbsent(tableName, new Function<>() {
-                @Override
-                public Deque<DynamoDBItem<?>> apply(@Nullable String t) {
-                    return new ArrayDeque<>();
+            logger.debug("Writing buffered data. Buffer size: {}", localBuffer.size());
+            long currentTimeMillis = System.currentTimeMillis();
+            while (!localBuffer.isEmpty()) {
+                // only items that have been written are known to have data
+                for (DynamoDBItem<?> dynamoItem : localFlusher.write(readBuffer(localBuffer))) {
+                    itemInfoIndex.update(dynamoItem);
                 }
-            });
-            batch.add(dynamoItem);
+            }
+            logger.debug(
+                    "Wrote buffered data in {} ms. Queue depth: {}, p99 flush latency: {} ms, written: {}, failed: {}, throttled requests: {}, rate limit: {} units/s",
+                    System.currentTimeMillis() - currentTimeMillis, localBuffer.size(),
+                    localFlusher.getFlushLatencyP99(), localFlusher.getWrittenCount(), localFlusher.getFailedCount(),
+                    localFlusher.getThrottledCount(), localFlusher.getRateLimit());
         }
-        return batchesByTable;
     }
 
-    /**
-     * Flush batch of data to DynamoDB
-     *
-     * @param mapper mapper associated with the batch
-     * @param batch batch of data to write to DynamoDB
-     */
-    private void flushBatch(DynamoDBMapper mapper, Deque<DynamoDBItem<?>> batch) {
-        long currentTimeMillis = System.currentTimeMillis();
-        List<FailedBatch> failed = mapper.batchSave(batch);
-        for (FailedBatch failedBatch : failed) {
-            if (failedBatch.getException() instanceof ResourceNotFoundException) {
-                // Table did not exist. Try again after creating table
-                retryFlushAfterCreatingTable(mapper, batch, failedBatch);
-            } else {
-                logger.debug("Batch failed with {}. Retrying next with exponential back-off",
-                        failedBatch.getException().getMessage());
-                new ExponentialBackoffRetry(failedBatch.getUnprocessedItems()).run();
+    @Override
+    protected void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flushBufferedData);
+            } catch (RejectedExecutionException e) {
+                flushRequested.set(false);
             }
         }
-        if (failed.isEmpty()) {
-            logger.debug("flushBatch ended with {} items in {} ms: {}", batch.size(),
-                    System.currentTimeMillis() - currentTimeMillis, batch);
-        } else {
-            logger.warn(
-                    "flushBatch ended with {} items in {} ms: {}. There were some failed batches that were retried -- check logs for ERRORs to see if writes were successful",
-                    batch.size(), System.currentTimeMillis() - currentTimeMillis, batch);
-        }
     }
 
-    /**
-     * Retry flushing data after creating table associated with mapper
-     *
-     * @param mapper mapper associated with the batch
-     * @param batch original batch of data. Used for logging and to determine table name
-     * @param failedBatch failed batch that should be retried
-     */
-    private void retryFlushAfterCreatingTable(DynamoDBMapper mapper, Deque<DynamoDBItem<?>> batch,
-            FailedBatch failedBatch) {
-        logger.debug("Table was not found. Trying to create table and try saving again");
-        if (createTable(mapper, batch.peek().getClass())) {
-            logger.debug("Table creation successful, trying to save again");
-            if (!failedBatch.getUnprocessedItems().isEmpty()) {
-                ExponentialBackoffRetry retry = new ExponentialBackoffRetry(failedBatch.getUnprocessedItems());
-                retry.run();
-                if (retry.getUnprocessedItems().isEmpty()) {
-                    logger.debug("Successfully saved items after table creation");
-                }
-            }
-        } else {
-            logger.warn("Table creation failed. Not storing some parts of batch: {}. Unprocessed items: {}", batch,
-                    failedBatch.getUnprocessedItems());
+    private Map<String, List<DynamoDBItem<?>>> readBuffer(BlockingQueue<DynamoDBItem<?>> localBuffer) {
+        List<DynamoDBItem<?>> items = new ArrayList<>(localBuffer.size());
+        localBuffer.drainTo(items);
+        Map<String, List<DynamoDBItem<?>>> itemsByTable = new HashMap<>(2);
+        for (DynamoDBItem<?> dynamoItem : items) {
+            itemsByTable.computeIfAbsent(tableNameResolver.fromItem(dynamoItem), t -> new ArrayList<>())
+                    .add(dynamoItem);
         }
+        return itemsByTable;
     }
 
     @Override
@@ -516,9 +490,17 @@ public class DynamoDBPersistenceService extends AbstractBufferedPersistenceServi
                 filter);
         @SuppressWarnings("rawtypes")
         final PaginatedQueryList<? extends DynamoDBItem> paginatedList;
+        DynamoDBTableCache localTableCache = tableCache;
         try {
+            if (localTableCache != null && localTableCache.describe(tableName) == null) {
+                logger.debug("Table {} does not exist (yet). Returning empty collection.", tableName);
+                return Collections.emptyList();
+            }
             paginatedList = mapper.query(dtoClass, queryExpression);
         } catch (AmazonServiceException e) {
+            if (e instanceof ResourceNotFoundException && localTableCache != null) {
+                localTableCache.invalidate(tableName);
+            }
             logger.error(
                     "DynamoDB query raised unexpected exception: {}. Returning empty collection. "
                             + "Status code 400 (resource not found) might occur if table was just created.",
@@ -535,6 +517,7 @@ public class DynamoDBPersistenceService extends AbstractBufferedPersistenceServi
                 break;
             }
             if (dynamoItem != null) {
+                itemInfoIndex.update(dynamoItem);
                 HistoricItem historicItem = dynamoItem.asHistoricItem(item);
                 logger.trace("Dynamo item {} converted to historic item: {}", item, historicItem);
                 historicItems.add(historicItem);
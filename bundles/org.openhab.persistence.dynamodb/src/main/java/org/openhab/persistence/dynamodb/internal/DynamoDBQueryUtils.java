@@ -50,7 +50,14 @@ public class DynamoDBQueryUtils {
         return queryExpression;
     }
 
-    private static DynamoDBItem<?> getDynamoDBHashKey(Class<? extends DynamoDBItem<?>> dtoClass, String itemName) {
+    /**
+     * Construct an item with only the hash key set, as used for querying
+     *
+     * @param dtoClass class of the item
+     * @param itemName name of the item
+     * @return DynamoDBItem with the given name
+     */
+    public static DynamoDBItem<?> getDynamoDBHashKey(Class<? extends DynamoDBItem<?>> dtoClass, String itemName) {
         DynamoDBItem<?> item;
         try {
             item = dtoClass.newInstance();
@@ -0,0 +1,106 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.dynamodb.internal;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.amazonaws.services.dynamodbv2.model.TableStatus;
+
+/**
+ * Caches the descriptions of the tables for a limited time, so that checking whether a table exists does not take a
+ * DescribeTable call every time. Tables that do not exist are cached as well.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+@NonNullByDefault
+public class DynamoDBTableCache {
+
+    private static class CachedTable {
+        private final @Nullable TableDescription description;
+        private final long expiresNanos;
+
+        private CachedTable(@Nullable TableDescription description, long expiresNanos) {
+            this.description = description;
+            this.expiresNanos = expiresNanos;
+        }
+    }
+
+    private final AmazonDynamoDB client;
+    private final long ttlNanos;
+    private final Map<String, CachedTable> tables = new ConcurrentHashMap<>();
+
+    public DynamoDBTableCache(AmazonDynamoDB client, Duration ttl) {
+        this.client = client;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * Returns the description of the table, from the cache if it has not expired yet.
+     *
+     * @param tableName the name of the table
+     * @return the description of the table, or null if the table does not exist
+     * @throws AmazonClientException if the table could not be described
+     */
+    public @Nullable TableDescription describe(String tableName) throws AmazonClientException {
+        CachedTable cached = tables.get(tableName);
+        if (cached != null && cached.expiresNanos - System.nanoTime() > 0) {
+            return cached.description;
+        }
+        TableDescription description;
+        try {
+            description = client.describeTable(tableName).getTable();
+        } catch (ResourceNotFoundException e) {
+            description = null;
+        }
+        put(tableName, description);
+        return description;
+    }
+
+    /**
+     * @param tableName the name of the table
+     * @return whether the table exists and is active
+     * @throws AmazonClientException if the table could not be described
+     */
+    public boolean isActive(String tableName) throws AmazonClientException {
+        TableDescription description = describe(tableName);
+        return description != null && TableStatus.ACTIVE.toString().equals(description.getTableStatus());
+    }
+
+    /**
+     * Caches the description of a table, e.g. after it has been created.
+     *
+     * @param tableName the name of the table
+     * @param description the description of the table, or null if the table does not exist
+     */
+    public void put(String tableName, @Nullable TableDescription description) {
+        tables.put(tableName, new CachedTable(description, System.nanoTime() + ttlNanos));
+    }
+
+    /**
+     * Removes a table from the cache, e.g. when DynamoDB reported it missing.
+     *
+     * @param tableName the name of the table
+     */
+    public void invalidate(String tableName) {
+        tables.remove(tableName);
+    }
+}
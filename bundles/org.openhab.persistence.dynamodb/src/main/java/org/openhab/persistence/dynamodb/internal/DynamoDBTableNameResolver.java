@@ -12,6 +12,9 @@
  */
 package org.openhab.persistence.dynamodb.internal;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * The DynamoDBTableNameResolver resolves DynamoDB table name for a given item.
  *
@@ -21,6 +24,7 @@ package org.openhab.persistence.dynamodb.internal;
 public class DynamoDBTableNameResolver {
 
     private final String tablePrefix;
+    private final Map<Class<?>, String> tableNamesByClass = new ConcurrentHashMap<>();
 
     public DynamoDBTableNameResolver(String tablePrefix) {
         this.tablePrefix = tablePrefix;
@@ -52,6 +56,10 @@ public class DynamoDBTableNameResolver {
      * @return
      */
     public String fromClass(Class<? extends DynamoDBItem<?>> clazz) {
+        return tableNamesByClass.computeIfAbsent(clazz, c -> resolveClass(clazz));
+    }
+
+    private String resolveClass(Class<? extends DynamoDBItem<?>> clazz) {
         DynamoDBItem<?> dummy;
         try {
             // Construct new instance of this class (assuming presense no-argument constructor)
@@ -182,6 +182,11 @@ public class BaseIntegrationTest {
         value = System.getProperty("DYNAMODBTEST_SECRET");
         config.put("secretKey", value != null ? value : "");
         config.put("tablePrefix", "dynamodb-integration-tests-");
+        value = System.getProperty("DYNAMODBTEST_ENDPOINT");
+        if (value != null) {
+            // e.g. DynamoDB Local
+            config.put("endpoint", value);
+        }
 
         // Disable buffering
         config.put("bufferSize", "0");
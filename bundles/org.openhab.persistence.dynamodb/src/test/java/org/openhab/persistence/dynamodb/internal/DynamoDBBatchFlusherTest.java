@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.dynamodb.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemRequest;
+import com.amazonaws.services.dynamodbv2.model.BatchWriteItemResult;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
+import com.amazonaws.services.dynamodbv2.model.WriteRequest;
+
+/**
+ *
+ * @author Karel Goderis - Initial contribution
+ *
+ */
+@NonNullByDefault
+public class DynamoDBBatchFlusherTest {
+
+    private @NonNullByDefault({}) AmazonDynamoDB client;
+    private @NonNullByDefault({}) DynamoDBBatchFlusher flusher;
+    private final List<String> createdTables = new ArrayList<>();
+
+    @BeforeEach
+    public void before() {
+        client = mock(AmazonDynamoDB.class);
+        flusher = new DynamoDBBatchFlusher(client, 2, 5, (tableName, dtoClass) -> createdTables.add(tableName));
+    }
+
+    @AfterEach
+    public void after() {
+        flusher.shutdown();
+    }
+
+    private static Map<String, List<DynamoDBItem<?>>> items(int numbers, int strings) {
+        List<DynamoDBItem<?>> numberItems = new ArrayList<>();
+        for (int i = 0; i < numbers; i++) {
+            numberItems.add(new DynamoDBBigDecimalItem("number", new BigDecimal(i), ZonedDateTime.now()));
+        }
+        List<DynamoDBItem<?>> stringItems = new ArrayList<>();
+        for (int i = 0; i < strings; i++) {
+            stringItems.add(new DynamoDBStringItem("string", "value" + i, ZonedDateTime.now()));
+        }
+        return Map.of("openhab-bigdecimal", numberItems, "openhab-string", stringItems);
+    }
+
+    private static int count(Map<String, List<WriteRequest>> requestItems) {
+        return requestItems.values().stream().mapToInt(List::size).sum();
+    }
+
+    @Test
+    public void testWriteInBatchesOf25() {
+        when(client.batchWriteItem(any(BatchWriteItemRequest.class))).thenReturn(new BatchWriteItemResult());
+
+        assertEquals(60, flusher.write(items(40, 20)).size());
+
+        ArgumentCaptor<BatchWriteItemRequest> captor = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+        verify(client, times(3)).batchWriteItem(captor.capture());
+        int total = 0;
+        for (BatchWriteItemRequest request : captor.getAllValues()) {
+            assertTrue(count(request.getRequestItems()) <= DynamoDBBatchFlusher.MAX_BATCH_WRITE_ITEMS);
+            total += count(request.getRequestItems());
+        }
+        assertEquals(60, total);
+        assertEquals(60, flusher.getWrittenCount());
+        assertEquals(0, flusher.getFailedCount());
+        assertEquals(0, flusher.getThrottledCount());
+        assertEquals(0, flusher.getRateLimit());
+    }
+
+    @Test
+    public void testUnprocessedItemsAreRetried() {
+        when(client.batchWriteItem(any(BatchWriteItemRequest.class))).thenAnswer(invocation -> {
+            BatchWriteItemRequest request = invocation.getArgument(0);
+            List<WriteRequest> requests = request.getRequestItems().get("openhab-bigdecimal");
+            if (requests.size() > 2) {
+                // the first request is processed partially
+                return new BatchWriteItemResult().withUnprocessedItems(
+                        Map.of("openhab-bigdecimal", requests.subList(requests.size() - 2, requests.size())));
+            }
+            return new BatchWriteItemResult();
+        });
+
+        flusher.write(Map.of("openhab-bigdecimal", items(10, 0).get("openhab-bigdecimal")));
+
+        ArgumentCaptor<BatchWriteItemRequest> captor = ArgumentCaptor.forClass(BatchWriteItemRequest.class);
+        verify(client, times(2)).batchWriteItem(captor.capture());
+        assertEquals(2, count(captor.getAllValues().get(1).getRequestItems()));
+        assertEquals(10, flusher.getWrittenCount());
+        assertEquals(0, flusher.getFailedCount());
+        assertTrue(flusher.getThrottledCount() >= 1);
+        assertTrue(flusher.getRateLimit() > 0);
+    }
+
+    @Test
+    public void testThrottlingLimitsTheRate() {
+        when(client.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenThrow(new ProvisionedThroughputExceededException("throttled"))
+                .thenReturn(new BatchWriteItemResult());
+
+        flusher.write(items(5, 0));
+
+        assertEquals(5, flusher.getWrittenCount());
+        assertEquals(1, flusher.getThrottledCount());
+        // limited to the configured 5 units/s, then raised by one unit/s by the successful retry
+        assertEquals(6.0, flusher.getRateLimit());
+        assertTrue(flusher.getFlushLatencyP99() >= 0);
+    }
+
+    @Test
+    public void testMissingTableIsCreated() {
+        when(client.batchWriteItem(any(BatchWriteItemRequest.class)))
+                .thenThrow(new ResourceNotFoundException("no table")).thenReturn(new BatchWriteItemResult());
+
+        flusher.write(items(0, 3));
+
+        assertTrue(createdTables.contains("openhab-string"));
+        assertEquals(3, flusher.getWrittenCount());
+        assertEquals(0, flusher.getFailedCount());
+    }
+
+    @Test
+    public void testFailedItemsAreNotReturned() {
+        flusher.shutdown();
+        flusher = new DynamoDBBatchFlusher(client, 2, 5, (tableName, dtoClass) -> false);
+        when(client.batchWriteItem(any(BatchWriteItemRequest.class))).thenAnswer(invocation -> {
+            BatchWriteItemRequest request = invocation.getArgument(0);
+            if (request.getRequestItems().containsKey("openhab-string")) {
+                throw new ResourceNotFoundException("no table");
+            }
+            return new BatchWriteItemResult();
+        });
+
+        List<DynamoDBItem<?>> written = flusher.write(Map.of("openhab-bigdecimal",
+                items(2, 0).get("openhab-bigdecimal"), "openhab-string", items(0, 2).get("openhab-string")));
+
+        // both tables end up in the same request, only the items of the missing table fail
+        assertEquals(2, written.size());
+        assertTrue(written.stream().allMatch(item -> "number".equals(item.getName())));
+        assertEquals(2, flusher.getWrittenCount());
+        assertEquals(2, flusher.getFailedCount());
+    }
+
+    @Test
+    public void testMissingTableOfMixedRequestIsCreated() {
+        when(client.batchWriteItem(any(BatchWriteItemRequest.class))).thenAnswer(invocation -> {
+            BatchWriteItemRequest request = invocation.getArgument(0);
+            if (request.getRequestItems().containsKey("openhab-string") && !createdTables.contains("openhab-string")) {
+                throw new ResourceNotFoundException("no table");
+            }
+            return new BatchWriteItemResult();
+        });
+
+        List<DynamoDBItem<?>> written = flusher.write(Map.of("openhab-bigdecimal",
+                items(2, 0).get("openhab-bigdecimal"), "openhab-string", items(0, 2).get("openhab-string")));
+
+        assertEquals(4, written.size());
+        assertEquals(List.of("openhab-string"), createdTables);
+        assertEquals(0, flusher.getFailedCount());
+    }
+}
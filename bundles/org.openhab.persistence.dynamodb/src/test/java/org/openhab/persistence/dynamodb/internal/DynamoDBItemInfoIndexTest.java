@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.dynamodb.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+import org.openhab.core.persistence.PersistenceItemInfo;
+
+/**
+ *
+ * @author Karel Goderis - Initial contribution
+ *
+ */
+@NonNullByDefault
+public class DynamoDBItemInfoIndexTest {
+
+    private static final ZonedDateTime TIME = ZonedDateTime.of(2020, 10, 1, 12, 0, 0, 0, ZoneId.of("UTC"));
+
+    @Test
+    public void testIndexKeepsTimeRange() {
+        DynamoDBItemInfoIndex index = new DynamoDBItemInfoIndex();
+        index.update(new DynamoDBBigDecimalItem("number", BigDecimal.ONE, TIME));
+        index.update(new DynamoDBBigDecimalItem("number", BigDecimal.TEN, TIME.plusHours(1)));
+        index.update(new DynamoDBBigDecimalItem("number", BigDecimal.ZERO, TIME.minusHours(1)));
+        index.update(new DynamoDBStringItem("string", "foo", TIME));
+
+        Set<PersistenceItemInfo> infos = index.getItemInfo();
+        assertEquals(2, infos.size());
+        PersistenceItemInfo info = infos.stream().filter(i -> "number".equals(i.getName())).findFirst().get();
+        assertEquals(Date.from(TIME.minusHours(1).toInstant()), info.getEarliest());
+        assertEquals(Date.from(TIME.plusHours(1).toInstant()), info.getLatest());
+        assertNull(info.getCount());
+        assertTrue(index.contains("string"));
+
+        index.clear();
+        assertTrue(index.getItemInfo().isEmpty());
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.dynamodb.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.DescribeTableResult;
+import com.amazonaws.services.dynamodbv2.model.ResourceNotFoundException;
+import com.amazonaws.services.dynamodbv2.model.TableDescription;
+import com.amazonaws.services.dynamodbv2.model.TableStatus;
+
+/**
+ *
+ * @author Karel Goderis - Initial contribution
+ *
+ */
+@NonNullByDefault
+public class DynamoDBTableCacheTest {
+
+    @Test
+    public void testTableCacheDescribesOnce() {
+        AmazonDynamoDB client = mock(AmazonDynamoDB.class);
+        when(client.describeTable("openhab-bigdecimal")).thenReturn(new DescribeTableResult()
+                .withTable(new TableDescription().withTableStatus(TableStatus.ACTIVE)));
+        when(client.describeTable("openhab-string")).thenThrow(new ResourceNotFoundException("no table"));
+        DynamoDBTableCache cache = new DynamoDBTableCache(client, Duration.ofMinutes(1));
+
+        assertTrue(cache.isActive("openhab-bigdecimal"));
+        assertTrue(cache.isActive("openhab-bigdecimal"));
+        assertNull(cache.describe("openhab-string"));
+        assertNull(cache.describe("openhab-string"));
+        verify(client, times(2)).describeTable(anyString());
+
+        cache.invalidate("openhab-string");
+        assertNull(cache.describe("openhab-string"));
+        verify(client, times(3)).describeTable(anyString());
+    }
+}
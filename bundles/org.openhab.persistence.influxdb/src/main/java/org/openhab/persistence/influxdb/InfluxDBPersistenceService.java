@@ -12,6 +12,9 @@
  */
 package org.openhab.persistence.influxdb;
 
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.Collections;
@@ -19,14 +22,23 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.OpenHAB;
+import org.openhab.core.common.ThreadPoolManager;
 import org.openhab.core.config.core.ConfigurableService;
+import org.openhab.core.items.GroupItem;
 import org.openhab.core.items.Item;
 import org.openhab.core.items.ItemRegistry;
 import org.openhab.core.items.MetadataRegistry;
+import org.openhab.core.library.items.DimmerItem;
+import org.openhab.core.library.items.NumberItem;
+import org.openhab.core.library.items.RollershutterItem;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.HistoricItem;
 import org.openhab.core.persistence.PersistenceItemInfo;
@@ -35,10 +47,13 @@ import org.openhab.core.persistence.QueryablePersistenceService;
 import org.openhab.core.persistence.strategy.PersistenceStrategy;
 import org.openhab.core.types.State;
 import org.openhab.persistence.influxdb.internal.FilterCriteriaQueryCreator;
+import org.openhab.persistence.influxdb.internal.InfluxDBAggregation;
 import org.openhab.persistence.influxdb.internal.InfluxDBConfiguration;
 import org.openhab.persistence.influxdb.internal.InfluxDBHistoricItem;
+import org.openhab.persistence.influxdb.internal.InfluxDBHistoricItemStream;
 import org.openhab.persistence.influxdb.internal.InfluxDBPersistentItemInfo;
 import org.openhab.persistence.influxdb.internal.InfluxDBRepository;
+import org.openhab.persistence.influxdb.internal.InfluxDBSpool;
 import org.openhab.persistence.influxdb.internal.InfluxDBStateConvertUtils;
 import org.openhab.persistence.influxdb.internal.InfluxPoint;
 import org.openhab.persistence.influxdb.internal.InfluxRow;
@@ -81,6 +96,12 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService {
 
     protected static final String CONFIG_URI = "persistence:influxdb";
 
+    private static final String SPOOL_FILE = OpenHAB.getUserDataFolder() + File.separator + "influxdb" + File.separator
+            + "spool.dat";
+    private static final int SPOOL_REPLAY_INTERVAL = 10;
+    // rows read at once by unpaged queries
+    private static final int QUERY_PAGE_SIZE = 10000;
+
     // External dependencies
     private final ItemRegistry itemRegistry;
     private final MetadataRegistry metadataRegistry;
@@ -92,6 +113,12 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService {
     private @NonNullByDefault({}) ItemToStorePointCreator itemToStorePointCreator;
     private @NonNullByDefault({}) InfluxDBRepository influxDBRepository;
 
+    private final ScheduledExecutorService scheduler = ThreadPoolManager.getScheduledPool(getClass().getSimpleName());
+    private @Nullable InfluxDBSpool spool;
+    private @Nullable ScheduledFuture<?> spoolJob;
+    // last known state of the database, points are spooled while it isn't available
+    private volatile boolean databaseAvailable;
+
     @Activate
     public InfluxDBPersistenceService(final @Reference ItemRegistry itemRegistry,
             final @Reference MetadataRegistry metadataRegistry) {
@@ -109,7 +136,13 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService {
         if (loadConfiguration(config)) {
             itemToStorePointCreator = new ItemToStorePointCreator(configuration, metadataRegistry);
             influxDBRepository = createInfluxDBRepository();
-            influxDBRepository.connect();
+            influxDBRepository.setWriteErrorListener(this::handleWriteError);
+            databaseAvailable = influxDBRepository.connect();
+            if (configuration.getSpoolMaxSize() > 0) {
+                spool = createSpool();
+                spoolJob = scheduler.scheduleWithFixedDelay(this::replaySpool, SPOOL_REPLAY_INTERVAL,
+                        SPOOL_REPLAY_INTERVAL, TimeUnit.SECONDS);
+            }
         } else {
             logger.error("Cannot load configuration, persistence service wont work");
         }
@@ -122,12 +155,36 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService {
         return RepositoryFactory.createRepository(configuration);
     }
 
+    // Visible for testing
+    protected @Nullable InfluxDBSpool createSpool() {
+        InfluxDBSpool createdSpool = new InfluxDBSpool(new File(SPOOL_FILE),
+                configuration.getSpoolMaxSize() * 1024L * 1024L, Duration.ofHours(configuration.getSpoolMaxAge()));
+        try {
+            createdSpool.open();
+            return createdSpool;
+        } catch (IOException e) {
+            logger.warn("Cannot open spool file {}, points will be lost while InfluxDB is not available: {}",
+                    SPOOL_FILE, e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Disconnect from database when service is deactivated
      */
     @Deactivate
     public void deactivate() {
         logger.debug("InfluxDB persistence service deactivated");
+        ScheduledFuture<?> currentSpoolJob = spoolJob;
+        if (currentSpoolJob != null) {
+            currentSpoolJob.cancel(false);
+            spoolJob = null;
+        }
+        InfluxDBSpool currentSpool = spool;
+        if (currentSpool != null) {
+            currentSpool.close();
+            spool = null;
+        }
         if (influxDBRepository != null) {
             influxDBRepository.disconnect();
             influxDBRepository = null;
@@ -199,16 +256,77 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService {
 
     @Override
     public void store(Item item, @Nullable String alias) {
-        if (influxDBRepository != null && influxDBRepository.isConnected()) {
-            InfluxPoint point = itemToStorePointCreator.convert(item, alias);
-            if (point != null) {
-                logger.trace("Storing item {} in InfluxDB point {}", item, point);
-                influxDBRepository.write(point);
+        InfluxDBSpool currentSpool = spool;
+        InfluxDBRepository repository = influxDBRepository;
+        if (currentSpool == null || repository == null) {
+            if (influxDBRepository != null && influxDBRepository.isConnected()) {
+                InfluxPoint point = itemToStorePointCreator.convert(item, alias);
+                if (point != null) {
+                    logger.trace("Storing item {} in InfluxDB point {}", item, point);
+                    influxDBRepository.write(point);
+                } else {
+                    logger.trace("Ignoring item {} as is cannot be converted to a InfluxDB point", item);
+                }
             } else {
-                logger.trace("Ignoring item {} as is cannot be converted to a InfluxDB point", item);
+                logger.debug("store ignored, InfluxDB is not yet connected");
             }
+            return;
+        }
+
+        InfluxPoint point = itemToStorePointCreator.convert(item, alias);
+        if (point == null) {
+            logger.trace("Ignoring item {} as is cannot be converted to a InfluxDB point", item);
+        } else if (repository.isConnected() && databaseAvailable && currentSpool.isEmpty()) {
+            logger.trace("Storing item {} in InfluxDB point {}", item, point);
+            try {
+                repository.write(point);
+            } catch (RuntimeException e) {
+                logger.debug("Storing point {} failed, spooling it: {}", point, e.getMessage());
+                databaseAvailable = false;
+                currentSpool.append(point);
+            }
+        } else {
+            // keep spooling until the spool has been replayed, so that points are written in order
+            logger.trace("Spooling item {} in InfluxDB point {}", item, point);
+            currentSpool.append(point);
+        }
+    }
+
+    /**
+     * Spools the points which could not be written in the background. Further points are spooled until the database
+     * is available again.
+     */
+    private void handleWriteError(List<InfluxPoint> points, Throwable error) {
+        databaseAvailable = false;
+        InfluxDBSpool currentSpool = spool;
+        if (currentSpool != null) {
+            logger.debug("Writing {} points failed, spooling them: {}", points.size(), error.getMessage());
+            points.forEach(currentSpool::append);
         } else {
-            logger.debug("store ignored, InfluxDB is not yet connected");
+            logger.warn("Writing {} points failed, they are lost: {}", points.size(), error.getMessage());
+        }
+    }
+
+    /**
+     * Checks the database and replays the spooled points once it is available again. The connection is checked in
+     * every cycle, as writes fail in the background without the client noticing that the server is gone.
+     */
+    private void replaySpool() {
+        InfluxDBSpool currentSpool = spool;
+        InfluxDBRepository repository = influxDBRepository;
+        if (currentSpool == null || repository == null) {
+            return;
+        }
+        try {
+            currentSpool.force();
+            databaseAvailable = repository.isConnected() ? repository.checkConnectionStatus() : repository.connect();
+            if (!databaseAvailable) {
+                logger.debug("InfluxDB is not available, {} points spooled", currentSpool.getPendingCount());
+            } else if (!currentSpool.isEmpty()) {
+                currentSpool.replay(repository::writeBatch, configuration.getSpoolBatchSize());
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Replaying spooled points failed: {}", e.getMessage());
         }
     }
 
@@ -222,17 +340,65 @@ public class InfluxDBPersistenceService implements QueryablePersistenceService {
                     filter.getItemName(), filter.getOrdering().toString(), filter.getState(), filter.getOperator(),
                     filter.getBeginDate(), filter.getEndDate(), filter.getPageSize(), filter.getPageNumber());
 
-            String query = RepositoryFactory.createQueryCreator(configuration).createQuery(filter,
-                    configuration.getRetentionPolicy());
-            logger.trace("Query {}", query);
-            List<InfluxRow> results = influxDBRepository.query(query);
-            return results.stream().map(this::mapRow2HistoricItem).collect(Collectors.toList());
+            FilterCriteriaQueryCreator queryCreator = RepositoryFactory.createQueryCreator(configuration);
+            InfluxDBAggregation aggregation = configuration.getQueryAggregation();
+            Duration window = getAggregationWindow(filter);
+            if (aggregation != null && !window.isZero()) {
+                if (!isNumericItem(filter.getItemName())) {
+                    aggregation = InfluxDBAggregation.LAST;
+                }
+                logger.debug("Aggregating query with {} over windows of {}", aggregation, window);
+                String query = queryCreator.createQuery(filter, configuration.getRetentionPolicy(), aggregation,
+                        window);
+                logger.trace("Query {}", query);
+                // the number of windows is limited, empty windows have no value
+                return influxDBRepository.query(query).stream().filter(row -> row.getValue() != null)
+                        .map(this::mapRow2HistoricItem).collect(Collectors.toList());
+            } else if (filter.getPageSize() != Integer.MAX_VALUE) {
+                String query = queryCreator.createQuery(filter, configuration.getRetentionPolicy());
+                logger.trace("Query {}", query);
+                List<InfluxRow> results = influxDBRepository.query(query);
+                return results.stream().map(this::mapRow2HistoricItem).collect(Collectors.toList());
+            } else {
+                return new InfluxDBHistoricItemStream(influxDBRepository, queryCreator, filter,
+                        configuration.getRetentionPolicy(), QUERY_PAGE_SIZE, this::mapRow2HistoricItem);
+            }
         } else {
             logger.debug("query ignored, InfluxDB is not yet connected");
             return Collections.emptyList();
         }
     }
 
+    /**
+     * Returns the length of the time windows to aggregate a query with, so that it returns at most the configured
+     * number of points. Only unpaged queries of a single item with a begin date are aggregated.
+     *
+     * @return the window length or {@link Duration#ZERO} if the query shouldn't be aggregated
+     */
+    private Duration getAggregationWindow(FilterCriteria filter) {
+        ZonedDateTime begin = filter.getBeginDate();
+        int points = configuration.getQueryAggregationPoints();
+        if (configuration.getQueryAggregation() == null || points <= 0 || begin == null
+                || filter.getItemName() == null || filter.getPageSize() != Integer.MAX_VALUE) {
+            return Duration.ZERO;
+        }
+        ZonedDateTime end = filter.getEndDate();
+        Duration range = Duration.between(begin, end != null ? end : ZonedDateTime.now());
+        Duration window = range.dividedBy(points);
+        return window.getSeconds() > 1 ? Duration.ofSeconds(window.getSeconds()) : Duration.ZERO;
+    }
+
+    private boolean isNumericItem(@Nullable String itemName) {
+        if (itemName == null) {
+            return false;
+        }
+        Item item = itemRegistry.get(itemName);
+        if (item instanceof GroupItem) {
+            item = ((GroupItem) item).getBaseItem();
+        }
+        return item instanceof NumberItem || item instanceof DimmerItem || item instanceof RollershutterItem;
+    }
+
     private HistoricItem mapRow2HistoricItem(InfluxRow row) {
         State state = InfluxDBStateConvertUtils.objectToState(row.getValue(), row.getItemName(), itemRegistry);
         return new InfluxDBHistoricItem(row.getItemName(), state,
@@ -13,6 +13,7 @@
 package org.openhab.persistence.influxdb.internal;
 
 import java.util.Collections;
+import java.util.Locale;
 import java.util.Map;
 import java.util.StringJoiner;
 
@@ -39,6 +40,11 @@ public class InfluxDBConfiguration {
     public static final String ADD_CATEGORY_TAG_PARAM = "addCategoryTag";
     public static final String ADD_LABEL_TAG_PARAM = "addLabelTag";
     public static final String ADD_TYPE_TAG_PARAM = "addTypeTag";
+    public static final String SPOOL_MAX_SIZE_PARAM = "spoolMaxSize";
+    public static final String SPOOL_MAX_AGE_PARAM = "spoolMaxAge";
+    public static final String SPOOL_BATCH_SIZE_PARAM = "spoolBatchSize";
+    public static final String QUERY_AGGREGATION_PARAM = "queryAggregation";
+    public static final String QUERY_AGGREGATION_POINTS_PARAM = "queryAggregationPoints";
     public static InfluxDBConfiguration NO_CONFIGURATION = new InfluxDBConfiguration(Collections.emptyMap());
     private final Logger logger = LoggerFactory.getLogger(InfluxDBConfiguration.class);
     private final String url;
@@ -54,6 +60,13 @@ public class InfluxDBConfiguration {
     private final boolean addTypeTag;
     private final boolean addLabelTag;
 
+    private final int spoolMaxSize;
+    private final int spoolMaxAge;
+    private final int spoolBatchSize;
+
+    private final @Nullable InfluxDBAggregation queryAggregation;
+    private final int queryAggregationPoints;
+
     public InfluxDBConfiguration(Map<String, Object> config) {
         url = (String) config.getOrDefault(URL_PARAM, "http://127.0.0.1:8086");
         user = (String) config.getOrDefault(USER_PARAM, "openhab");
@@ -67,6 +80,13 @@ public class InfluxDBConfiguration {
         addCategoryTag = getConfigBooleanValue(config, ADD_CATEGORY_TAG_PARAM, false);
         addLabelTag = getConfigBooleanValue(config, ADD_LABEL_TAG_PARAM, false);
         addTypeTag = getConfigBooleanValue(config, ADD_TYPE_TAG_PARAM, false);
+
+        spoolMaxSize = getConfigIntValue(config, SPOOL_MAX_SIZE_PARAM, 16);
+        spoolMaxAge = getConfigIntValue(config, SPOOL_MAX_AGE_PARAM, 168);
+        spoolBatchSize = getConfigIntValue(config, SPOOL_BATCH_SIZE_PARAM, 1000);
+
+        queryAggregation = parseAggregation(config.get(QUERY_AGGREGATION_PARAM));
+        queryAggregationPoints = getConfigIntValue(config, QUERY_AGGREGATION_POINTS_PARAM, 500);
     }
 
     private static boolean getConfigBooleanValue(Map<String, Object> config, String key, boolean defaultValue) {
@@ -80,6 +100,34 @@ public class InfluxDBConfiguration {
         }
     }
 
+    private int getConfigIntValue(Map<String, Object> config, String key, int defaultValue) {
+        Object object = config.get(key);
+        if (object instanceof Number) {
+            return ((Number) object).intValue();
+        } else if (object instanceof String) {
+            try {
+                return Integer.parseInt(((String) object).trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid value {} for {}", object, key);
+                return defaultValue;
+            }
+        } else {
+            return defaultValue;
+        }
+    }
+
+    private @Nullable InfluxDBAggregation parseAggregation(@Nullable Object value) {
+        if (value == null || "NONE".equalsIgnoreCase(value.toString().trim())) {
+            return null;
+        }
+        try {
+            return InfluxDBAggregation.valueOf(value.toString().trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Invalid query aggregation {}, queries won't be aggregated", value);
+            return null;
+        }
+    }
+
     private InfluxDBVersion parseInfluxVersion(@Nullable Object value) {
         try {
             return InfluxDBVersion.valueOf((String) value);
@@ -168,13 +216,47 @@ public class InfluxDBConfiguration {
         return version;
     }
 
+    /**
+     * @return the maximum size of the spool in megabytes, 0 if spooling is disabled
+     */
+    public int getSpoolMaxSize() {
+        return spoolMaxSize;
+    }
+
+    /**
+     * @return the maximum age of spooled points in hours, 0 to keep them until they are written
+     */
+    public int getSpoolMaxAge() {
+        return spoolMaxAge;
+    }
+
+    public int getSpoolBatchSize() {
+        return spoolBatchSize;
+    }
+
+    /**
+     * @return the function to aggregate long time ranges with in the database, null if queries aren't aggregated
+     */
+    public @Nullable InfluxDBAggregation getQueryAggregation() {
+        return queryAggregation;
+    }
+
+    /**
+     * @return the number of points an aggregated query returns at most
+     */
+    public int getQueryAggregationPoints() {
+        return queryAggregationPoints;
+    }
+
     @Override
     public String toString() {
         String sb = "InfluxDBConfiguration{" + "url='" + url + '\'' + ", user='" + user + '\'' + ", password='"
                 + password.length() + " chars" + '\'' + ", token='" + token.length() + " chars" + '\''
                 + ", databaseName='" + databaseName + '\'' + ", retentionPolicy='" + retentionPolicy + '\''
                 + ", version=" + version + ", replaceUnderscore=" + replaceUnderscore + ", addCategoryTag="
-                + addCategoryTag + ", addTypeTag=" + addTypeTag + ", addLabelTag=" + addLabelTag + '}';
+                + addCategoryTag + ", addTypeTag=" + addTypeTag + ", addLabelTag=" + addLabelTag + ", spoolMaxSize="
+                + spoolMaxSize + ", spoolMaxAge=" + spoolMaxAge + ", spoolBatchSize=" + spoolBatchSize
+                + ", queryAggregation=" + queryAggregation + ", queryAggregationPoints=" + queryAggregationPoints + '}';
         return sb;
     }
 
@@ -0,0 +1,185 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.influxdb.internal;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.persistence.FilterCriteria;
+import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.core.persistence.HistoricItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Streams the result of an unpaged history query: the rows are read in pages of at most pageSize rows, so only one
+ * page is held in memory and nothing is left open on the server if the caller stops iterating early.
+ *
+ * The pages are not read by offset, which would make the server skip all former rows for every page and would
+ * duplicate or miss rows that are written meanwhile. Instead, each page starts at the time of the last row of the
+ * former page: the bound includes that time, and the rows at that time which have already been returned are
+ * skipped.
+ *
+ * The first page is read when the stream is created, so that a failing query is reported right away and a result
+ * that fits into one page is never queried again. Further pages are queried while iterating, every iteration reads
+ * them again. If one of them cannot be read, the iteration fails with an {@link IllegalStateException}, so that a
+ * partial result is not mistaken for a complete one.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+@NonNullByDefault
+public class InfluxDBHistoricItemStream implements Iterable<HistoricItem> {
+
+    private final Logger logger = LoggerFactory.getLogger(InfluxDBHistoricItemStream.class);
+
+    private final InfluxDBRepository repository;
+    private final FilterCriteriaQueryCreator queryCreator;
+    private final FilterCriteria filter;
+    private final String retentionPolicy;
+    private final int pageSize;
+    private final Function<InfluxRow, HistoricItem> mapper;
+    private final boolean ascending;
+    private final List<InfluxRow> firstPage;
+
+    public InfluxDBHistoricItemStream(InfluxDBRepository repository, FilterCriteriaQueryCreator queryCreator,
+            FilterCriteria filter, String retentionPolicy, int pageSize, Function<InfluxRow, HistoricItem> mapper) {
+        this.repository = repository;
+        this.queryCreator = queryCreator;
+        this.filter = filter;
+        this.retentionPolicy = retentionPolicy;
+        this.pageSize = pageSize;
+        this.mapper = mapper;
+        this.ascending = filter.getOrdering() != Ordering.DESCENDING;
+        this.firstPage = queryPage(null, pageSize);
+    }
+
+    @Override
+    public Iterator<HistoricItem> iterator() {
+        return new Iterator<HistoricItem>() {
+            private Iterator<InfluxRow> page = firstPage.iterator();
+            private boolean exhausted = firstPage.size() < pageSize;
+            private @Nullable InfluxRow next;
+            // the time of the last returned row and how many rows with that time have been returned
+            private @Nullable Instant lastTime;
+            private int rowsAtLastTime;
+            // the rows with the last time which still have to be skipped in the current page
+            private int rowsToSkip;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (page.hasNext()) {
+                        InfluxRow row = page.next();
+                        if (!isAfterLastTime(row)) {
+                            continue;
+                        }
+                        next = row;
+                    } else if (exhausted) {
+                        return false;
+                    } else {
+                        readNextPage();
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public HistoricItem next() {
+                hasNext();
+                InfluxRow row = next;
+                if (row == null) {
+                    throw new NoSuchElementException();
+                }
+                next = null;
+                if (row.getTime().equals(lastTime)) {
+                    rowsAtLastTime++;
+                } else {
+                    lastTime = row.getTime();
+                    rowsAtLastTime = 1;
+                }
+                return mapper.apply(row);
+            }
+
+            /**
+             * Returns if a row of the current page has not been returned yet, the rows are ordered by time.
+             */
+            private boolean isAfterLastTime(InfluxRow row) {
+                Instant last = lastTime;
+                if (last == null) {
+                    return true;
+                }
+                int comparison = row.getTime().compareTo(last);
+                if (comparison == 0 && rowsToSkip > 0) {
+                    rowsToSkip--;
+                    return false;
+                }
+                return ascending ? comparison >= 0 : comparison <= 0;
+            }
+
+            private void readNextPage() {
+                // the rows at the last time are read again, so the page is larger to still contain pageSize new rows
+                int size = pageSize + rowsAtLastTime;
+                List<InfluxRow> rows;
+                try {
+                    rows = queryPage(lastTime, size);
+                } catch (RuntimeException e) {
+                    exhausted = true;
+                    page = Collections.emptyIterator();
+                    throw new IllegalStateException("Query result for item '" + filter.getItemName()
+                            + "' is incomplete: " + e.getMessage(), e);
+                }
+                exhausted = rows.size() < size;
+                page = rows.iterator();
+                rowsToSkip = rowsAtLastTime;
+            }
+        };
+    }
+
+    /**
+     * Queries a page of rows.
+     *
+     * @param from the time of the last row of the former page, or null for the first page
+     * @param size the maximum number of rows
+     */
+    private List<InfluxRow> queryPage(@Nullable Instant from, int size) {
+        FilterCriteria pageFilter = new FilterCriteria();
+        pageFilter.setItemName(filter.getItemName());
+        pageFilter.setOrdering(ascending ? Ordering.ASCENDING : Ordering.DESCENDING);
+        pageFilter.setBeginDate(filter.getBeginDate());
+        pageFilter.setEndDate(filter.getEndDate());
+        pageFilter.setState(filter.getState());
+        pageFilter.setOperator(filter.getOperator());
+        if (from != null) {
+            if (ascending) {
+                // the start of a range is inclusive
+                pageFilter.setBeginDate(ZonedDateTime.ofInstant(from, ZoneOffset.UTC));
+            } else {
+                // the stop of a range is exclusive for InfluxDB 2, so it is moved behind the time
+                pageFilter.setEndDate(ZonedDateTime.ofInstant(from.plusNanos(1), ZoneOffset.UTC));
+            }
+        }
+        pageFilter.setPageNumber(0);
+        pageFilter.setPageSize(size);
+        String query = queryCreator.createQuery(pageFilter, retentionPolicy);
+        logger.trace("Query {}", query);
+        return repository.query(query);
+    }
+}
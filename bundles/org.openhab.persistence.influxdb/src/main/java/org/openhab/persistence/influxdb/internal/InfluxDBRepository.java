@@ -24,6 +24,14 @@ import org.eclipse.jdt.annotation.NonNullByDefault;
  */
 @NonNullByDefault
 public interface InfluxDBRepository {
+    /**
+     * Is notified of points that could not be written in the background after {@link #write(InfluxPoint)} returned
+     */
+    @FunctionalInterface
+    interface WriteErrorListener {
+        void onWriteError(List<InfluxPoint> points, Throwable error);
+    }
+
     /**
      * Returns if the client is successfully connected to server
      *
@@ -71,4 +79,19 @@ public interface InfluxDBRepository {
      * @param influxPoint Point to write
      */
     void write(InfluxPoint influxPoint);
+
+    /**
+     * Sets the listener to notify of points that could not be written in the background
+     *
+     * @param listener the listener
+     */
+    void setWriteErrorListener(WriteErrorListener listener);
+
+    /**
+     * Write points to database synchronously in a single batch
+     *
+     * @param influxPoints Points to write
+     * @throws RuntimeException if the points could not be written
+     */
+    void writeBatch(List<InfluxPoint> influxPoints);
 }
@@ -0,0 +1,582 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.influxdb.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Durable buffer for the points which cannot be written while InfluxDB is not available.
+ *
+ * The points are appended to a memory-mapped file of fixed size, which starts with a header holding the read and the
+ * write position. Replayed points are removed by advancing the read position, the unread points are moved to the start
+ * of the file when there is no room left at its end. If the spool is full, the oldest points are dropped. Points older
+ * than the maximum age are dropped when they are replayed.
+ *
+ * The file is written through the operating system's page cache, so the spooled points survive a restart of openHAB.
+ * It is flushed to disk by {@link #force()} and {@link #close()}. Every record starts with its length, a record with
+ * an invalid length ends the readable part of the spool.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+@NonNullByDefault
+public class InfluxDBSpool {
+    private final Logger logger = LoggerFactory.getLogger(InfluxDBSpool.class);
+
+    /**
+     * Writes a batch of points, throwing an exception if they could not be written.
+     */
+    @FunctionalInterface
+    public interface BatchWriter {
+        void write(List<InfluxPoint> points);
+    }
+
+    private static final int MAGIC = 0x4F485350;
+    private static final int VERSION = 2;
+    private static final int READ_POSITION_OFFSET = 8;
+    private static final int WRITE_POSITION_OFFSET = 16;
+    private static final int HEADER_SIZE = 24;
+
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_STRING = 1;
+    private static final byte VALUE_BOOLEAN = 2;
+    private static final byte VALUE_INTEGER = 3;
+    private static final byte VALUE_LONG = 4;
+    private static final byte VALUE_DOUBLE = 5;
+    private static final byte VALUE_DECIMAL = 6;
+
+    private final File file;
+    private final long maxSize;
+    private final Duration maxAge;
+
+    private @Nullable FileChannel channel;
+    private @Nullable MappedByteBuffer buffer;
+    private int readPosition;
+    private int writePosition;
+    private int pendingCount;
+    // total number of bytes the points have been moved towards the start of the file, to relate the positions of a
+    // batch being replayed to the current positions
+    private long shift;
+
+    private long spooledCount;
+    private long replayedCount;
+    private long droppedCount;
+    private long expiredCount;
+    private double replayRate;
+
+    /**
+     * @param file the spool file
+     * @param maxSize the maximum size of the spool file in bytes
+     * @param maxAge the maximum age of the spooled points, {@link Duration#ZERO} to keep them until they are replayed
+     */
+    public InfluxDBSpool(File file, long maxSize, Duration maxAge) {
+        this.file = file;
+        this.maxSize = Math.min(Math.max(maxSize, HEADER_SIZE + 1024), Integer.MAX_VALUE);
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Opens the spool file, creating it if it does not exist yet.
+     *
+     * @throws IOException if the file cannot be opened
+     */
+    public synchronized void open() throws IOException {
+        File folder = file.getAbsoluteFile().getParentFile();
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Cannot create folder " + folder);
+        }
+        FileChannel openedChannel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            // never map less than the existing file, it may have been written with a larger maximum size
+            long size = Math.max(maxSize, Math.min(openedChannel.size(), Integer.MAX_VALUE));
+            MappedByteBuffer mappedBuffer = openedChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            channel = openedChannel;
+            buffer = mappedBuffer;
+        } catch (IOException e) {
+            openedChannel.close();
+            throw e;
+        }
+        readHeader();
+        logger.debug("Opened InfluxDB spool {} with {} pending points", file, pendingCount);
+    }
+
+    private void readHeader() {
+        MappedByteBuffer mappedBuffer = getBuffer();
+        if (mappedBuffer.getInt(0) == MAGIC && mappedBuffer.getInt(4) == VERSION) {
+            long read = mappedBuffer.getLong(READ_POSITION_OFFSET);
+            long write = mappedBuffer.getLong(WRITE_POSITION_OFFSET);
+            if (read >= HEADER_SIZE && read <= write && write <= mappedBuffer.capacity()) {
+                readPosition = (int) read;
+                writePosition = (int) write;
+                pendingCount = countRecords(readPosition, writePosition);
+                if (pendingCount >= 0) {
+                    return;
+                }
+            }
+            logger.warn("InfluxDB spool {} is corrupted, discarding its content", file);
+        }
+        mappedBuffer.putInt(0, MAGIC);
+        mappedBuffer.putInt(4, VERSION);
+        readPosition = HEADER_SIZE;
+        writePosition = HEADER_SIZE;
+        pendingCount = 0;
+        writeHeader();
+    }
+
+    /**
+     * Counts the records between two positions.
+     *
+     * @return the number of records, or -1 if a record is corrupted
+     */
+    private int countRecords(int from, int to) {
+        int count = 0;
+        int position = from;
+        while (position < to) {
+            int length = recordLength(position, to);
+            if (length < 0) {
+                return -1;
+            }
+            position += 4 + length;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the length of the record at a position, which has to end before the limit.
+     *
+     * @return the length, or -1 if the record is corrupted
+     */
+    private int recordLength(int position, int limit) {
+        if (position < HEADER_SIZE || limit - position < 4) {
+            return -1;
+        }
+        int length = getBuffer().getInt(position);
+        return length <= 0 || length > limit - position - 4 ? -1 : length;
+    }
+
+    private void discardCorrupted() {
+        logger.warn("InfluxDB spool {} is corrupted, discarding {} pending points", file, pendingCount);
+        droppedCount += pendingCount;
+        pendingCount = 0;
+        readPosition = writePosition;
+        compact();
+    }
+
+    private void writeHeader() {
+        MappedByteBuffer mappedBuffer = getBuffer();
+        mappedBuffer.putLong(READ_POSITION_OFFSET, readPosition);
+        mappedBuffer.putLong(WRITE_POSITION_OFFSET, writePosition);
+    }
+
+    private MappedByteBuffer getBuffer() {
+        MappedByteBuffer mappedBuffer = buffer;
+        if (mappedBuffer == null) {
+            throw new IllegalStateException("InfluxDB spool is not open");
+        }
+        return mappedBuffer;
+    }
+
+    /**
+     * Appends a point to the spool, dropping the oldest points if there is no room left.
+     *
+     * @param point the point to append
+     */
+    public synchronized void append(InfluxPoint point) {
+        if (buffer == null) {
+            logger.debug("InfluxDB spool is closed, dropping point {}", point);
+            droppedCount++;
+            return;
+        }
+        byte[] record;
+        try {
+            record = encode(point);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.warn("Cannot spool point {}: {}", point, e.getMessage());
+            droppedCount++;
+            return;
+        }
+        MappedByteBuffer mappedBuffer = getBuffer();
+        int recordSize = 4 + record.length;
+        if (recordSize > mappedBuffer.capacity() - HEADER_SIZE) {
+            logger.warn("Cannot spool point {}: it is larger than the spool", point);
+            droppedCount++;
+            return;
+        }
+        if (writePosition + recordSize > mappedBuffer.capacity()) {
+            int dropped = 0;
+            while (pendingCount > 0 && (writePosition - readPosition) + recordSize > mappedBuffer.capacity()
+                    - HEADER_SIZE) {
+                int length = recordLength(readPosition, writePosition);
+                if (length < 0) {
+                    discardCorrupted();
+                    break;
+                }
+                readPosition += 4 + length;
+                pendingCount--;
+                dropped++;
+            }
+            if (dropped > 0) {
+                droppedCount += dropped;
+                logger.warn("InfluxDB spool is full, dropped the {} oldest points", dropped);
+            }
+            compact();
+        }
+        ByteBuffer target = mappedBuffer.duplicate();
+        target.position(writePosition);
+        target.putInt(record.length);
+        target.put(record);
+        writePosition += recordSize;
+        pendingCount++;
+        spooledCount++;
+        writeHeader();
+    }
+
+    /**
+     * Moves the unread points to the start of the file.
+     */
+    private void compact() {
+        if (readPosition == HEADER_SIZE) {
+            return;
+        }
+        MappedByteBuffer mappedBuffer = getBuffer();
+        int length = writePosition - readPosition;
+        if (length > 0) {
+            ByteBuffer source = mappedBuffer.duplicate();
+            source.position(readPosition).limit(writePosition);
+            ByteBuffer target = mappedBuffer.duplicate();
+            target.position(HEADER_SIZE);
+            // the regions may overlap, copy through a temporary array
+            byte[] data = new byte[length];
+            source.get(data);
+            target.put(data);
+        }
+        shift += readPosition - HEADER_SIZE;
+        readPosition = HEADER_SIZE;
+        writePosition = HEADER_SIZE + length;
+        writeHeader();
+    }
+
+    /**
+     * Replays the spooled points in batches, until the spool is empty or a batch cannot be written. A batch which
+     * cannot be written is kept in the spool.
+     *
+     * The writer is called without holding the lock of the spool, so points can be appended while it is replayed.
+     *
+     * @param writer writes a batch of points
+     * @param batchSize the maximum number of points per batch
+     * @return the number of replayed points
+     */
+    public int replay(BatchWriter writer, int batchSize) {
+        long start = System.nanoTime();
+        int replayed = 0;
+        while (true) {
+            Batch batch = readBatch(Math.max(1, batchSize));
+            if (batch == null) {
+                break;
+            }
+            if (!batch.points.isEmpty()) {
+                try {
+                    writer.write(batch.points);
+                } catch (RuntimeException e) {
+                    logger.warn("Replaying {} spooled points to InfluxDB failed, will retry: {}", batch.points.size(),
+                            e.getMessage());
+                    break;
+                }
+            }
+            commit(batch);
+            replayed += batch.points.size();
+        }
+        if (replayed > 0) {
+            long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+            synchronized (this) {
+                replayRate = replayed * 1000.0 / elapsedMillis;
+            }
+            logger.info("Replayed {} spooled points to InfluxDB in {} ms ({} points/s), {} points pending", replayed,
+                    elapsedMillis, Math.round(replayRate), getPendingCount());
+        }
+        return replayed;
+    }
+
+    private synchronized @Nullable Batch readBatch(int batchSize) {
+        if (buffer == null || pendingCount == 0) {
+            return null;
+        }
+        MappedByteBuffer mappedBuffer = getBuffer();
+        Instant oldest = maxAge.isZero() ? Instant.MIN : Instant.now().minus(maxAge);
+        List<InfluxPoint> points = new ArrayList<>(Math.min(batchSize, pendingCount));
+        int records = 0;
+        int expired = 0;
+        int position = readPosition;
+        while (position < writePosition && points.size() < batchSize) {
+            int length = recordLength(position, writePosition);
+            if (length < 0) {
+                discardCorrupted();
+                return null;
+            }
+            byte[] record = new byte[length];
+            ByteBuffer source = mappedBuffer.duplicate();
+            source.position(position + 4);
+            source.get(record);
+            position += 4 + length;
+            records++;
+            try {
+                InfluxPoint point = decode(record);
+                if (point.getTime().isBefore(oldest)) {
+                    expired++;
+                } else {
+                    points.add(point);
+                }
+            } catch (IOException | BufferUnderflowException | NumberFormatException e) {
+                logger.warn("Discarding unreadable spooled point: {}", e.getMessage());
+                droppedCount++;
+            }
+        }
+        if (expired > 0) {
+            logger.debug("Discarding {} spooled points older than {}", expired, maxAge);
+            expiredCount += expired;
+        }
+        return new Batch(points, records, readPosition + shift, position + shift);
+    }
+
+    private synchronized void commit(Batch batch) {
+        if (buffer == null) {
+            return;
+        }
+        // the points may have been moved or dropped while the batch was written
+        long end = batch.end - shift;
+        if (end > readPosition) {
+            int committed = batch.records;
+            if (batch.start - shift < readPosition) {
+                committed = countRecords(readPosition, (int) end);
+                if (committed < 0) {
+                    discardCorrupted();
+                    return;
+                }
+            }
+            readPosition = (int) end;
+            pendingCount -= committed;
+            replayedCount += batch.points.size();
+        }
+        if (readPosition == writePosition) {
+            compact();
+        } else {
+            writeHeader();
+        }
+    }
+
+    /**
+     * Flushes the content of the spool to disk.
+     */
+    public synchronized void force() {
+        MappedByteBuffer mappedBuffer = buffer;
+        if (mappedBuffer != null) {
+            mappedBuffer.force();
+        }
+    }
+
+    /**
+     * Flushes the content of the spool to disk and closes the file.
+     */
+    public synchronized void close() {
+        MappedByteBuffer mappedBuffer = buffer;
+        FileChannel openedChannel = channel;
+        buffer = null;
+        channel = null;
+        if (mappedBuffer != null) {
+            mappedBuffer.force();
+        }
+        if (openedChannel != null) {
+            try {
+                openedChannel.close();
+            } catch (IOException e) {
+                logger.debug("Error closing InfluxDB spool {}: {}", file, e.getMessage());
+            }
+        }
+        logger.debug(
+                "Closed InfluxDB spool {}: pending={} spooled={} replayed={} dropped={} expired={} lastReplayRate={}/s",
+                file, pendingCount, spooledCount, replayedCount, droppedCount, expiredCount, Math.round(replayRate));
+    }
+
+    public synchronized boolean isEmpty() {
+        return pendingCount == 0;
+    }
+
+    public synchronized int getPendingCount() {
+        return pendingCount;
+    }
+
+    public synchronized int getPendingBytes() {
+        return writePosition - readPosition;
+    }
+
+    public synchronized long getSpooledCount() {
+        return spooledCount;
+    }
+
+    public synchronized long getReplayedCount() {
+        return replayedCount;
+    }
+
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    public synchronized long getExpiredCount() {
+        return expiredCount;
+    }
+
+    /**
+     * @return the throughput of the last replay in points per second
+     */
+    public synchronized double getReplayRate() {
+        return replayRate;
+    }
+
+    private byte[] encode(InfluxPoint point) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, point.getMeasurementName());
+            out.writeLong(point.getTime().toEpochMilli());
+            writeValue(out, point.getValue());
+            Map<String, String> tags = point.getTags();
+            out.writeShort(tags.size());
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                writeString(out, tag.getKey());
+                writeString(out, tag.getValue());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private void writeValue(DataOutputStream out, @Nullable Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof String) {
+            out.writeByte(VALUE_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(VALUE_INTEGER);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Number) {
+            out.writeByte(VALUE_DECIMAL);
+            writeString(out, value instanceof BigDecimal ? ((BigDecimal) value).toString() : value.toString());
+        } else {
+            throw new IllegalArgumentException("Not expected value type " + value.getClass().getName());
+        }
+    }
+
+    /**
+     * Writes a string as its length followed by its UTF-8 bytes. Unlike {@link DataOutputStream#writeUTF(String)},
+     * this is not limited to 64 KB.
+     */
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        // the stream reads from an array, so all remaining bytes are available
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private InfluxPoint decode(byte[] record) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            InfluxPoint.Builder builder = InfluxPoint.newBuilder(readString(in))
+                    .withTime(Instant.ofEpochMilli(in.readLong()));
+            Object value = readValue(in);
+            if (value != null) {
+                builder.withValue(value);
+            }
+            int tags = in.readShort();
+            for (int i = 0; i < tags; i++) {
+                builder.withTag(readString(in), readString(in));
+            }
+            return builder.build();
+        }
+    }
+
+    private @Nullable Object readValue(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case VALUE_NULL:
+                return null;
+            case VALUE_STRING:
+                return readString(in);
+            case VALUE_BOOLEAN:
+                return in.readBoolean();
+            case VALUE_INTEGER:
+                return in.readInt();
+            case VALUE_LONG:
+                return in.readLong();
+            case VALUE_DOUBLE:
+                return in.readDouble();
+            case VALUE_DECIMAL:
+                return new BigDecimal(readString(in));
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    private static class Batch {
+        final List<InfluxPoint> points;
+        final int records;
+        final long start;
+        final long end;
+
+        Batch(List<InfluxPoint> points, int records, long start, long end) {
+            this.points = points;
+            this.records = records;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
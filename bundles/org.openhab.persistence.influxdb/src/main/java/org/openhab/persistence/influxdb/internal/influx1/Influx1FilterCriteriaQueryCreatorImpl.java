@@ -16,7 +16,10 @@ import static org.influxdb.querybuilder.BuiltQuery.QueryBuilder.*;
 import static org.openhab.persistence.influxdb.internal.InfluxDBConstants.*;
 import static org.openhab.persistence.influxdb.internal.InfluxDBStateConvertUtils.stateToObject;
 
+import java.time.Duration;
+
 import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
 import org.influxdb.dto.Query;
 import org.influxdb.querybuilder.Appender;
 import org.influxdb.querybuilder.BuiltQuery;
@@ -25,6 +28,7 @@ import org.influxdb.querybuilder.Where;
 import org.influxdb.querybuilder.clauses.SimpleClause;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.persistence.influxdb.internal.FilterCriteriaQueryCreator;
+import org.openhab.persistence.influxdb.internal.InfluxDBAggregation;
 import org.openhab.persistence.influxdb.internal.InfluxDBVersion;
 
 /**
@@ -37,6 +41,12 @@ public class Influx1FilterCriteriaQueryCreatorImpl implements FilterCriteriaQuer
 
     @Override
     public String createQuery(FilterCriteria criteria, String retentionPolicy) {
+        return createQuery(criteria, retentionPolicy, null, Duration.ZERO);
+    }
+
+    @Override
+    public String createQuery(FilterCriteria criteria, String retentionPolicy,
+            @Nullable InfluxDBAggregation aggregation, Duration window) {
         final String tableName;
         boolean hasCriteriaName = criteria.getItemName() != null;
         if (hasCriteriaName) {
@@ -45,7 +55,12 @@ public class Influx1FilterCriteriaQueryCreatorImpl implements FilterCriteriaQuer
             tableName = "/.*/";
         }
 
-        Select select = select(COLUMN_VALUE_NAME_V1).fromRaw(null,
+        Object column = COLUMN_VALUE_NAME_V1;
+        if (aggregation != null) {
+            // keep the name of the column, the result is read like the one of a raw query
+            column = raw(aggregation.getFunction() + "(" + COLUMN_VALUE_NAME_V1 + ") AS " + COLUMN_VALUE_NAME_V1);
+        }
+        Select select = select(column).fromRaw(null,
                 fullQualifiedTableName(retentionPolicy, tableName, hasCriteriaName));
 
         Where where = select.where();
@@ -64,6 +79,10 @@ public class Influx1FilterCriteriaQueryCreatorImpl implements FilterCriteriaQuer
                     stateToObject(criteria.getState())));
         }
 
+        if (aggregation != null) {
+            select = select.groupBy(time(Math.max(1, window.getSeconds()), "s"));
+        }
+
         if (criteria.getOrdering() == FilterCriteria.Ordering.DESCENDING) {
             select = select.orderBy(desc());
         } else if (criteria.getOrdering() == FilterCriteria.Ordering.ASCENDING) {
@@ -21,12 +21,15 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.TimeUnit;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
+import org.influxdb.BatchOptions;
 import org.influxdb.InfluxDB;
 import org.influxdb.InfluxDBFactory;
+import org.influxdb.dto.BatchPoints;
 import org.influxdb.dto.Point;
 import org.influxdb.dto.Pong;
 import org.influxdb.dto.Query;
@@ -51,6 +54,10 @@ public class InfluxDB1RepositoryImpl implements InfluxDBRepository {
     private InfluxDBConfiguration configuration;
     @Nullable
     private InfluxDB client;
+    private volatile @Nullable WriteErrorListener writeErrorListener;
+    // the points handed to the client's background batching, to report them if they cannot be written. The entries
+    // are removed by the garbage collector once the client has released the points.
+    private final Map<Point, InfluxPoint> pendingPoints = Collections.synchronizedMap(new WeakHashMap<>());
 
     public InfluxDB1RepositoryImpl(InfluxDBConfiguration configuration) {
         this.configuration = configuration;
@@ -67,7 +74,8 @@ public class InfluxDB1RepositoryImpl implements InfluxDBRepository {
                 configuration.getPassword());
         createdClient.setDatabase(configuration.getDatabaseName());
         createdClient.setRetentionPolicy(configuration.getRetentionPolicy());
-        createdClient.enableBatch(200, 100, TimeUnit.MILLISECONDS);
+        createdClient.enableBatch(
+                BatchOptions.DEFAULTS.actions(200).flushDuration(100).exceptionHandler(this::handleWriteError));
         this.client = createdClient;
         return checkConnectionStatus();
     }
@@ -114,12 +122,48 @@ public class InfluxDB1RepositoryImpl implements InfluxDBRepository {
         final InfluxDB currentClient = this.client;
         if (currentClient != null) {
             Point clientPoint = convertPointToClientFormat(point);
+            if (writeErrorListener != null) {
+                pendingPoints.put(clientPoint, point);
+            }
             currentClient.write(configuration.getDatabaseName(), configuration.getRetentionPolicy(), clientPoint);
         } else {
             logger.warn("Write point {} ignored due to client isn't connected", point);
         }
     }
 
+    @Override
+    public void setWriteErrorListener(WriteErrorListener listener) {
+        this.writeErrorListener = listener;
+    }
+
+    private void handleWriteError(Iterable<Point> failedPoints, Throwable e) {
+        logger.warn("Writing points to InfluxDB failed: {}", e.getMessage());
+        List<InfluxPoint> points = new ArrayList<>();
+        for (Point failedPoint : failedPoints) {
+            InfluxPoint point = pendingPoints.remove(failedPoint);
+            if (point != null) {
+                points.add(point);
+            }
+        }
+        WriteErrorListener listener = writeErrorListener;
+        if (listener != null) {
+            listener.onWriteError(points, e);
+        }
+    }
+
+    @Override
+    public void writeBatch(List<InfluxPoint> points) {
+        final InfluxDB currentClient = this.client;
+        if (currentClient == null) {
+            throw new IllegalStateException("client isn't connected");
+        }
+        BatchPoints.Builder batch = BatchPoints.database(configuration.getDatabaseName())
+                .retentionPolicy(configuration.getRetentionPolicy());
+        points.forEach(point -> batch.point(convertPointToClientFormat(point)));
+        // written synchronously as a single line protocol request, bypassing the client's own batching
+        currentClient.write(batch.build());
+    }
+
     private Point convertPointToClientFormat(InfluxPoint point) {
         Point.Builder clientPoint = Point.measurement(point.getMeasurementName()).time(point.getTime().toEpochMilli(),
                 TimeUnit.MILLISECONDS);
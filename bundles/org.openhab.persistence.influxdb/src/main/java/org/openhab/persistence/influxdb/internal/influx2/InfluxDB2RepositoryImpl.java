@@ -15,6 +15,7 @@ package org.openhab.persistence.influxdb.internal.influx2;
 import static org.openhab.persistence.influxdb.internal.InfluxDBConstants.*;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -38,9 +39,13 @@ import com.influxdb.client.InfluxDBClientFactory;
 import com.influxdb.client.InfluxDBClientOptions;
 import com.influxdb.client.QueryApi;
 import com.influxdb.client.WriteApi;
+import com.influxdb.client.WriteApiBlocking;
 import com.influxdb.client.domain.Ready;
 import com.influxdb.client.domain.WritePrecision;
 import com.influxdb.client.write.Point;
+import com.influxdb.client.write.events.WriteErrorEvent;
+import com.influxdb.client.write.events.WriteSuccessEvent;
+import com.influxdb.query.FluxRecord;
 import com.influxdb.query.FluxTable;
 
 /**
@@ -50,6 +55,8 @@ import com.influxdb.query.FluxTable;
  */
 @NonNullByDefault
 public class InfluxDB2RepositoryImpl implements InfluxDBRepository {
+    private static final int MAX_PENDING_POINTS = 10000;
+
     private final Logger logger = LoggerFactory.getLogger(InfluxDB2RepositoryImpl.class);
     private InfluxDBConfiguration configuration;
     @Nullable
@@ -58,6 +65,29 @@ public class InfluxDB2RepositoryImpl implements InfluxDBRepository {
     private QueryApi queryAPI;
     @Nullable
     private WriteApi writeAPI;
+    @Nullable
+    private WriteApiBlocking writeBlockingAPI;
+    private volatile @Nullable WriteErrorListener writeErrorListener;
+    // the points handed to the write API by line protocol, until it reports them as written. The error events of the
+    // write API do not tell which points have failed, so all pending points are reported then. Reporting points
+    // which are written after all is harmless, as InfluxDB overwrites a point with the same series and time.
+    private final Map<String, InfluxPoint> pendingPoints = new LinkedHashMap<>(16, 0.75f, false) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.@Nullable Entry<String, InfluxPoint> eldest) {
+            if (size() <= MAX_PENDING_POINTS) {
+                return false;
+            }
+            if (evictedPoints++ == 0) {
+                logger.warn("More than {} points are not confirmed by InfluxDB, the oldest are not retried on errors",
+                        MAX_PENDING_POINTS);
+            }
+            return true;
+        }
+    };
+    // the pending points removed since the last write error or confirmation of all points, guarded by pendingPoints
+    private int evictedPoints;
 
     public InfluxDB2RepositoryImpl(InfluxDBConfiguration configuration) {
         this.configuration = configuration;
@@ -94,7 +124,11 @@ public class InfluxDB2RepositoryImpl implements InfluxDBRepository {
         this.client = createdClient;
         logger.debug("Succesfully connected to InfluxDB. Instance ready={}", createdClient.ready());
         queryAPI = createdClient.getQueryApi();
-        writeAPI = createdClient.getWriteApi();
+        final WriteApi createdWriteAPI = createdClient.getWriteApi();
+        createdWriteAPI.listenEvents(WriteSuccessEvent.class, this::handleWriteSuccess);
+        createdWriteAPI.listenEvents(WriteErrorEvent.class, this::handleWriteError);
+        writeAPI = createdWriteAPI;
+        writeBlockingAPI = createdClient.getWriteApiBlocking();
         return checkConnectionStatus();
     }
 
@@ -108,6 +142,7 @@ public class InfluxDB2RepositoryImpl implements InfluxDBRepository {
             currentClient.close();
         }
         this.client = null;
+        this.writeBlockingAPI = null;
     }
 
     /**
@@ -142,12 +177,74 @@ public class InfluxDB2RepositoryImpl implements InfluxDBRepository {
     public void write(InfluxPoint point) {
         final WriteApi currentWriteAPI = writeAPI;
         if (currentWriteAPI != null) {
-            currentWriteAPI.writePoint(convertPointToClientFormat(point));
+            Point clientPoint = convertPointToClientFormat(point);
+            if (writeErrorListener != null) {
+                synchronized (pendingPoints) {
+                    pendingPoints.put(clientPoint.toLineProtocol(), point);
+                }
+            }
+            currentWriteAPI.writePoint(clientPoint);
         } else {
             logger.warn("Write point {} ignored due to writeAPI isn't present", point);
         }
     }
 
+    @Override
+    public void setWriteErrorListener(WriteErrorListener listener) {
+        this.writeErrorListener = listener;
+    }
+
+    private void handleWriteSuccess(WriteSuccessEvent event) {
+        String lineProtocol = event.getLineProtocol();
+        if (lineProtocol != null) {
+            synchronized (pendingPoints) {
+                for (String line : lineProtocol.split("\n")) {
+                    pendingPoints.remove(line);
+                }
+                if (pendingPoints.isEmpty()) {
+                    // the points are written in order, so the removed ones have been written before
+                    evictedPoints = 0;
+                }
+            }
+        }
+    }
+
+    private void handleWriteError(WriteErrorEvent event) {
+        logger.warn("Writing points to InfluxDB failed: {}", event.getThrowable().getMessage());
+        List<InfluxPoint> points;
+        int evicted;
+        synchronized (pendingPoints) {
+            points = new ArrayList<>(pendingPoints.values());
+            pendingPoints.clear();
+            evicted = evictedPoints;
+            evictedPoints = 0;
+        }
+        if (evicted > 0) {
+            logger.warn("{} points which may have failed too are not retried, they exceeded the {} pending points",
+                    evicted, MAX_PENDING_POINTS);
+        }
+        WriteErrorListener listener = writeErrorListener;
+        if (listener != null) {
+            listener.onWriteError(points, event.getThrowable());
+        }
+    }
+
+    /**
+     * Write points to database synchronously in a single batch
+     *
+     * @param points
+     */
+    @Override
+    public void writeBatch(List<InfluxPoint> points) {
+        final WriteApiBlocking currentWriteAPI = writeBlockingAPI;
+        if (currentWriteAPI == null) {
+            throw new IllegalStateException("writeAPI isn't present");
+        }
+        List<Point> clientPoints = points.stream().map(this::convertPointToClientFormat)
+                .collect(Collectors.toList());
+        currentWriteAPI.writePoints(clientPoints);
+    }
+
     private Point convertPointToClientFormat(InfluxPoint point) {
         Point clientPoint = Point.measurement(point.getMeasurementName()).time(point.getTime(), WritePrecision.MS);
         setPointValue(point.getValue(), clientPoint);
@@ -192,12 +289,14 @@ public class InfluxDB2RepositoryImpl implements InfluxDBRepository {
     }
 
     private Stream<InfluxRow> mapRawResultToHistoric(FluxTable rawRow) {
-        return rawRow.getRecords().stream().map(r -> {
-            String itemName = (String) r.getValueByKey(InfluxDBConstants.TAG_ITEM_NAME);
-            Object value = r.getValueByKey(COLUMN_VALUE_NAME_V2);
-            Instant time = (Instant) r.getValueByKey(COLUMN_TIME_NAME_V2);
-            return new InfluxRow(time, itemName, value);
-        });
+        return rawRow.getRecords().stream().map(this::convertRecord);
+    }
+
+    private InfluxRow convertRecord(FluxRecord r) {
+        String itemName = (String) r.getValueByKey(InfluxDBConstants.TAG_ITEM_NAME);
+        Object value = r.getValueByKey(COLUMN_VALUE_NAME_V2);
+        Instant time = (Instant) r.getValueByKey(COLUMN_TIME_NAME_V2);
+        return new InfluxRow(time, itemName, value);
     }
 
     /**
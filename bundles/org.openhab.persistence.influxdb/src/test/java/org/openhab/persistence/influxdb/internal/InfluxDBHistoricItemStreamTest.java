@@ -0,0 +1,195 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.influxdb.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.eclipse.jdt.annotation.DefaultLocation;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.persistence.FilterCriteria;
+import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.core.persistence.HistoricItem;
+
+/**
+ * @author Karel Goderis - Initial contribution
+ */
+@ExtendWith(MockitoExtension.class)
+@NonNullByDefault(value = { DefaultLocation.PARAMETER, DefaultLocation.RETURN_TYPE })
+public class InfluxDBHistoricItemStreamTest {
+    private static final String RETENTION_POLICY = "origin";
+    private static final String ITEM_NAME = "sampleItem";
+
+    private @Mock InfluxDBRepository repository;
+    private @Mock FilterCriteriaQueryCreator queryCreator;
+    private FilterCriteria filter;
+
+    // the stored rows and the filters of the created queries, the repository answers a query like InfluxDB 2 does
+    private final List<InfluxRow> rows = new ArrayList<>();
+    private final Map<String, FilterCriteria> queries = new HashMap<>();
+
+    @BeforeEach
+    public void before() {
+        filter = new FilterCriteria();
+        filter.setItemName(ITEM_NAME);
+        when(queryCreator.createQuery(any(FilterCriteria.class), eq(RETENTION_POLICY))).thenAnswer(invocation -> {
+            String query = "query " + queries.size();
+            queries.put(query, invocation.getArgument(0));
+            return query;
+        });
+    }
+
+    @Test
+    public void rowsShouldBeReadPageByPage() {
+        when(repository.query(anyString())).thenAnswer(invocation -> query(invocation.getArgument(0)));
+        storeSeries(5);
+
+        InfluxDBHistoricItemStream stream = createStream(Ordering.DESCENDING, 2);
+        assertThat(values(stream), is(List.of(4, 3, 2, 1, 0)));
+        assertThat(values(stream), is(List.of(4, 3, 2, 1, 0)));
+
+        // the first page is only read once
+        verify(repository, times(5)).query(anyString());
+    }
+
+    @Test
+    public void rowsShouldBeReadInAscendingOrder() {
+        when(repository.query(anyString())).thenAnswer(invocation -> query(invocation.getArgument(0)));
+        storeSeries(5);
+
+        assertThat(values(createStream(Ordering.ASCENDING, 2)), is(List.of(0, 1, 2, 3, 4)));
+    }
+
+    @Test
+    public void rowsWithTheSameTimeShouldBeReadOnce() {
+        when(repository.query(anyString())).thenAnswer(invocation -> query(invocation.getArgument(0)));
+        store(0, 0);
+        store(1, 1, 2, 3, 4);
+        store(2, 5);
+
+        assertThat(values(createStream(Ordering.ASCENDING, 2)), is(List.of(0, 1, 2, 3, 4, 5)));
+        assertThat(values(createStream(Ordering.DESCENDING, 2)), is(List.of(5, 1, 2, 3, 4, 0)));
+    }
+
+    @Test
+    public void rowsWrittenWhileIteratingShouldNotShiftThePages() {
+        when(repository.query(anyString())).thenAnswer(invocation -> query(invocation.getArgument(0)));
+        storeSeries(5);
+
+        Iterator<HistoricItem> iterator = createStream(Ordering.DESCENDING, 2).iterator();
+        List<Integer> values = new ArrayList<>();
+        values.add(value(iterator.next()));
+        values.add(value(iterator.next()));
+        store(10, 10, 11);
+        iterator.forEachRemaining(item -> values.add(value(item)));
+
+        assertThat(values, is(List.of(4, 3, 2, 1, 0)));
+    }
+
+    @Test
+    public void resultWithinFirstPageShouldNotBeQueriedAgain() {
+        when(repository.query(anyString())).thenAnswer(invocation -> query(invocation.getArgument(0)));
+        store(0, 0);
+
+        InfluxDBHistoricItemStream stream = createStream(Ordering.DESCENDING, 2);
+        assertThat(values(stream), is(List.of(0)));
+        assertThat(values(stream), is(List.of(0)));
+
+        verify(repository, times(1)).query(anyString());
+    }
+
+    @Test
+    public void failedPageShouldFailIteration() {
+        when(repository.query(anyString())).thenAnswer(invocation -> query(invocation.getArgument(0)))
+                .thenThrow(new RuntimeException("connection lost"));
+        storeSeries(3);
+
+        Iterator<HistoricItem> iterator = createStream(Ordering.DESCENDING, 2).iterator();
+        iterator.next();
+        iterator.next();
+        assertThrows(IllegalStateException.class, iterator::hasNext);
+    }
+
+    private InfluxDBHistoricItemStream createStream(Ordering ordering, int pageSize) {
+        filter.setOrdering(ordering);
+        return new InfluxDBHistoricItemStream(repository, queryCreator, filter, RETENTION_POLICY, pageSize,
+                row -> new InfluxDBHistoricItem(row.getItemName(), new DecimalType((Integer) row.getValue()),
+                        ZonedDateTime.ofInstant(row.getTime(), ZoneId.systemDefault())));
+    }
+
+    /**
+     * Stores one row per second, the values are the seconds.
+     */
+    private void storeSeries(int count) {
+        for (int second = 0; second < count; second++) {
+            store(second, second);
+        }
+    }
+
+    /**
+     * Stores rows with the same time, the values are the order of the rows within that time.
+     */
+    private void store(int second, int... values) {
+        for (int value : values) {
+            rows.add(new InfluxRow(Instant.ofEpochSecond(second), ITEM_NAME, value));
+        }
+    }
+
+    /**
+     * Answers a query with an inclusive begin and an exclusive end date.
+     */
+    private List<InfluxRow> query(String query) {
+        FilterCriteria pageFilter = queries.get(query);
+        Comparator<InfluxRow> order = Comparator.comparing(InfluxRow::getTime);
+        if (pageFilter.getOrdering() == Ordering.DESCENDING) {
+            order = order.reversed();
+        }
+        order = order.thenComparing(row -> (Integer) row.getValue());
+        ZonedDateTime begin = pageFilter.getBeginDate();
+        ZonedDateTime end = pageFilter.getEndDate();
+        return rows.stream().filter(row -> begin == null || !row.getTime().isBefore(begin.toInstant()))
+                .filter(row -> end == null || row.getTime().isBefore(end.toInstant())).sorted(order)
+                .limit(pageFilter.getPageSize()).collect(Collectors.toList());
+    }
+
+    private int value(HistoricItem item) {
+        return ((DecimalType) item.getState()).intValue();
+    }
+
+    private List<Integer> values(Iterable<HistoricItem> items) {
+        List<Integer> values = new ArrayList<>();
+        for (HistoricItem item : items) {
+            values.add(value(item));
+        }
+        return values;
+    }
+}
@@ -12,9 +12,16 @@
  */
 package org.openhab.persistence.influxdb.internal;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.jdt.annotation.DefaultLocation;
@@ -23,6 +30,8 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.openhab.core.items.ItemRegistry;
@@ -38,6 +47,8 @@ public class InfluxDBPersistenceServiceTest {
     private InfluxDBPersistenceService instance;
 
     private @Mock InfluxDBRepository influxDBRepository;
+    private @TempDir File tempDir;
+    private InfluxDBSpool spool;
 
     private Map<String, Object> validConfig;
     private Map<String, Object> invalidConfig;
@@ -49,6 +60,17 @@ public class InfluxDBPersistenceServiceTest {
             protected InfluxDBRepository createInfluxDBRepository() {
                 return influxDBRepository;
             }
+
+            @Override
+            protected InfluxDBSpool createSpool() {
+                spool = new InfluxDBSpool(new File(tempDir, "spool.dat"), 1024 * 1024, Duration.ZERO);
+                try {
+                    spool.open();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return spool;
+            }
         };
 
         validConfig = ConfigurationTestHelper.createValidConfigurationParameters();
@@ -57,6 +79,8 @@ public class InfluxDBPersistenceServiceTest {
 
     @AfterEach
     public void after() {
+        instance.deactivate();
+        spool = null;
         validConfig = null;
         invalidConfig = null;
         instance = null;
@@ -90,6 +114,7 @@ public class InfluxDBPersistenceServiceTest {
 
     @Test
     public void storeItemWithConnectedRepository() {
+        when(influxDBRepository.connect()).thenReturn(true);
         instance.activate(validConfig);
         when(influxDBRepository.isConnected()).thenReturn(true);
         instance.store(ItemTestHelper.createNumberItem("number", 5));
@@ -98,9 +123,50 @@ public class InfluxDBPersistenceServiceTest {
 
     @Test
     public void storeItemWithDisconnectedRepositoryIsIgnored() {
+        validConfig.put(InfluxDBConfiguration.SPOOL_MAX_SIZE_PARAM, 0);
         instance.activate(validConfig);
         when(influxDBRepository.isConnected()).thenReturn(false);
         instance.store(ItemTestHelper.createNumberItem("number", 5));
         verify(influxDBRepository, never()).write(any());
     }
+
+    @Test
+    public void storeItemWithDisconnectedRepositoryIsSpooled() {
+        instance.activate(validConfig);
+        when(influxDBRepository.isConnected()).thenReturn(false);
+        instance.store(ItemTestHelper.createNumberItem("number", 5));
+        verify(influxDBRepository, never()).write(any());
+        assertThat(spool.getPendingCount(), is(1));
+    }
+
+    @Test
+    public void storeItemWithUnavailableDatabaseIsSpooled() {
+        when(influxDBRepository.connect()).thenReturn(false);
+        instance.activate(validConfig);
+        when(influxDBRepository.isConnected()).thenReturn(true);
+        instance.store(ItemTestHelper.createNumberItem("number", 5));
+        verify(influxDBRepository, never()).write(any());
+        assertThat(spool.getPendingCount(), is(1));
+    }
+
+    @Test
+    public void failedAsyncWriteAfterConnectIsSpooled() {
+        when(influxDBRepository.connect()).thenReturn(true);
+        instance.activate(validConfig);
+        when(influxDBRepository.isConnected()).thenReturn(true);
+        ArgumentCaptor<InfluxDBRepository.WriteErrorListener> listener = ArgumentCaptor
+                .forClass(InfluxDBRepository.WriteErrorListener.class);
+        verify(influxDBRepository).setWriteErrorListener(listener.capture());
+        ArgumentCaptor<InfluxPoint> point = ArgumentCaptor.forClass(InfluxPoint.class);
+
+        instance.store(ItemTestHelper.createNumberItem("number", 5));
+        verify(influxDBRepository).write(point.capture());
+        // the client fails to write the point in the background
+        listener.getValue().onWriteError(List.of(point.getValue()), new IOException("connection refused"));
+        assertThat(spool.getPendingCount(), is(1));
+
+        instance.store(ItemTestHelper.createNumberItem("number", 6));
+        verify(influxDBRepository, times(1)).write(any());
+        assertThat(spool.getPendingCount(), is(2));
+    }
 }
@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.influxdb.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.eclipse.jdt.annotation.DefaultLocation;
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * @author Karel Goderis - Initial contribution
+ */
+@NonNullByDefault(value = { DefaultLocation.PARAMETER, DefaultLocation.RETURN_TYPE })
+public class InfluxDBSpoolTest {
+    private static final Instant NOW = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+
+    private @TempDir File tempDir;
+    private File file;
+    private InfluxDBSpool instance;
+    private List<InfluxPoint> written = new ArrayList<>();
+
+    @BeforeEach
+    public void before() throws IOException {
+        file = new File(tempDir, "spool.dat");
+        instance = new InfluxDBSpool(file, 64 * 1024, Duration.ofDays(1));
+        instance.open();
+    }
+
+    @AfterEach
+    public void after() {
+        instance.close();
+        written.clear();
+    }
+
+    private static InfluxPoint point(String name, Instant time, Object value) {
+        return InfluxPoint.newBuilder(name).withTime(time).withValue(value).withTag("item", name).build();
+    }
+
+    @Test
+    public void replayShouldWriteSpooledPointsInOrder() {
+        instance.append(point("number", NOW, new BigDecimal("5.5")));
+        instance.append(point("switch", NOW.plusMillis(1), 1));
+        instance.append(point("datetime", NOW.plusMillis(2), 1600000000000L));
+        instance.append(point("string", NOW.plusMillis(3), "äöü"));
+        assertThat(instance.getPendingCount(), is(4));
+
+        int replayed = instance.replay(written::addAll, 3);
+
+        assertThat(replayed, is(4));
+        assertThat(instance.isEmpty(), is(true));
+        assertThat(written.stream().map(InfluxPoint::getMeasurementName).collect(Collectors.toList()),
+                contains("number", "switch", "datetime", "string"));
+        assertThat(written.stream().map(InfluxPoint::getValue).collect(Collectors.toList()),
+                contains(new BigDecimal("5.5"), 1, 1600000000000L, "äöü"));
+        assertThat(written.get(1).getTime(), equalTo(NOW.plusMillis(1)));
+        assertThat(written.get(0).getTags(), hasEntry("item", "number"));
+        assertThat(instance.getReplayedCount(), is(4L));
+    }
+
+    @Test
+    public void failedReplayShouldKeepPoints() {
+        instance.append(point("number", NOW, 1));
+        instance.append(point("number", NOW.plusMillis(1), 2));
+
+        int replayed = instance.replay(points -> {
+            throw new IllegalStateException("down");
+        }, 10);
+
+        assertThat(replayed, is(0));
+        assertThat(instance.getPendingCount(), is(2));
+        assertThat(instance.replay(written::addAll, 10), is(2));
+    }
+
+    @Test
+    public void spooledPointsShouldSurviveReopen() throws IOException {
+        instance.append(point("number", NOW, 1));
+        instance.append(point("number", NOW.plusMillis(1), 2));
+        instance.replay(points -> {
+            written.addAll(points);
+        }, 1);
+        instance.append(point("number", NOW.plusMillis(2), 3));
+        instance.close();
+        written.clear();
+
+        instance = new InfluxDBSpool(file, 64 * 1024, Duration.ofDays(1));
+        instance.open();
+
+        assertThat(instance.getPendingCount(), is(1));
+        instance.replay(written::addAll, 10);
+        assertThat(written.get(0).getValue(), equalTo(3));
+    }
+
+    @Test
+    public void fullSpoolShouldDropOldestPoints() {
+        for (int i = 0; i < 10000; i++) {
+            instance.append(point("number", NOW.plusMillis(i), i));
+        }
+
+        assertThat(instance.getDroppedCount(), is(greaterThan(0L)));
+        assertThat(instance.getPendingBytes(), is(lessThanOrEqualTo(64 * 1024)));
+        instance.replay(written::addAll, 1000);
+        assertThat(written.size() + instance.getDroppedCount(), is(10000L));
+        assertThat(written.get(written.size() - 1).getValue(), equalTo(9999));
+    }
+
+    @Test
+    public void replayShouldDropExpiredPoints() {
+        instance.append(point("number", NOW.minus(Duration.ofDays(2)), 1));
+        instance.append(point("number", NOW, 2));
+
+        instance.replay(written::addAll, 10);
+
+        assertThat(written.size(), is(1));
+        assertThat(written.get(0).getValue(), equalTo(2));
+        assertThat(instance.getExpiredCount(), is(1L));
+        assertThat(instance.isEmpty(), is(true));
+    }
+
+    @Test
+    public void longStringsShouldBeSpooled() throws IOException {
+        String value = "x".repeat(70000);
+        instance.close();
+        instance = new InfluxDBSpool(new File(tempDir, "large.dat"), 256 * 1024, Duration.ofDays(1));
+        instance.open();
+        instance.append(point("string", NOW, value));
+
+        instance.replay(written::addAll, 10);
+
+        assertThat(instance.getDroppedCount(), is(0L));
+        assertThat(written.get(0).getValue(), equalTo(value));
+    }
+
+    @Test
+    public void corruptedRecordShouldStopReading() throws IOException {
+        instance.append(point("number", NOW, 1));
+        instance.append(point("number", NOW.plusMillis(1), 2));
+        instance.close();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            // overwrite the length of the first record
+            raf.seek(24);
+            raf.writeInt(Integer.MAX_VALUE);
+        }
+
+        instance = new InfluxDBSpool(file, 64 * 1024, Duration.ofDays(1));
+        instance.open();
+
+        assertThat(instance.isEmpty(), is(true));
+        assertThat(instance.replay(written::addAll, 10), is(0));
+    }
+}
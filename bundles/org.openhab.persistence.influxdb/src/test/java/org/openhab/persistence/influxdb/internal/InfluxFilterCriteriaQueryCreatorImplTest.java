@@ -12,9 +12,10 @@
  */
 package org.openhab.persistence.influxdb.internal;
 
-import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 
+import java.time.Duration;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
@@ -159,6 +160,25 @@ public class InfluxFilterCriteriaQueryCreatorImplTest {
                         + "|> sort(desc:false, columns:[\"_time\"])"));
     }
 
+    @Test
+    public void testAggregation() {
+        FilterCriteria criteria = createBaseCriteria();
+        ZonedDateTime begin = ZonedDateTime.now().minus(30, ChronoUnit.DAYS);
+        criteria.setBeginDate(begin);
+
+        String queryV1 = instanceV1.createQuery(criteria, RETENTION_POLICY, InfluxDBAggregation.MEAN,
+                Duration.ofHours(1));
+        assertThat(queryV1, equalTo(String.format(
+                "SELECT mean(value) AS value FROM origin.sampleItem WHERE time >= '%s' GROUP BY time(3600s);",
+                begin.toInstant())));
+
+        String queryV2 = instanceV2.createQuery(criteria, RETENTION_POLICY, InfluxDBAggregation.MAX,
+                Duration.ofHours(1));
+        assertThat(queryV2, equalTo(String.format("from(bucket:\"origin\")\n\t" + "|> range(start:%s)\n\t"
+                + "|> filter(fn: (r) => r[\"_measurement\"] == \"sampleItem\")\n\t"
+                + "|> aggregateWindow(every:3600s, fn:max)", INFLUX2_DATE_FORMATTER.format(begin.toInstant()))));
+    }
+
     private FilterCriteria createBaseCriteria() {
         return createBaseCriteria(ITEM_NAME);
     }
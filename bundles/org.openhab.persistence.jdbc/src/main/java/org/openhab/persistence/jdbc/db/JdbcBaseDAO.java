@@ -13,16 +13,19 @@
 package org.openhab.persistence.jdbc.db;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 import org.knowm.yank.Yank;
 import org.openhab.core.items.GroupItem;
@@ -48,6 +51,7 @@ import org.openhab.core.persistence.HistoricItem;
 import org.openhab.core.types.State;
 import org.openhab.persistence.jdbc.model.ItemVO;
 import org.openhab.persistence.jdbc.model.ItemsVO;
+import org.openhab.persistence.jdbc.model.JdbcAggregation;
 import org.openhab.persistence.jdbc.model.JdbcHistoricItem;
 import org.openhab.persistence.jdbc.utils.DbMetaData;
 import org.openhab.persistence.jdbc.utils.StringUtilsExt;
@@ -79,6 +83,12 @@ public class JdbcBaseDAO {
     protected String sqlGetItemTables;
     protected String sqlCreateItemTable;
     protected String sqlInsertItemValue;
+    // replaces #tablePrimaryValue# when the time is bound as a parameter
+    protected String sqlTimeParameter = "?";
+
+    // statements already merged for a table, so that the same SQL string (and thus the driver's cached prepared
+    // statement) is reused instead of merging the templates again for every value
+    private final Map<String, String> sqlCache = new ConcurrentHashMap<>();
 
     /********
      * INIT *
@@ -306,6 +316,7 @@ public class JdbcBaseDAO {
         if (!vol.isEmpty()) {
             String sql = updateItemTableNamesProvider(vol);
             Yank.execute(sql, null);
+            clearSqlCache();
         }
     }
 
@@ -319,7 +330,7 @@ public class JdbcBaseDAO {
 
     public void doStoreItemValue(Item item, ItemVO vo) {
         ItemVO storedVO = storeItemValueProvider(item, vo);
-        String sql = StringUtilsExt.replaceArrayMerge(sqlInsertItemValue,
+        String sql = mergeCachedSql("insert", sqlInsertItemValue,
                 new String[] { "#tableName#", "#tablePrimaryValue#" },
                 new String[] { storedVO.getTableName(), sqlTypes.get("tablePrimaryValue") });
         Object[] params = new Object[] { storedVO.getValue(), storedVO.getValue() };
@@ -327,11 +338,34 @@ public class JdbcBaseDAO {
         Yank.execute(sql, params);
     }
 
+    /**
+     * Stores several prepared values of the same item table with one batch statement.
+     * The time of each value is bound as a parameter instead of using #tablePrimaryValue#.
+     *
+     * @param vol values prepared by {@link #prepareItemValue(Item, ItemVO)}, all for the same table
+     */
+    public void doStoreItemValues(List<ItemVO> vol) {
+        if (vol.isEmpty()) {
+            return;
+        }
+        String sql = mergeCachedSql("batchInsert", sqlInsertItemValue,
+                new String[] { "#tableName#", "#tablePrimaryValue#" },
+                new String[] { vol.get(0).getTableName(), sqlTimeParameter });
+        Object[][] params = new Object[vol.size()][];
+        for (int i = 0; i < vol.size(); i++) {
+            ItemVO vo = vol.get(i);
+            params[i] = new Object[] { timeParameter(vo), vo.getValue(), vo.getValue() };
+        }
+        logger.debug("JDBC::doStoreItemValues sql={} count={}", sql, vol.size());
+        Yank.executeBatch(sql, params);
+    }
+
     public List<HistoricItem> doGetHistItemFilterQuery(Item item, FilterCriteria filter, int numberDecimalcount,
             String table, String name) {
-        String sql = histItemFilterQueryProvider(filter, numberDecimalcount, table, name);
-        logger.debug("JDBC::doGetHistItemFilterQuery sql={}", sql);
-        List<Object[]> m = Yank.queryObjectArrays(sql, null);
+        List<Object> params = new ArrayList<>();
+        String sql = histItemFilterQueryProvider(filter, numberDecimalcount, table, name, params);
+        logger.debug("JDBC::doGetHistItemFilterQuery sql={} params={}", sql, params);
+        List<Object[]> m = Yank.queryObjectArrays(sql, params.toArray());
 
         List<HistoricItem> items = new ArrayList<>();
         for (int i = 0; i < m.size(); i++) {
@@ -340,38 +374,115 @@ public class JdbcBaseDAO {
         return items;
     }
 
+    /**
+     * Returns the result of a history query as a stream, reading at most fetchSize rows at once while iterating.
+     * Paged queries are already bounded by their page size and are read at once.
+     */
+    public Iterable<HistoricItem> doGetHistItemFilterStream(Item item, FilterCriteria filter, int numberDecimalcount,
+            String table, String name, int fetchSize) {
+        if (fetchSize <= 0 || filter.getPageSize() != 0x7fffffff) {
+            return doGetHistItemFilterQuery(item, filter, numberDecimalcount, table, name);
+        }
+        return new JdbcHistoricItemStream(this, item, filter, numberDecimalcount, table, name, fetchSize);
+    }
+
+    /**
+     * Returns the history of an item reduced to one value per time bucket, aggregated by the database. Items that are
+     * not numeric are always reduced to the last value of each bucket.
+     *
+     * @param aggregation the aggregate function
+     * @param bucketSeconds the width of a time bucket in seconds
+     * @return the aggregated values, or null if the database does not support aggregation
+     */
+    public List<HistoricItem> doGetHistItemAggregateQuery(Item item, FilterCriteria filter, int numberDecimalcount,
+            String table, String name, JdbcAggregation aggregation, long bucketSeconds) {
+        String bucket = sqlBucketExpression(bucketSeconds);
+        if (bucket == null) {
+            return null;
+        }
+        boolean numeric = item instanceof NumberItem || item instanceof DimmerItem
+                || item instanceof RollershutterItem;
+        JdbcAggregation function = numeric ? aggregation : JdbcAggregation.LAST;
+        List<Object> params = new ArrayList<>();
+        addHistItemFilterParams(filter, params);
+        // the bucket width changes with the time range of the query, so these statements are not cached
+        if (function == JdbcAggregation.LAST) {
+            // the filter is used in the subquery only
+            String sql = histItemLastQueryProvider(filter, table, bucket);
+            logger.debug("JDBC::doGetHistItemAggregateQuery sql={} params={}", sql, params);
+            List<Object[]> m = Yank.queryObjectArrays(sql, params.toArray());
+            List<HistoricItem> items = new ArrayList<>();
+            for (Object[] row : m) {
+                items.add(new JdbcHistoricItem(item.getName(), getState(item, row[1]), objectAsDate(row[0])));
+            }
+            return items;
+        }
+
+        String sql = histItemAggregateQueryProvider(filter, table, bucket, function);
+        logger.debug("JDBC::doGetHistItemAggregateQuery sql={} params={}", sql, params);
+        List<Object[]> m = Yank.queryObjectArrays(sql, params.toArray());
+        List<HistoricItem> items = new ArrayList<>();
+        for (Object[] row : m) {
+            items.add(new JdbcHistoricItem(item.getName(), getAggregateState(item, row[1], numberDecimalcount),
+                    objectAsDate(row[0])));
+        }
+        return items;
+    }
+
     /*************
      * Providers *
      *************/
-    static final DateTimeFormatter JDBC_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-
     private String histItemFilterQueryProvider(FilterCriteria filter, int numberDecimalcount, String table,
-            String simpleName) {
+            String simpleName, List<Object> params) {
         logger.debug(
                 "JDBC::getHistItemFilterQueryProvider filter = {}, numberDecimalcount = {}, table = {}, simpleName = {}",
                 filter.toString(), numberDecimalcount, table, simpleName);
 
-        String filterString = "";
-        if (filter.getBeginDate() != null) {
-            filterString += filterString.isEmpty() ? " WHERE" : " AND";
-            filterString += " TIME>'" + JDBC_DATE_FORMAT.format(filter.getBeginDate()) + "'";
+        boolean paged = filter.getPageSize() != 0x7fffffff;
+        addHistItemFilterParams(filter, params);
+        if (paged) {
+            params.add(filter.getPageNumber() * filter.getPageSize());
+            params.add(filter.getPageSize());
         }
-        if (filter.getEndDate() != null) {
-            filterString += filterString.isEmpty() ? " WHERE" : " AND";
-            filterString += " TIME<'" + JDBC_DATE_FORMAT.format(filter.getEndDate()) + "'";
-        }
-        filterString += (filter.getOrdering() == Ordering.ASCENDING) ? " ORDER BY time ASC" : " ORDER BY time DESC ";
-        if (filter.getPageSize() != 0x7fffffff) {
-            filterString += " LIMIT " + filter.getPageNumber() * filter.getPageSize() + "," + filter.getPageSize();
-        }
-        // SELECT time, ROUND(value,3) FROM number_item_0114 ORDER BY time DESC LIMIT 0,1
-        // rounding HALF UP
-        String queryString = "NUMBERITEM".equalsIgnoreCase(simpleName) && numberDecimalcount > -1
-                ? "SELECT time, ROUND(value," + numberDecimalcount + ") FROM " + table
-                : "SELECT time, value FROM " + table;
-        if (!filterString.isEmpty()) {
+        return cachedSql(histItemFilterQueryKey(filter, numberDecimalcount, table, simpleName), () -> {
+            String filterString = histItemFilterWhere(filter);
+            filterString += (filter.getOrdering() == Ordering.ASCENDING) ? " ORDER BY time ASC"
+                    : " ORDER BY time DESC ";
+            if (paged) {
+                filterString += " LIMIT ?,?";
+            }
+            // SELECT time, ROUND(value,3) FROM number_item_0114 ORDER BY time DESC LIMIT 0,1
+            // rounding HALF UP
+            String queryString = "NUMBERITEM".equalsIgnoreCase(simpleName) && numberDecimalcount > -1
+                    ? "SELECT time, ROUND(value," + numberDecimalcount + ") FROM " + table
+                    : "SELECT time, value FROM " + table;
             queryString += filterString;
-        }
+            logger.debug("JDBC::query queryString = {}", queryString);
+            return queryString;
+        });
+    }
+
+    /**
+     * SELECT MIN(time), AVG(value) FROM number_item_0114 WHERE TIME>? GROUP BY FLOOR(UNIX_TIMESTAMP(time) / 60)
+     * ORDER BY 1 ASC
+     */
+    private String histItemAggregateQueryProvider(FilterCriteria filter, String table, String bucket,
+            JdbcAggregation function) {
+        String queryString = "SELECT MIN(time), " + function + "(value) FROM " + table + histItemFilterWhere(filter)
+                + " GROUP BY " + bucket
+                + ((filter.getOrdering() == Ordering.ASCENDING) ? " ORDER BY 1 ASC" : " ORDER BY 1 DESC");
+        logger.debug("JDBC::query queryString = {}", queryString);
+        return queryString;
+    }
+
+    /**
+     * SELECT t.time, t.value FROM switch_item_0002 t INNER JOIN (SELECT MAX(time) AS last FROM switch_item_0002 WHERE
+     * TIME>? GROUP BY FLOOR(UNIX_TIMESTAMP(time) / 60)) b ON t.time = b.last ORDER BY t.time ASC
+     */
+    private String histItemLastQueryProvider(FilterCriteria filter, String table, String bucket) {
+        String queryString = "SELECT t.time, t.value FROM " + table + " t INNER JOIN (SELECT MAX(time) AS last FROM "
+                + table + histItemFilterWhere(filter) + " GROUP BY " + bucket + ") b ON t.time = b.last"
+                + ((filter.getOrdering() == Ordering.ASCENDING) ? " ORDER BY t.time ASC" : " ORDER BY t.time DESC");
         logger.debug("JDBC::query queryString = {}", queryString);
         return queryString;
     }
@@ -456,9 +567,83 @@ public class JdbcBaseDAO {
         return vo;
     }
 
+    /**
+     * Converts the state of the item into the value to be stored and captures the current time, so that the value can
+     * be stored later by {@link #doStoreItemValues(List)}.
+     */
+    public ItemVO prepareItemValue(Item item, ItemVO vo) {
+        ItemVO storedVO = storeItemValueProvider(item, vo);
+        storedVO.setTime(new Date());
+        return storedVO;
+    }
+
     /*****************
      * H E L P E R S *
      *****************/
+    protected Object timeParameter(ItemVO vo) {
+        return new Timestamp(vo.getTime().getTime());
+    }
+
+    protected Object timeParameter(ZonedDateTime date) {
+        return Timestamp.from(date.toInstant());
+    }
+
+    /**
+     * Returns the WHERE clause restricting the time of a history query to the filter's begin and end date, using a
+     * parameter for each date. The dates are added by {@link #addHistItemFilterParams(FilterCriteria, List)}.
+     */
+    protected String histItemFilterWhere(FilterCriteria filter) {
+        String filterString = "";
+        if (filter.getBeginDate() != null) {
+            filterString += " WHERE TIME>?";
+        }
+        if (filter.getEndDate() != null) {
+            filterString += filterString.isEmpty() ? " WHERE" : " AND";
+            filterString += " TIME<?";
+        }
+        return filterString;
+    }
+
+    protected void addHistItemFilterParams(FilterCriteria filter, List<Object> params) {
+        ZonedDateTime beginDate = filter.getBeginDate();
+        if (beginDate != null) {
+            params.add(timeParameter(beginDate));
+        }
+        ZonedDateTime endDate = filter.getEndDate();
+        if (endDate != null) {
+            params.add(timeParameter(endDate));
+        }
+    }
+
+    /**
+     * Returns the cache key of a history query, made of everything that changes its SQL (but not its parameters).
+     */
+    protected String histItemFilterQueryKey(FilterCriteria filter, int numberDecimalcount, String table,
+            String simpleName) {
+        return "select:" + table + ":" + simpleName + ":" + numberDecimalcount + ":" + (filter.getBeginDate() != null)
+                + ":" + (filter.getEndDate() != null) + ":" + filter.getOrdering() + ":"
+                + (filter.getPageSize() != 0x7fffffff);
+    }
+
+    protected String cachedSql(String key, Supplier<String> provider) {
+        return sqlCache.computeIfAbsent(key, k -> provider.get());
+    }
+
+    /**
+     * Returns a statement made from a template, cached by the name of the statement and all replacement values.
+     */
+    protected String mergeCachedSql(String name, String template, String[] placeholders, String[] values) {
+        return cachedSql(name + ":" + String.join(":", values),
+                () -> StringUtilsExt.replaceArrayMerge(template, placeholders, values));
+    }
+
+    /**
+     * Discards the cached statements, e.g. after the SQL types or the table names have changed.
+     */
+    public void clearSqlCache() {
+        sqlCache.clear();
+    }
+
     protected State getState(Item item, Object v) {
         String clazz = v.getClass().getSimpleName();
         logger.debug("JDBC::ItemResultHandler::handleResult getState value = '{}', getClass = '{}', clazz = '{}'",
@@ -493,6 +678,34 @@ public class JdbcBaseDAO {
         }
     }
 
+    /**
+     * Converts the result of an aggregate function, whose type may differ from the type of the value column.
+     */
+    protected State getAggregateState(Item item, Object v, int numberDecimalcount) {
+        if (!(v instanceof Number)) {
+            return getState(item, v);
+        }
+        BigDecimal value = new BigDecimal(v.toString());
+        if (item instanceof NumberItem) {
+            return new DecimalType(numberDecimalcount > -1 ? value.setScale(numberDecimalcount, RoundingMode.HALF_UP)
+                    : value);
+        } else if (item instanceof DimmerItem || item instanceof RollershutterItem) {
+            return new PercentType(value.setScale(0, RoundingMode.HALF_UP));
+        }
+        return getState(item, v);
+    }
+
+    /**
+     * Returns the expression grouping the rows of a table into buckets of the given width, e.g.
+     * FLOOR(UNIX_TIMESTAMP(time) / 60).
+     *
+     * @param bucketSeconds the width of a bucket in seconds
+     * @return the expression, or null if the database does not support aggregation
+     */
+    protected String sqlBucketExpression(long bucketSeconds) {
+        return null;
+    }
+
     protected ZonedDateTime objectAsDate(Object v) {
         if (v instanceof java.lang.String) {
             return ZonedDateTime.ofInstant(Timestamp.valueOf(v.toString()).toInstant(), ZoneId.systemDefault());
@@ -12,7 +12,6 @@
  */
 package org.openhab.persistence.jdbc.db;
 
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -145,7 +144,7 @@ public class JdbcDerbyDAO extends JdbcBaseDAO {
     @Override
     public void doStoreItemValue(Item item, ItemVO vo) {
         vo = storeItemValueProvider(item, vo);
-        String sql = StringUtilsExt.replaceArrayMerge(sqlInsertItemValue,
+        String sql = mergeCachedSql("insert", sqlInsertItemValue,
                 new String[] { "#tableName#", "#dbType#", "#tablePrimaryValue#" },
                 new String[] { vo.getTableName().toUpperCase(), vo.getDbType(), sqlTypes.get("tablePrimaryValue") });
         Object[] params = new Object[] { vo.getValue() };
@@ -153,11 +152,30 @@ public class JdbcDerbyDAO extends JdbcBaseDAO {
         Yank.execute(sql, params);
     }
 
+    @Override
+    public void doStoreItemValues(List<ItemVO> vol) {
+        if (vol.isEmpty()) {
+            return;
+        }
+        ItemVO first = vol.get(0);
+        String sql = mergeCachedSql("batchInsert", sqlInsertItemValue,
+                new String[] { "#tableName#", "#dbType#", "#tablePrimaryValue#" },
+                new String[] { first.getTableName().toUpperCase(), first.getDbType(), sqlTimeParameter });
+        Object[][] params = new Object[vol.size()][];
+        for (int i = 0; i < vol.size(); i++) {
+            ItemVO vo = vol.get(i);
+            params[i] = new Object[] { timeParameter(vo), vo.getValue() };
+        }
+        logger.debug("JDBC::doStoreItemValues sql={} count={}", sql, vol.size());
+        Yank.executeBatch(sql, params);
+    }
+
     @Override
     public List<HistoricItem> doGetHistItemFilterQuery(Item item, FilterCriteria filter, int numberDecimalcount,
             String table, String name) {
-        String sql = histItemFilterQueryProvider(filter, numberDecimalcount, table, name);
-        List<Object[]> m = Yank.queryObjectArrays(sql, null);
+        List<Object> params = new ArrayList<>();
+        String sql = histItemFilterQueryProvider(filter, numberDecimalcount, table, name, params);
+        List<Object[]> m = Yank.queryObjectArrays(sql, params.toArray());
 
         logger.debug("JDBC::doGetHistItemFilterQuery got Array length={}", m.size());
 
@@ -169,68 +187,69 @@ public class JdbcDerbyDAO extends JdbcBaseDAO {
         return items;
     }
 
+    @Override
+    public Iterable<HistoricItem> doGetHistItemFilterStream(Item item, FilterCriteria filter, int numberDecimalcount,
+            String table, String name, int fetchSize) {
+        // the paging of derby queries does not support reading the result in chunks
+        return doGetHistItemFilterQuery(item, filter, numberDecimalcount, table, name);
+    }
+
     /****************************
      * SQL generation Providers *
      ****************************/
-    static final DateTimeFormatter JDBC_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-
     /**
      * @param filter
      * @param numberDecimalcount
      * @param table
+     * @param params receives the parameters of the query
      * @return
      */
     private String histItemFilterQueryProvider(FilterCriteria filter, int numberDecimalcount, String table,
-            String simpleName) {
+            String simpleName, List<Object> params) {
         logger.debug(
                 "JDBC::getHistItemFilterQueryProvider filter = {}, numberDecimalcount = {}, table = {}, simpleName = {}",
                 StringUtilsExt.filterToString(filter), numberDecimalcount, table, simpleName);
 
-        String filterString = "";
-        if (filter.getBeginDate() != null) {
-            filterString += filterString.isEmpty() ? " WHERE" : " AND";
-            filterString += " TIME>'" + JDBC_DATE_FORMAT.format(filter.getBeginDate()) + "'";
-        }
-        if (filter.getEndDate() != null) {
-            filterString += filterString.isEmpty() ? " WHERE" : " AND";
-            filterString += " TIME<'" + JDBC_DATE_FORMAT.format(filter.getEndDate()) + "'";
-        }
-        filterString += (filter.getOrdering() == Ordering.ASCENDING) ? " ORDER BY time ASC" : " ORDER BY time DESC";
-        if (filter.getPageSize() != 0x7fffffff) {
-            // TODO: TESTING!!!
-            // filterString += " LIMIT " + filter.getPageNumber() *
-            // filter.getPageSize() + "," + filter.getPageSize();
-            // SELECT time, value FROM ohscriptfiles_sw_ace_paths_0001 ORDER BY
-            // time DESC OFFSET 1 ROWS FETCH NEXT 0 ROWS ONLY
-            // filterString += " OFFSET " + filter.getPageSize() +" ROWS FETCH
-            // FIRST||NEXT " + filter.getPageNumber() * filter.getPageSize() + "
-            // ROWS ONLY";
-            filterString += " OFFSET " + filter.getPageSize() + " ROWS FETCH FIRST "
-                    + (filter.getPageNumber() * filter.getPageSize() + 1) + " ROWS ONLY";
+        boolean paged = filter.getPageSize() != 0x7fffffff;
+        addHistItemFilterParams(filter, params);
+        if (paged) {
+            params.add(filter.getPageSize());
+            params.add(filter.getPageNumber() * filter.getPageSize() + 1);
         }
+        return cachedSql(histItemFilterQueryKey(filter, numberDecimalcount, table, simpleName), () -> {
+            String filterString = histItemFilterWhere(filter);
+            filterString += (filter.getOrdering() == Ordering.ASCENDING) ? " ORDER BY time ASC"
+                    : " ORDER BY time DESC";
+            if (paged) {
+                // TODO: TESTING!!!
+                // filterString += " LIMIT " + filter.getPageNumber() *
+                // filter.getPageSize() + "," + filter.getPageSize();
+                // SELECT time, value FROM ohscriptfiles_sw_ace_paths_0001 ORDER BY
+                // time DESC OFFSET 1 ROWS FETCH NEXT 0 ROWS ONLY
+                filterString += " OFFSET ? ROWS FETCH FIRST ? ROWS ONLY";
+            }
 
-        // http://www.seemoredata.com/en/showthread.php?132-Round-function-in-Apache-Derby
-        // simulated round function in Derby: CAST(value 0.0005 AS DECIMAL(15,3))
-        // simulated round function in Derby: "CAST(value 0.0005 AS DECIMAL(15,"+numberDecimalcount+"))"
+            // http://www.seemoredata.com/en/showthread.php?132-Round-function-in-Apache-Derby
+            // simulated round function in Derby: CAST(value 0.0005 AS DECIMAL(15,3))
+            // simulated round function in Derby: "CAST(value 0.0005 AS DECIMAL(15,"+numberDecimalcount+"))"
 
-        String queryString = "SELECT time,";
-        if ("NUMBERITEM".equalsIgnoreCase(simpleName) && numberDecimalcount > -1) {
-            // rounding HALF UP
-            queryString += "CAST(value 0.";
-            for (int i = 0; i < numberDecimalcount; i++) {
-                queryString += "0";
+            String queryString = "SELECT time,";
+            if ("NUMBERITEM".equalsIgnoreCase(simpleName) && numberDecimalcount > -1) {
+                // rounding HALF UP
+                queryString += "CAST(value 0.";
+                for (int i = 0; i < numberDecimalcount; i++) {
+                    queryString += "0";
+                }
+                queryString += "5 AS DECIMAL(31," + numberDecimalcount + "))"; // 31 is DECIMAL max precision
+                                                                               // https://db.apache.org/derby/docs/10.0/manuals/develop/develop151.html
+            } else {
+                queryString += " value FROM " + table.toUpperCase();
             }
-            queryString += "5 AS DECIMAL(31," + numberDecimalcount + "))"; // 31 is DECIMAL max precision
-                                                                           // https://db.apache.org/derby/docs/10.0/manuals/develop/develop151.html
-        } else {
-            queryString += " value FROM " + table.toUpperCase();
-        }
 
-        if (!filterString.isEmpty()) {
             queryString += filterString;
-        }
-        logger.debug("JDBC::query queryString = {}", queryString);
-        return queryString;
+            logger.debug("JDBC::query queryString = {}", queryString);
+            return queryString;
+        });
     }
 
     /*****************
@@ -12,10 +12,11 @@
  */
 package org.openhab.persistence.jdbc.db;
 
+import java.util.List;
+
 import org.knowm.yank.Yank;
 import org.openhab.core.items.Item;
 import org.openhab.persistence.jdbc.model.ItemVO;
-import org.openhab.persistence.jdbc.utils.StringUtilsExt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -73,7 +74,7 @@ public class JdbcH2DAO extends JdbcBaseDAO {
     @Override
     public void doStoreItemValue(Item item, ItemVO vo) {
         vo = storeItemValueProvider(item, vo);
-        String sql = StringUtilsExt.replaceArrayMerge(sqlInsertItemValue,
+        String sql = mergeCachedSql("insert", sqlInsertItemValue,
                 new String[] { "#tableName#", "#dbType#", "#tablePrimaryValue#" },
                 new String[] { vo.getTableName(), vo.getDbType(), sqlTypes.get("tablePrimaryValue") });
         Object[] params = new Object[] { vo.getValue() };
@@ -81,6 +82,24 @@ public class JdbcH2DAO extends JdbcBaseDAO {
         Yank.execute(sql, params);
     }
 
+    @Override
+    public void doStoreItemValues(List<ItemVO> vol) {
+        if (vol.isEmpty()) {
+            return;
+        }
+        ItemVO first = vol.get(0);
+        String sql = mergeCachedSql("batchInsert", sqlInsertItemValue,
+                new String[] { "#tableName#", "#dbType#", "#tablePrimaryValue#" },
+                new String[] { first.getTableName(), first.getDbType(), sqlTimeParameter });
+        Object[][] params = new Object[vol.size()][];
+        for (int i = 0; i < vol.size(); i++) {
+            ItemVO vo = vol.get(i);
+            params[i] = new Object[] { timeParameter(vo), vo.getValue() };
+        }
+        logger.debug("JDBC::doStoreItemValues sql={} count={}", sql, vol.size());
+        Yank.executeBatch(sql, params);
+    }
+
     /****************************
      * SQL generation Providers *
      ****************************/
@@ -88,6 +107,10 @@ public class JdbcH2DAO extends JdbcBaseDAO {
     /*****************
      * H E L P E R S *
      *****************/
+    @Override
+    protected String sqlBucketExpression(long bucketSeconds) {
+        return "FLOOR(DATEDIFF('SECOND', TIMESTAMP '1970-01-01 00:00:00', time) / " + bucketSeconds + ")";
+    }
 
     /******************************
      * public Getters and Setters *
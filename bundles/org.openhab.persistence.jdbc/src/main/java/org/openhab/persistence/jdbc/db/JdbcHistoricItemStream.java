@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.jdbc.db;
+
+import java.time.ZonedDateTime;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.openhab.core.items.Item;
+import org.openhab.core.persistence.FilterCriteria;
+import org.openhab.core.persistence.FilterCriteria.Ordering;
+import org.openhab.core.persistence.HistoricItem;
+
+/**
+ * Streams the result of a history query: the rows are read lazily while iterating, in chunks of at most fetchSize
+ * rows. Each chunk continues after the time of the last row of the previous one (the time is the primary key), so only
+ * one chunk is held in memory and no database connection is kept open between chunks, even if the caller stops
+ * iterating early.
+ *
+ * If a chunk cannot be read, the iteration fails with an {@link IllegalStateException}, so that a partial result is
+ * not mistaken for a complete one.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+public class JdbcHistoricItemStream implements Iterable<HistoricItem> {
+
+    /**
+     * Is notified when an iteration has read all rows, or has failed.
+     */
+    public interface StreamListener {
+        void completed();
+
+        void failed(RuntimeException e);
+    }
+
+    private final JdbcBaseDAO dao;
+    private final Item item;
+    private final FilterCriteria filter;
+    private final int numberDecimalcount;
+    private final String table;
+    private final String name;
+    private final int fetchSize;
+    private volatile StreamListener listener;
+
+    public JdbcHistoricItemStream(JdbcBaseDAO dao, Item item, FilterCriteria filter, int numberDecimalcount,
+            String table, String name, int fetchSize) {
+        this.dao = dao;
+        this.item = item;
+        this.filter = filter;
+        this.numberDecimalcount = numberDecimalcount;
+        this.table = table;
+        this.name = name;
+        this.fetchSize = fetchSize;
+    }
+
+    public void setListener(StreamListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public Iterator<HistoricItem> iterator() {
+        return new Iterator<HistoricItem>() {
+            private Iterator<HistoricItem> chunk = Collections.emptyIterator();
+            private ZonedDateTime lastTime;
+            private boolean exhausted = false;
+
+            @Override
+            public boolean hasNext() {
+                while (!chunk.hasNext() && !exhausted) {
+                    List<HistoricItem> rows;
+                    try {
+                        rows = dao.doGetHistItemFilterQuery(item, nextChunkFilter(lastTime), numberDecimalcount,
+                                table, name);
+                    } catch (RuntimeException e) {
+                        exhausted = true;
+                        StreamListener l = listener;
+                        if (l != null) {
+                            l.failed(e);
+                        }
+                        throw new IllegalStateException(
+                                "Query result for item '" + name + "' is incomplete: " + e.getMessage(), e);
+                    }
+                    exhausted = rows.size() < fetchSize;
+                    if (!rows.isEmpty()) {
+                        lastTime = rows.get(rows.size() - 1).getTimestamp();
+                    }
+                    chunk = rows.iterator();
+                    if (exhausted) {
+                        StreamListener l = listener;
+                        if (l != null) {
+                            l.completed();
+                        }
+                    }
+                }
+                return chunk.hasNext();
+            }
+
+            @Override
+            public HistoricItem next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return chunk.next();
+            }
+        };
+    }
+
+    private FilterCriteria nextChunkFilter(ZonedDateTime lastTime) {
+        FilterCriteria chunkFilter = new FilterCriteria();
+        chunkFilter.setItemName(filter.getItemName());
+        chunkFilter.setOrdering(filter.getOrdering());
+        chunkFilter.setBeginDate(filter.getBeginDate());
+        chunkFilter.setEndDate(filter.getEndDate());
+        if (lastTime != null) {
+            // begin and end date are exclusive
+            if (filter.getOrdering() == Ordering.ASCENDING) {
+                chunkFilter.setBeginDate(lastTime);
+            } else {
+                chunkFilter.setEndDate(lastTime);
+            }
+        }
+        chunkFilter.setPageNumber(0);
+        chunkFilter.setPageSize(fetchSize);
+        return chunkFilter;
+    }
+}
@@ -99,6 +99,10 @@ public class JdbcMariadbDAO extends JdbcBaseDAO {
     /*****************
      * H E L P E R S *
      *****************/
+    @Override
+    protected String sqlBucketExpression(long bucketSeconds) {
+        return "FLOOR(UNIX_TIMESTAMP(time) / " + bucketSeconds + ")";
+    }
 
     /******************************
      * public Getters and Setters *
@@ -104,6 +104,10 @@ public class JdbcMysqlDAO extends JdbcBaseDAO {
     /*****************
      * H E L P E R S *
      *****************/
+    @Override
+    protected String sqlBucketExpression(long bucketSeconds) {
+        return "FLOOR(UNIX_TIMESTAMP(time) / " + bucketSeconds + ")";
+    }
 
     /******************************
      * public Getters and Setters *
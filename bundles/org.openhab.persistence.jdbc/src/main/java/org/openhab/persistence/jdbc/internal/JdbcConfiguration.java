@@ -22,6 +22,7 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.openhab.persistence.jdbc.db.JdbcBaseDAO;
+import org.openhab.persistence.jdbc.model.JdbcAggregation;
 import org.openhab.persistence.jdbc.utils.MovingAverage;
 import org.openhab.persistence.jdbc.utils.StringUtilsExt;
 import org.slf4j.Logger;
@@ -53,6 +54,9 @@ public class JdbcConfiguration {
     // private String user;
     // private String password;
     private int numberDecimalcount = 3;
+    private int queryFetchSize = 10000;
+    private JdbcAggregation queryAggregation = null;
+    private int queryAggregationPoints = 500;
     private boolean tableUseRealItemNames = false;
     private String tableNamePrefix = "item";
     private int tableIdDigitCount = 4;
@@ -60,6 +64,12 @@ public class JdbcConfiguration {
 
     private int errReconnectThreshold = 0;
 
+    private boolean writeBehind = false;
+    private int writeBehindBatchSize = 100;
+    private int writeBehindInterval = 1000;
+    private int writeBehindMaxQueueSize = 10000;
+    private JdbcWriteBehindQueue.OverflowPolicy writeBehindOverflowPolicy = JdbcWriteBehindQueue.OverflowPolicy.DROP_NEWEST;
+
     public int timerCount = 0;
     public int time1000Statements = 0;
     public long timer1000 = 0;
@@ -155,6 +165,28 @@ public class JdbcConfiguration {
             logger.debug("JDBC::updateConfig: numberDecimalcount={}", numberDecimalcount);
         }
 
+        String qf = (String) configuration.get("queryFetchSize");
+        if (qf != null && !qf.isBlank() && isNumericPattern.matcher(qf).matches()) {
+            queryFetchSize = Integer.parseInt(qf);
+            logger.debug("JDBC::updateConfig: queryFetchSize={}", queryFetchSize);
+        }
+
+        String qa = (String) configuration.get("queryAggregation");
+        if (qa != null && !qa.isBlank() && !"NONE".equalsIgnoreCase(qa.trim())) {
+            try {
+                queryAggregation = JdbcAggregation.valueOf(qa.trim().toUpperCase());
+                logger.debug("JDBC::updateConfig: queryAggregation={}", queryAggregation);
+            } catch (IllegalArgumentException e) {
+                logger.warn("JDBC::updateConfig: unknown queryAggregation '{}', queries are not aggregated", qa);
+            }
+        }
+
+        String qp = (String) configuration.get("queryAggregationPoints");
+        if (qp != null && !qp.isBlank() && isNumericPattern.matcher(qp).matches()) {
+            queryAggregationPoints = Math.max(1, Integer.parseInt(qp));
+            logger.debug("JDBC::updateConfig: queryAggregationPoints={}", queryAggregationPoints);
+        }
+
         String rn = (String) configuration.get("tableUseRealItemNames");
         if (rn != null && !rn.isBlank()) {
             tableUseRealItemNames = "true".equals(rn) ? Boolean.parseBoolean(rn) : false;
@@ -173,6 +205,41 @@ public class JdbcConfiguration {
             logger.debug("JDBC::updateConfig: rebuildTableNames={}", rebuildTableNames);
         }
 
+        String wb = (String) configuration.get("writeBehind");
+        if (wb != null && !wb.isBlank()) {
+            writeBehind = Boolean.parseBoolean(wb);
+            logger.debug("JDBC::updateConfig: writeBehind={}", writeBehind);
+        }
+
+        String wbs = (String) configuration.get("writeBehindBatchSize");
+        if (wbs != null && !wbs.isBlank() && isNumericPattern.matcher(wbs).matches()) {
+            writeBehindBatchSize = Math.max(1, Integer.parseInt(wbs));
+            logger.debug("JDBC::updateConfig: writeBehindBatchSize={}", writeBehindBatchSize);
+        }
+
+        String wbi = (String) configuration.get("writeBehindInterval");
+        if (wbi != null && !wbi.isBlank() && isNumericPattern.matcher(wbi).matches()) {
+            writeBehindInterval = Math.max(1, Integer.parseInt(wbi));
+            logger.debug("JDBC::updateConfig: writeBehindInterval={}", writeBehindInterval);
+        }
+
+        String wbq = (String) configuration.get("writeBehindMaxQueueSize");
+        if (wbq != null && !wbq.isBlank() && isNumericPattern.matcher(wbq).matches()) {
+            writeBehindMaxQueueSize = Math.max(1, Integer.parseInt(wbq));
+            logger.debug("JDBC::updateConfig: writeBehindMaxQueueSize={}", writeBehindMaxQueueSize);
+        }
+
+        String wbo = (String) configuration.get("writeBehindOverflowPolicy");
+        if (wbo != null && !wbo.isBlank()) {
+            try {
+                writeBehindOverflowPolicy = JdbcWriteBehindQueue.OverflowPolicy.valueOf(wbo.trim().toUpperCase());
+                logger.debug("JDBC::updateConfig: writeBehindOverflowPolicy={}", writeBehindOverflowPolicy);
+            } catch (IllegalArgumentException e) {
+                logger.warn("JDBC::updateConfig: unknown writeBehindOverflowPolicy '{}', using {}", wbo,
+                        writeBehindOverflowPolicy);
+            }
+        }
+
         // undocumented
         String ac = (String) configuration.get("maximumPoolSize");
         if (ac != null && !ac.isBlank()) {
@@ -342,6 +409,18 @@ public class JdbcConfiguration {
         return numberDecimalcount;
     }
 
+    public int getQueryFetchSize() {
+        return queryFetchSize;
+    }
+
+    public JdbcAggregation getQueryAggregation() {
+        return queryAggregation;
+    }
+
+    public int getQueryAggregationPoints() {
+        return queryAggregationPoints;
+    }
+
     public boolean getTableUseRealItemNames() {
         return tableUseRealItemNames;
     }
@@ -350,6 +429,26 @@ public class JdbcConfiguration {
         return tableIdDigitCount;
     }
 
+    public boolean isWriteBehind() {
+        return writeBehind;
+    }
+
+    public int getWriteBehindBatchSize() {
+        return writeBehindBatchSize;
+    }
+
+    public int getWriteBehindInterval() {
+        return writeBehindInterval;
+    }
+
+    public int getWriteBehindMaxQueueSize() {
+        return writeBehindMaxQueueSize;
+    }
+
+    public JdbcWriteBehindQueue.OverflowPolicy getWriteBehindOverflowPolicy() {
+        return writeBehindOverflowPolicy;
+    }
+
     public JdbcBaseDAO getDBDAO() {
         return dBDAO;
     }
@@ -373,6 +472,7 @@ public class JdbcConfiguration {
         dBDAO.initAfterFirstDbConnection();
         // Running once again to prior external configured SqlTypes!
         setSqlTypes();
+        dBDAO.clearSqlCache();
         this.dbConnected = dbConnected;
     }
 
@@ -0,0 +1,225 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.jdbc.internal;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Thread safe index of the item tables: maps item names to table names.
+ *
+ * Lookups do not lock. A missing table is created only once, even if several threads store values of the same new
+ * item at the same time, while lookups and table creation for other items are not blocked.
+ *
+ * The index can be saved to and restored from a local snapshot, so that it is available before the database has
+ * been read. A restored index is not {@link #isLoaded() loaded}, it still has to be read from the database.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+public class JdbcItemTableIndex {
+    private final Logger logger = LoggerFactory.getLogger(JdbcItemTableIndex.class);
+
+    private static final String SIGNATURE_KEY = "#signature";
+
+    private volatile Map<String, String> tables = new ConcurrentHashMap<>();
+    private final Map<String, Object> creationLocks = new ConcurrentHashMap<>();
+    // guards the replacement of the tables and the items created since the last load
+    private final Object loadLock = new Object();
+    private final Set<String> createdSinceLoad = new HashSet<>();
+    private volatile boolean loaded = false;
+    private volatile boolean restored = false;
+    private volatile boolean dirty = false;
+
+    public String get(String itemName) {
+        return tables.get(itemName);
+    }
+
+    public void put(String itemName, String tableName) {
+        tables.put(itemName, tableName);
+        dirty = true;
+    }
+
+    public int size() {
+        return tables.size();
+    }
+
+    public Set<String> getItemNames() {
+        return Collections.unmodifiableSet(tables.keySet());
+    }
+
+    /**
+     * Returns the table of an item, creating it if it does not exist yet.
+     *
+     * @param itemName the name of the item
+     * @param creator creates the table and returns its name, or null if it could not be created
+     * @return the table name or null
+     */
+    public String getOrCreate(String itemName, Function<String, String> creator) {
+        String tableName = tables.get(itemName);
+        if (tableName != null) {
+            return tableName;
+        }
+        // the lock is kept, so that a failed creation is never retried by two threads at once
+        Object lock = creationLocks.computeIfAbsent(itemName, name -> new Object());
+        synchronized (lock) {
+            tableName = tables.get(itemName);
+            if (tableName == null) {
+                tableName = creator.apply(itemName);
+                if (tableName != null) {
+                    synchronized (loadLock) {
+                        put(itemName, tableName);
+                        createdSinceLoad.add(itemName);
+                    }
+                }
+            }
+            return tableName;
+        }
+    }
+
+    /**
+     * Replaces the content of the index by the tables read from the database. The new index is built aside and swapped
+     * in at once, so that lookups never see a partial index. Tables created while the database was read are kept.
+     *
+     * An empty result does not replace a non-empty index, as it is more likely a failed read than a database without
+     * item tables.
+     *
+     * @param itemTables the table names per item name
+     */
+    public void load(Map<String, String> itemTables) {
+        synchronized (loadLock) {
+            Map<String, String> current = tables;
+            if (itemTables.isEmpty() && !current.isEmpty()) {
+                logger.warn("JDBC::load: no item tables read from the database, keeping the {} known tables",
+                        current.size());
+            } else {
+                Map<String, String> fresh = new ConcurrentHashMap<>(itemTables);
+                for (String itemName : createdSinceLoad) {
+                    String tableName = current.get(itemName);
+                    if (tableName != null) {
+                        fresh.putIfAbsent(itemName, tableName);
+                    }
+                }
+                tables = fresh;
+            }
+            createdSinceLoad.clear();
+            loaded = true;
+            restored = false;
+            dirty = true;
+        }
+    }
+
+    /**
+     * @return true if the index has been read from the database since the last {@link #invalidate()}
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * @return true if the index has been restored from a snapshot but not been read from the database yet
+     */
+    public boolean isRestored() {
+        return restored;
+    }
+
+    /**
+     * Marks the index to be read from the database again, e.g. after the configuration has changed. The current
+     * entries are kept until then.
+     */
+    public void invalidate() {
+        loaded = false;
+        restored = false;
+    }
+
+    /**
+     * Restores the index from a snapshot, unless it has already been read from the database.
+     *
+     * @param file the snapshot file
+     * @param signature identifies the database and table naming the snapshot must have been written for
+     * @return true if the index has been restored
+     */
+    public boolean loadSnapshot(File file, String signature) {
+        if (loaded || !file.isFile()) {
+            return false;
+        }
+        Properties snapshot = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            snapshot.load(in);
+        } catch (IOException e) {
+            logger.debug("JDBC::loadSnapshot: could not read '{}': {}", file, e.getMessage());
+            return false;
+        }
+        if (!signature.equals(snapshot.getProperty(SIGNATURE_KEY))) {
+            logger.debug("JDBC::loadSnapshot: ignoring '{}', it was written for another database or configuration",
+                    file);
+            return false;
+        }
+        snapshot.remove(SIGNATURE_KEY);
+        synchronized (loadLock) {
+            if (loaded) {
+                return false;
+            }
+            for (String itemName : snapshot.stringPropertyNames()) {
+                tables.putIfAbsent(itemName, snapshot.getProperty(itemName));
+            }
+            restored = true;
+        }
+        logger.debug("JDBC::loadSnapshot: restored {} item tables from '{}'", tables.size(), file);
+        return true;
+    }
+
+    /**
+     * Saves the index to a snapshot if it has changed since the last save.
+     *
+     * @param file the snapshot file
+     * @param signature identifies the database and table naming of the index
+     */
+    public void saveSnapshot(File file, String signature) {
+        if (!dirty || !loaded) {
+            return;
+        }
+        dirty = false;
+        Properties snapshot = new Properties();
+        snapshot.putAll(tables);
+        snapshot.setProperty(SIGNATURE_KEY, signature);
+        try {
+            File folder = file.getAbsoluteFile().getParentFile();
+            folder.mkdirs();
+            File tmp = File.createTempFile(file.getName(), ".tmp", folder);
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                snapshot.store(out, "JDBC persistence item tables");
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            dirty = true;
+            logger.debug("JDBC::saveSnapshot: could not write '{}': {}", file, e.getMessage());
+        }
+    }
+}
@@ -12,20 +12,28 @@
  */
 package org.openhab.persistence.jdbc.internal;
 
+import java.io.File;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.knowm.yank.Yank;
+import org.openhab.core.OpenHAB;
+import org.openhab.core.common.ThreadPoolManager;
 import org.openhab.core.items.Item;
 import org.openhab.core.persistence.FilterCriteria;
 import org.openhab.core.persistence.HistoricItem;
 import org.openhab.core.persistence.PersistenceItemInfo;
+import org.openhab.persistence.jdbc.db.JdbcHistoricItemStream;
 import org.openhab.persistence.jdbc.model.ItemVO;
 import org.openhab.persistence.jdbc.model.ItemsVO;
+import org.openhab.persistence.jdbc.model.JdbcAggregation;
 import org.openhab.persistence.jdbc.model.JdbcPersistenceItemInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,13 +47,18 @@ public class JdbcMapper {
     private final Logger logger = LoggerFactory.getLogger(JdbcMapper.class);
 
     // Error counter - used to reconnect to database on error
-    protected int errCnt;
+    protected final AtomicInteger errCnt = new AtomicInteger();
     protected boolean initialized = false;
     protected JdbcConfiguration conf = null;
-    protected final Map<String, String> sqlTables = new HashMap<>();
+    protected final JdbcItemTableIndex sqlTables = new JdbcItemTableIndex();
+    protected volatile JdbcWriteBehindQueue writeBehindQueue = null;
+    private final AtomicBoolean tableIndexRefreshing = new AtomicBoolean();
     private long afterAccessMin = 10000;
     private long afterAccessMax = 0;
+    private static final String JDBC_THREADPOOL_NAME = "jdbc";
     private static final String ITEM_NAME_PATTERN = "[^a-zA-Z_0-9\\-]";
+    private static final File TABLE_INDEX_SNAPSHOT = new File(
+            OpenHAB.getUserDataFolder() + File.separator + "jdbc" + File.separator + "itemtables.properties");
 
     /*****************
      * MAPPER ITEMS *
@@ -145,23 +158,81 @@ public class JdbcMapper {
             logger.error("JDBC::store: Unable to store item '{}'.", item.getName());
             return item;
         }
+        JdbcWriteBehindQueue queue = writeBehindQueue;
+        if (queue != null) {
+            // the value and its time are captured now, the insert is done later in a batch
+            queue.add(conf.getDBDAO().prepareItemValue(item, new ItemVO(tableName, null)));
+            return item;
+        }
         long timerStart = System.currentTimeMillis();
         conf.getDBDAO().doStoreItemValue(item, new ItemVO(tableName, null));
         logTime("storeItemValue", timerStart, System.currentTimeMillis());
-        errCnt = 0;
+        errCnt.set(0);
         return item;
     }
 
-    public List<HistoricItem> getHistItemFilterQuery(FilterCriteria filter, int numberDecimalcount, String table,
+    public void storeItemValues(String tableName, List<ItemVO> vol) {
+        logger.debug("JDBC::storeItemValues: table={} count={}", tableName, vol.size());
+        long timerStart = System.currentTimeMillis();
+        try {
+            conf.getDBDAO().doStoreItemValues(vol);
+        } catch (RuntimeException e) {
+            handleStoreError();
+            throw e;
+        }
+        logTime("storeItemValues", timerStart, System.currentTimeMillis());
+        errCnt.set(0);
+    }
+
+    /**
+     * Counts a failed write and reconnects to the database when errReconnectThreshold failures have followed each
+     * other.
+     */
+    private void handleStoreError() {
+        int errors = errCnt.incrementAndGet();
+        int threshold = conf.getErrReconnectThreshold();
+        // only one of the failing threads reconnects
+        if (threshold > 0 && errors >= threshold && errCnt.compareAndSet(errors, 0)) {
+            logger.warn("JDBC::storeItemValues: {} failed writes, reconnecting to database", errors);
+            closeConnection();
+            openConnection();
+        }
+    }
+
+    public Iterable<HistoricItem> getHistItemFilterQuery(FilterCriteria filter, int numberDecimalcount, String table,
             Item item) {
         logger.debug(
                 "JDBC::getHistItemFilterQuery filter='{}' numberDecimalcount='{}' table='{}' item='{}' itemName='{}'",
                 (filter != null), numberDecimalcount, table, item, item.getName());
         if (table != null) {
+            long bucketSeconds = getAggregationBucketSeconds(filter);
+            if (bucketSeconds > 1) {
+                List<HistoricItem> r = getHistItemAggregateQuery(filter, numberDecimalcount, table, item,
+                        conf.getQueryAggregation(), bucketSeconds);
+                if (r != null) {
+                    return r;
+                }
+            }
             long timerStart = System.currentTimeMillis();
-            List<HistoricItem> r = conf.getDBDAO().doGetHistItemFilterQuery(item, filter, numberDecimalcount, table,
-                    item.getName());
+            Iterable<HistoricItem> r = conf.getDBDAO().doGetHistItemFilterStream(item, filter, numberDecimalcount,
+                    table, item.getName(), conf.getQueryFetchSize());
             logTime("insertItemValue", timerStart, System.currentTimeMillis());
+            if (r instanceof JdbcHistoricItemStream) {
+                // the rows are read while iterating, so success or failure is only known then
+                ((JdbcHistoricItemStream) r).setListener(new JdbcHistoricItemStream.StreamListener() {
+                    @Override
+                    public void completed() {
+                        errCnt.set(0);
+                    }
+
+                    @Override
+                    public void failed(RuntimeException e) {
+                        errCnt.incrementAndGet();
+                        logger.warn("JDBC::getHistItemFilterQuery: reading query result for item '{}' failed: {}",
+                                item.getName(), e.getMessage());
+                    }
+                });
+            }
             return r;
         } else {
             logger.error("JDBC::getHistItemFilterQuery: TABLE is NULL; cannot get data from non-existent table.");
@@ -169,6 +240,38 @@ public class JdbcMapper {
         return null;
     }
 
+    /**
+     * Returns the history of an item reduced by the database to one value per time bucket.
+     *
+     * @return the aggregated values, or null if the database does not support aggregation
+     */
+    public List<HistoricItem> getHistItemAggregateQuery(FilterCriteria filter, int numberDecimalcount, String table,
+            Item item, JdbcAggregation aggregation, long bucketSeconds) {
+        logger.debug("JDBC::getHistItemAggregateQuery table='{}' itemName='{}' aggregation={} bucketSeconds={}",
+                table, item.getName(), aggregation, bucketSeconds);
+        long timerStart = System.currentTimeMillis();
+        List<HistoricItem> r = conf.getDBDAO().doGetHistItemAggregateQuery(item, filter, numberDecimalcount, table,
+                item.getName(), aggregation, bucketSeconds);
+        logTime("getHistItemAggregateQuery", timerStart, System.currentTimeMillis());
+        return r;
+    }
+
+    /**
+     * Returns the bucket width for queries that are aggregated in the database, so that they return about
+     * queryAggregationPoints values. Only unpaged queries with a begin date are aggregated.
+     *
+     * @return the bucket width in seconds, or 0 if the query is not aggregated
+     */
+    private long getAggregationBucketSeconds(FilterCriteria filter) {
+        ZonedDateTime beginDate = filter.getBeginDate();
+        if (conf.getQueryAggregation() == null || beginDate == null || filter.getPageSize() != 0x7fffffff) {
+            return 0;
+        }
+        ZonedDateTime endDate = filter.getEndDate() != null ? filter.getEndDate() : ZonedDateTime.now();
+        long rangeSeconds = endDate.toEpochSecond() - beginDate.toEpochSecond();
+        return rangeSeconds / conf.getQueryAggregationPoints();
+    }
+
     /***********************
      * DATABASE CONNECTION *
      ***********************/
@@ -203,15 +306,51 @@ public class JdbcMapper {
         boolean p = pingDB();
         if (p) {
             logger.debug("JDBC::checkDBAcessability, first try connection: {}", p);
-            return (p && !(conf.getErrReconnectThreshold() > 0 && errCnt <= conf.getErrReconnectThreshold()));
         } else {
             // second
             p = pingDB();
             logger.debug("JDBC::checkDBAcessability, second try connection: {}", p);
-            return (p && !(conf.getErrReconnectThreshold() > 0 && errCnt <= conf.getErrReconnectThreshold()));
+        }
+        if (p && conf.valid && !sqlTables.isLoaded()) {
+            if (sqlTables.isRestored() && !conf.getRebuildTableNames()) {
+                // the item tables are known from the snapshot, compare them with the database in the background
+                refreshTableIndex();
+            } else {
+                // read the item tables now, so that no tables are created for items that already have one
+                checkDBSchema();
+            }
+        }
+        return (p && !(conf.getErrReconnectThreshold() > 0 && errCnt.get() <= conf.getErrReconnectThreshold()));
+    }
+
+    /***********************
+     * WRITE BEHIND QUEUE *
+     ***********************/
+    protected void startWriteBehind() {
+        stopWriteBehind();
+        if (conf.isWriteBehind()) {
+            logger.info("JDBC::startWriteBehind: values are stored in batches of up to {} values every {} ms",
+                    conf.getWriteBehindBatchSize(), conf.getWriteBehindInterval());
+            JdbcWriteBehindQueue queue = new JdbcWriteBehindQueue(conf.getWriteBehindBatchSize(),
+                    conf.getWriteBehindInterval(), conf.getWriteBehindMaxQueueSize(),
+                    conf.getWriteBehindOverflowPolicy(), this::storeItemValues);
+            queue.start();
+            writeBehindQueue = queue;
         }
     }
 
+    protected void stopWriteBehind() {
+        JdbcWriteBehindQueue queue = writeBehindQueue;
+        if (queue != null) {
+            writeBehindQueue = null;
+            queue.stop();
+        }
+    }
+
+    public JdbcWriteBehindQueue getWriteBehindQueue() {
+        return writeBehindQueue;
+    }
+
     /**************************
      * DATABASE TABLEHANDLING *
      **************************/
@@ -225,28 +364,63 @@ public class JdbcMapper {
         } else {
             List<ItemsVO> al;
             // Reset the error counter
-            errCnt = 0;
-            al = getItemIDTableNames();
+            errCnt.set(0);
+            // all item tables are read with a single query
+            try {
+                al = getItemIDTableNames();
+            } catch (RuntimeException e) {
+                // keep the current index, it is read again with the next access to the database
+                logger.warn("JDBC::checkDBSchema: could not read the item tables: {}", e.getMessage());
+                return;
+            }
+            Map<String, String> itemTables = new HashMap<>();
             for (int i = 0; i < al.size(); i++) {
                 String t = getTableName(al.get(i).getItemid(), al.get(i).getItemname());
-                sqlTables.put(al.get(i).getItemname(), t);
+                itemTables.put(al.get(i).getItemname(), t);
             }
+            sqlTables.load(itemTables);
         }
+        saveTableIndexSnapshot();
     }
 
     protected String getTable(Item item) {
+        // Table already exists - return the name, otherwise it is created once, even for concurrent calls
+        return sqlTables.getOrCreate(item.getName(), itemName -> {
+            if (!sqlTables.isLoaded()) {
+                // the table may exist but be missing in the snapshot, so the database is read first
+                checkDBSchema();
+                String tableName = sqlTables.get(itemName);
+                if (tableName != null) {
+                    return tableName;
+                }
+            }
+            return createTable(item);
+        });
+    }
+
+    /**
+     * Reads the item tables from the database in the background, replacing the ones restored from the snapshot.
+     */
+    private void refreshTableIndex() {
+        if (tableIndexRefreshing.compareAndSet(false, true)) {
+            ThreadPoolManager.getPool(JDBC_THREADPOOL_NAME).execute(() -> {
+                try {
+                    if (!sqlTables.isLoaded()) {
+                        checkDBSchema();
+                    }
+                } finally {
+                    tableIndexRefreshing.set(false);
+                }
+            });
+        }
+    }
+
+    private String createTable(Item item) {
         int rowId = 0;
         ItemsVO isvo;
         ItemVO ivo;
 
         String itemName = item.getName();
-        String tableName = sqlTables.get(itemName);
-
-        // Table already exists - return the name
-        if (tableName != null) {
-            return tableName;
-        }
-
         logger.debug("JDBC::getTable: no table found for item '{}' in sqlTables", itemName);
 
         // Create a new entry in items table
@@ -259,7 +433,7 @@ public class JdbcMapper {
         }
         // Create the table name
         logger.debug("JDBC::getTable: getTableName with rowId={} itemName={}", rowId, itemName);
-        tableName = getTableName(rowId, itemName);
+        String tableName = getTableName(rowId, itemName);
 
         // An error occurred adding the item name into the index list!
         if (tableName == null) {
@@ -274,19 +448,6 @@ public class JdbcMapper {
         ivo = createItemTable(ivo);
         logger.debug("JDBC::getTable: Table created for item '{}' with dataType {} in SQL database.", itemName,
                 dataType);
-        sqlTables.put(itemName, tableName);
-
-        // Check if the new entry is in the table list
-        // If it's not in the list, then there was an error and we need to do
-        // some tidying up
-        // The item needs to be removed from the index table to avoid duplicates
-        if (sqlTables.get(itemName) == null) {
-            logger.error("JDBC::getTable: Item '{}' was not added to the table - removing index", itemName);
-            isvo = new ItemsVO();
-            isvo.setItemname(itemName);
-            deleteItemsEntry(isvo);
-        }
-
         return tableName;
     }
 
@@ -298,14 +459,16 @@ public class JdbcMapper {
 
         List<ItemsVO> al;
         Map<Integer, String> tableIds = new HashMap<>();
+        Map<String, String> itemTables = new HashMap<>();
 
         //
         al = getItemIDTableNames();
         for (int i = 0; i < al.size(); i++) {
             String t = getTableName(al.get(i).getItemid(), al.get(i).getItemname());
-            sqlTables.put(al.get(i).getItemname(), t);
+            itemTables.put(al.get(i).getItemname(), t);
             tableIds.put(al.get(i).getItemid(), t);
         }
+        sqlTables.load(itemTables);
 
         //
         al = getItemTables();
@@ -367,10 +530,27 @@ public class JdbcMapper {
     public Set<PersistenceItemInfo> getItems() {
         // TODO: in general it would be possible to query the count, earliest and latest values for each item too but it
         // would be a very costly operation
-        return sqlTables.keySet().stream().map(itemName -> new JdbcPersistenceItemInfo(itemName))
+        return sqlTables.getItemNames().stream().map(itemName -> new JdbcPersistenceItemInfo(itemName))
                 .collect(Collectors.<PersistenceItemInfo> toUnmodifiableSet());
     }
 
+    /**
+     * Restores the item tables from the local snapshot, so that they are known before the database has been read.
+     */
+    protected void loadTableIndexSnapshot() {
+        sqlTables.invalidate();
+        sqlTables.loadSnapshot(TABLE_INDEX_SNAPSHOT, getTableIndexSignature());
+    }
+
+    protected void saveTableIndexSnapshot() {
+        sqlTables.saveSnapshot(TABLE_INDEX_SNAPSHOT, getTableIndexSignature());
+    }
+
+    private String getTableIndexSignature() {
+        return conf.getDBDAO().databaseProps.getProperty("jdbcUrl") + "|" + conf.getTableNamePrefix() + "|"
+                + conf.getTableUseRealItemNames() + "|" + conf.getTableIdDigitCount();
+    }
+
     private static String formatRight(final Object value, final int len) {
         final String valueAsString = String.valueOf(value);
         if (valueAsString.length() < len) {
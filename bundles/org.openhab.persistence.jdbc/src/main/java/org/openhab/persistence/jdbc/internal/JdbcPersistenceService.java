@@ -96,6 +96,10 @@ public class JdbcPersistenceService extends JdbcMapper implements QueryablePersi
     public void deactivate(final int reason) {
         logger.debug("JDBC::deactivate:  persistence bundle stopping. Disconnecting from database. reason={}", reason);
         // closeConnection();
+        stopWriteBehind();
+        if (conf != null) {
+            saveTableIndexSnapshot();
+        }
         initialized = false;
     }
 
@@ -128,7 +132,7 @@ public class JdbcPersistenceService extends JdbcMapper implements QueryablePersi
         if (!checkDBAccessability()) {
             logger.warn(
                     "JDBC::store:  No connection to database. Cannot persist item '{}'! Will retry connecting to database when error count:{} equals errReconnectThreshold:{}",
-                    item, errCnt, conf.getErrReconnectThreshold());
+                    item, errCnt.get(), conf.getErrReconnectThreshold());
             return;
         }
         long timerStart = System.currentTimeMillis();
@@ -194,13 +198,17 @@ public class JdbcPersistenceService extends JdbcMapper implements QueryablePersi
         }
 
         long timerStart = System.currentTimeMillis();
-        List<HistoricItem> items = getHistItemFilterQuery(filter, conf.getNumberDecimalcount(), table, item);
-
-        logger.debug("JDBC::query: query for {} returned {} rows in {} ms", item.getName(), items.size(),
-                System.currentTimeMillis() - timerStart);
+        Iterable<HistoricItem> items = getHistItemFilterQuery(filter, conf.getNumberDecimalcount(), table, item);
 
-        // Success
-        errCnt = 0;
+        if (items instanceof List) {
+            logger.debug("JDBC::query: query for {} returned {} rows in {} ms", item.getName(),
+                    ((List<?>) items).size(), System.currentTimeMillis() - timerStart);
+            // Success
+            errCnt.set(0);
+        } else {
+            // the error counter is reset when the stream has been read completely
+            logger.debug("JDBC::query: query for {} is streamed", item.getName());
+        }
         return items;
     }
 
@@ -208,8 +216,15 @@ public class JdbcPersistenceService extends JdbcMapper implements QueryablePersi
         logger.debug("JDBC::updateConfig");
 
         conf = new JdbcConfiguration(configuration);
+        if (conf.valid) {
+            loadTableIndexSnapshot();
+            // the queue is also needed if the database becomes reachable only later
+            startWriteBehind();
+        } else {
+            stopWriteBehind();
+        }
+        // reads the item tables, in the background if they have been restored from the snapshot
         if (conf.valid && checkDBAccessability()) {
-            checkDBSchema();
             // connection has been established ... initialization completed!
             initialized = true;
         } else {
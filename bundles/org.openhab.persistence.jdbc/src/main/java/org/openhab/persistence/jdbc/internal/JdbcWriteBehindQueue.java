@@ -0,0 +1,299 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.jdbc.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openhab.core.common.NamedThreadFactory;
+import org.openhab.persistence.jdbc.model.ItemVO;
+import org.openhab.persistence.jdbc.utils.MovingAverage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-behind queue: collects the values to be stored and writes them grouped per item table in batches, either when
+ * the configured batch size is reached or after the configured interval.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+public class JdbcWriteBehindQueue {
+    private final Logger logger = LoggerFactory.getLogger(JdbcWriteBehindQueue.class);
+
+    /**
+     * What to do with a new value if the queue is full.
+     */
+    public enum OverflowPolicy {
+        /** the new value is discarded */
+        DROP_NEWEST,
+        /** the oldest queued value is discarded */
+        DROP_OLDEST,
+        /** the caller waits until the queue has been flushed */
+        BLOCK
+    }
+
+    /**
+     * Writes the values of one item table.
+     */
+    @FunctionalInterface
+    public interface BatchWriter {
+        /**
+         * @throws RuntimeException if the values could not be written
+         */
+        void write(String tableName, List<ItemVO> values);
+    }
+
+    /** How often the writing of a value is attempted before it is dropped */
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final int batchSize;
+    private final int interval;
+    private final int maxQueueSize;
+    private final OverflowPolicy overflowPolicy;
+    private final BatchWriter writer;
+
+    private final Deque<ItemVO> queue = new ArrayDeque<>();
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    // failed attempts of the requeued values, only accessed while holding the flushLock
+    private Map<ItemVO, Integer> attempts = new IdentityHashMap<>();
+    private final ScheduledExecutorService scheduler = Executors
+            .newSingleThreadScheduledExecutor(new NamedThreadFactory("JdbcWriteBehind"));
+
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final MovingAverage flushLatencyAverage = new MovingAverage(100);
+    private volatile long lastFlushLatency = 0;
+    private volatile long maxFlushLatency = 0;
+
+    public JdbcWriteBehindQueue(int batchSize, int interval, int maxQueueSize, OverflowPolicy overflowPolicy,
+            BatchWriter writer) {
+        this.batchSize = batchSize;
+        this.interval = interval;
+        this.maxQueueSize = Math.max(maxQueueSize, batchSize);
+        this.overflowPolicy = overflowPolicy;
+        this.writer = writer;
+    }
+
+    public void start() {
+        logger.debug("JDBC::writeBehind: starting with batchSize={} interval={} ms maxQueueSize={} overflowPolicy={}",
+                batchSize, interval, maxQueueSize, overflowPolicy);
+        scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the queue and writes all values that are still pending.
+     */
+    public void stop() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(interval + 5000L, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        synchronized (queue) {
+            if (!queue.isEmpty()) {
+                droppedCount.addAndGet(queue.size());
+                logger.warn("JDBC::writeBehind: stopped, dropping {} values that could not be written", queue.size());
+                queue.clear();
+            }
+        }
+        logger.debug("JDBC::writeBehind: stopped, written={} dropped={}", writtenCount.get(), droppedCount.get());
+    }
+
+    /**
+     * Adds a value to the queue.
+     *
+     * @param vo the value, its table name, value and time must be set
+     * @return false if the value has been dropped because the queue is full
+     */
+    public boolean add(ItemVO vo) {
+        int size;
+        synchronized (queue) {
+            while (queue.size() >= maxQueueSize) {
+                if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                    droppedCount.incrementAndGet();
+                    logger.debug("JDBC::writeBehind: queue full, dropping value for table '{}'", vo.getTableName());
+                    return false;
+                } else if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                    ItemVO dropped = queue.removeFirst();
+                    droppedCount.incrementAndGet();
+                    logger.debug("JDBC::writeBehind: queue full, dropping oldest value for table '{}'",
+                            dropped.getTableName());
+                } else {
+                    scheduleFlush();
+                    try {
+                        queue.wait(interval);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        droppedCount.incrementAndGet();
+                        return false;
+                    }
+                }
+            }
+            queue.addLast(vo);
+            size = queue.size();
+        }
+        if (size >= batchSize) {
+            scheduleFlush();
+        }
+        return true;
+    }
+
+    /**
+     * Writes all queued values, grouped per table in batches of at most the configured batch size.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            flushScheduled.set(false);
+            List<ItemVO> pending;
+            synchronized (queue) {
+                if (queue.isEmpty()) {
+                    return;
+                }
+                pending = new ArrayList<>(queue);
+                queue.clear();
+                queue.notifyAll();
+            }
+
+            long timerStart = System.currentTimeMillis();
+            // group the values per table, keeping only the last value per timestamp, as the time is the primary key
+            Map<String, Map<Long, ItemVO>> tables = new LinkedHashMap<>();
+            for (ItemVO vo : pending) {
+                tables.computeIfAbsent(vo.getTableName(), t -> new LinkedHashMap<>()).put(vo.getTime().getTime(), vo);
+            }
+            int written = 0;
+            List<ItemVO> failed = new ArrayList<>();
+            for (Map.Entry<String, Map<Long, ItemVO>> table : tables.entrySet()) {
+                List<ItemVO> values = new ArrayList<>(table.getValue().values());
+                for (int i = 0; i < values.size(); i += batchSize) {
+                    List<ItemVO> batch = values.subList(i, Math.min(values.size(), i + batchSize));
+                    try {
+                        writer.write(table.getKey(), batch);
+                        written += batch.size();
+                    } catch (RuntimeException e) {
+                        logger.warn("JDBC::writeBehind: could not write {} values to table '{}': {}", batch.size(),
+                                table.getKey(), e.getMessage());
+                        failed.addAll(batch);
+                    }
+                }
+            }
+            int coalesced = pending.size() - written - failed.size();
+            requeue(failed);
+            long latency = System.currentTimeMillis() - timerStart;
+
+            writtenCount.addAndGet(written);
+            coalescedCount.addAndGet(coalesced);
+            flushCount.incrementAndGet();
+            lastFlushLatency = latency;
+            if (latency > maxFlushLatency) {
+                maxFlushLatency = latency;
+            }
+            synchronized (flushLatencyAverage) {
+                flushLatencyAverage.add(latency);
+            }
+            logger.debug("JDBC::writeBehind: wrote {} values to {} tables in {} ms, {} values coalesced, {} failed",
+                    written, tables.size(), latency, coalesced, failed.size());
+        }
+    }
+
+    /**
+     * Puts values that could not be written back to the head of the queue, so that they are written with the next
+     * flush. Values that have failed too often, or that do not fit into the queue anymore, are dropped.
+     */
+    private void requeue(List<ItemVO> failed) {
+        Map<ItemVO, Integer> previousAttempts = attempts;
+        attempts = new IdentityHashMap<>();
+        int dropped = 0;
+        synchronized (queue) {
+            for (int i = failed.size() - 1; i >= 0; i--) {
+                ItemVO vo = failed.get(i);
+                int attempt = previousAttempts.getOrDefault(vo, 0) + 1;
+                if (attempt < MAX_ATTEMPTS && queue.size() < maxQueueSize) {
+                    attempts.put(vo, attempt);
+                    queue.addFirst(vo);
+                } else {
+                    dropped++;
+                }
+            }
+        }
+        if (dropped > 0) {
+            droppedCount.addAndGet(dropped);
+            logger.warn("JDBC::writeBehind: dropping {} values that could not be written", dropped);
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // the queue has been stopped, the values are written by stop()
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    /******************************
+     * public Getters and Setters *
+     ******************************/
+    public int getQueueDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getLastFlushLatency() {
+        return lastFlushLatency;
+    }
+
+    public long getMaxFlushLatency() {
+        return maxFlushLatency;
+    }
+
+    public double getAverageFlushLatency() {
+        synchronized (flushLatencyAverage) {
+            return flushLatencyAverage.getAverageDouble();
+        }
+    }
+}
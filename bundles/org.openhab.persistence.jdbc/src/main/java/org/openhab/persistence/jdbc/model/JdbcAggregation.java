@@ -0,0 +1,29 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.jdbc.model;
+
+/**
+ * Aggregate functions to reduce the values of a time bucket to a single value in the database.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+public enum JdbcAggregation {
+    /** the average of the values */
+    AVG,
+    /** the lowest value */
+    MIN,
+    /** the highest value */
+    MAX,
+    /** the last value */
+    LAST
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.jdbc.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.openhab.persistence.jdbc.internal.JdbcWriteBehindQueue.OverflowPolicy;
+import org.openhab.persistence.jdbc.model.ItemVO;
+
+/**
+ * @author Karel Goderis - Initial contribution
+ */
+public class JdbcWriteBehindQueueTest {
+
+    private static final int INTERVAL = 60000;
+
+    private final List<String> written = new ArrayList<>();
+    private volatile int failures;
+    private JdbcWriteBehindQueue queue;
+
+    @AfterEach
+    public void after() {
+        if (queue != null) {
+            queue.stop();
+        }
+    }
+
+    private synchronized void write(String tableName, List<ItemVO> values) {
+        if (failures > 0) {
+            failures--;
+            throw new IllegalStateException("database not available");
+        }
+        for (ItemVO vo : values) {
+            written.add(tableName + "=" + vo.getValue());
+        }
+    }
+
+    private synchronized List<String> written() {
+        return new ArrayList<>(written);
+    }
+
+    private static ItemVO value(String tableName, long time, Object value) {
+        ItemVO vo = new ItemVO(tableName, null);
+        vo.setTime(new Date(time));
+        vo.setValue(value);
+        return vo;
+    }
+
+    @Test
+    public void valuesShouldBeWrittenPerTableKeepingTheLastValuePerTime() {
+        queue = new JdbcWriteBehindQueue(100, INTERVAL, 1000, OverflowPolicy.DROP_NEWEST, this::write);
+
+        queue.add(value("item1", 1, 1));
+        queue.add(value("item2", 1, 2));
+        queue.add(value("item1", 2, 3));
+        queue.add(value("item1", 1, 4));
+        queue.flush();
+
+        assertThat(written(), contains("item1=4", "item1=3", "item2=2"));
+        assertThat(queue.getWrittenCount(), is(3L));
+        assertThat(queue.getCoalescedCount(), is(1L));
+        assertThat(queue.getQueueDepth(), is(0));
+    }
+
+    @Test
+    public void failedValuesShouldBeWrittenWithTheNextFlush() {
+        queue = new JdbcWriteBehindQueue(100, INTERVAL, 1000, OverflowPolicy.DROP_NEWEST, this::write);
+
+        queue.add(value("item1", 1, 1));
+        queue.add(value("item1", 2, 2));
+        failures = 1;
+        queue.flush();
+
+        assertThat(written(), is(empty()));
+        assertThat(queue.getQueueDepth(), is(2));
+
+        queue.add(value("item1", 3, 3));
+        queue.flush();
+
+        assertThat(written(), contains("item1=1", "item1=2", "item1=3"));
+        assertThat(queue.getDroppedCount(), is(0L));
+    }
+
+    @Test
+    public void valuesShouldBeDroppedAfterTooManyFailures() {
+        queue = new JdbcWriteBehindQueue(100, INTERVAL, 1000, OverflowPolicy.DROP_NEWEST, this::write);
+
+        queue.add(value("item1", 1, 1));
+        failures = Integer.MAX_VALUE;
+        queue.flush();
+        queue.flush();
+        assertThat(queue.getQueueDepth(), is(1));
+
+        queue.flush();
+        assertThat(queue.getQueueDepth(), is(0));
+        assertThat(queue.getDroppedCount(), is(1L));
+    }
+
+    @Test
+    public void newestValueShouldBeDroppedIfTheQueueIsFull() {
+        queue = new JdbcWriteBehindQueue(2, INTERVAL, 2, OverflowPolicy.DROP_NEWEST, this::write);
+        // stopped, so that the full queue is not flushed in the background
+        queue.stop();
+
+        assertThat(queue.add(value("item1", 1, 1)), is(true));
+        assertThat(queue.add(value("item1", 2, 2)), is(true));
+        assertThat(queue.add(value("item1", 3, 3)), is(false));
+        queue.flush();
+
+        assertThat(written(), contains("item1=1", "item1=2"));
+        assertThat(queue.getDroppedCount(), is(1L));
+    }
+
+    @Test
+    public void oldestValueShouldBeDroppedIfTheQueueIsFull() {
+        queue = new JdbcWriteBehindQueue(2, INTERVAL, 2, OverflowPolicy.DROP_OLDEST, this::write);
+        // stopped, so that the full queue is not flushed in the background
+        queue.stop();
+
+        assertThat(queue.add(value("item1", 1, 1)), is(true));
+        assertThat(queue.add(value("item1", 2, 2)), is(true));
+        assertThat(queue.add(value("item1", 3, 3)), is(true));
+        queue.flush();
+
+        assertThat(written(), contains("item1=2", "item1=3"));
+        assertThat(queue.getDroppedCount(), is(1L));
+    }
+
+    @Test
+    public void callerShouldWaitIfTheQueueIsFull() throws InterruptedException {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        queue = new JdbcWriteBehindQueue(1, INTERVAL, 1, OverflowPolicy.BLOCK, (tableName, values) -> {
+            writing.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            write(tableName, values);
+        });
+
+        // the first value is taken from the queue by a flush that does not finish until it is released
+        queue.add(value("item1", 1, 1));
+        assertThat(writing.await(10, TimeUnit.SECONDS), is(true));
+        queue.add(value("item1", 2, 2));
+
+        Thread producer = new Thread(() -> queue.add(value("item1", 3, 3)));
+        producer.start();
+        producer.join(200);
+        assertThat(producer.isAlive(), is(true));
+
+        release.countDown();
+        producer.join(10000);
+        assertThat(producer.isAlive(), is(false));
+        queue.flush();
+
+        assertThat(written(), contains("item1=1", "item1=2", "item1=3"));
+        assertThat(queue.getDroppedCount(), is(0L));
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.jpa.internal;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.common.NamedThreadFactory;
+import org.openhab.persistence.jpa.internal.model.JpaPersistentItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-behind for {@link JpaPersistentItem}s: the items are queued and persisted by a single writer thread, with up to
+ * the batch size items per transaction. The writer keeps its EntityManager open between the batches.
+ *
+ * The items of a batch that fails are queued again and retried with the next flush, up to {@link #MAX_ATTEMPTS}
+ * times. Items that fail more often, or do not fit into the queue anymore, are dropped and counted.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+@NonNullByDefault
+public class JpaBatchWriter {
+    private final Logger logger = LoggerFactory.getLogger(JpaBatchWriter.class);
+
+    /** How often the persisting of an item is attempted before it is dropped */
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final int batchSize;
+    private final int interval;
+    private final Supplier<@Nullable EntityManagerFactory> entityManagerFactory;
+
+    private final BlockingDeque<JpaPersistentItem> queue;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler = Executors
+            .newSingleThreadScheduledExecutor(new NamedThreadFactory("JpaWriter"));
+
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    // only used by the writer thread, or by stop() once the writer thread has terminated
+    private @Nullable EntityManager em;
+    // failed attempts of the requeued items, only accessed while holding the lock of flush()
+    private final Map<JpaPersistentItem, Integer> attempts = new IdentityHashMap<>();
+
+    /**
+     * @param batchSize the maximum number of items per transaction
+     * @param interval the maximum time in milliseconds an item is queued
+     * @param queueSize the maximum number of queued items
+     * @param entityManagerFactory supplies the factory to create the EntityManager of the writer with
+     */
+    public JpaBatchWriter(int batchSize, int interval, int queueSize,
+            Supplier<@Nullable EntityManagerFactory> entityManagerFactory) {
+        this.batchSize = batchSize;
+        this.interval = interval;
+        this.queue = new LinkedBlockingDeque<>(Math.max(queueSize, batchSize));
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    public void start() {
+        logger.debug("Starting JPA batch writer with batchSize={} interval={} ms", batchSize, interval);
+        scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the writer, persisting all queued items.
+     */
+    public void stop() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(interval + 10000L, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        if (!queue.isEmpty()) {
+            droppedCount.addAndGet(queue.size());
+            logger.warn("Stopped JPA batch writer, dropping {} items that could not be persisted", queue.size());
+            queue.clear();
+        }
+        EntityManager currentEm = em;
+        if (currentEm != null) {
+            currentEm.close();
+            em = null;
+        }
+        logger.debug("Stopped JPA batch writer, persisted={} dropped={}", writtenCount.get(), droppedCount.get());
+    }
+
+    /**
+     * Queues an item to be persisted.
+     *
+     * @param item the item to persist
+     */
+    public void add(JpaPersistentItem item) {
+        if (!queue.offer(item)) {
+            long dropped = droppedCount.incrementAndGet();
+            logger.warn("JPA write queue is full, dropping {} ({} items dropped so far)", item.getName(), dropped);
+            scheduleFlush();
+            return;
+        }
+        if (queue.size() >= batchSize) {
+            scheduleFlush();
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // stopped, the queued items are persisted by stop()
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * Persists all queued items in transactions of at most the batch size items. If a transaction fails, its items
+     * are queued again and the flush ends, they are retried with the next one.
+     */
+    private synchronized void flush() {
+        flushScheduled.set(false);
+        List<JpaPersistentItem> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            if (!persist(batch)) {
+                requeue(batch);
+                return;
+            }
+            writtenCount.addAndGet(batch.size());
+            if (!attempts.isEmpty()) {
+                for (JpaPersistentItem item : batch) {
+                    attempts.remove(item);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Puts the items of a failed batch back to the head of the queue, in their original order.
+     */
+    private void requeue(List<JpaPersistentItem> batch) {
+        int dropped = 0;
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            JpaPersistentItem item = batch.get(i);
+            int attempt = attempts.getOrDefault(item, 0) + 1;
+            // the id may have been assigned by the failed transaction
+            item.setId(null);
+            if (attempt < MAX_ATTEMPTS && queue.offerFirst(item)) {
+                attempts.put(item, attempt);
+            } else {
+                attempts.remove(item);
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            long total = droppedCount.addAndGet(dropped);
+            logger.warn("Dropping {} items that could not be persisted ({} items dropped so far)", dropped, total);
+        }
+    }
+
+    private boolean persist(List<JpaPersistentItem> batch) {
+        EntityManager currentEm = em;
+        if (currentEm == null || !currentEm.isOpen()) {
+            EntityManagerFactory factory = entityManagerFactory.get();
+            if (factory == null) {
+                logger.warn("Cannot persist {} items, there is no EntityManagerFactory", batch.size());
+                return false;
+            }
+            currentEm = factory.createEntityManager();
+            em = currentEm;
+        }
+        try {
+            logger.debug("Persisting {} items...", batch.size());
+            currentEm.getTransaction().begin();
+            for (JpaPersistentItem item : batch) {
+                currentEm.persist(item);
+            }
+            currentEm.getTransaction().commit();
+            logger.debug("Persisting {} items...done", batch.size());
+        } catch (RuntimeException e) {
+            logger.error("Error on persisting {} items! Rolling back!", batch.size(), e);
+            if (currentEm.getTransaction().isActive()) {
+                currentEm.getTransaction().rollback();
+            }
+            // start over with a new EntityManager, this one may be in an undefined state
+            currentEm.close();
+            em = null;
+            return false;
+        }
+        // the persisted items are not needed anymore, keep the persistence context small
+        currentEm.clear();
+        return true;
+    }
+}
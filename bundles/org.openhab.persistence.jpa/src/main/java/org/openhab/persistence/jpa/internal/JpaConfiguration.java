@@ -32,6 +32,9 @@ public class JpaConfiguration {
     private static final String CFG_USERNAME = "user";
     private static final String CFG_PASSWORD = "password";
     private static final String CFG_SYNCMAPPING = "syncmappings";
+    private static final String CFG_BATCH_SIZE = "batchSize";
+    private static final String CFG_BATCH_INTERVAL = "batchInterval";
+    private static final String CFG_BATCH_QUEUE_SIZE = "batchQueueSize";
 
     public static boolean isInitialized = false;
 
@@ -40,6 +43,9 @@ public class JpaConfiguration {
     public final String dbUserName;
     public final String dbPassword;
     public final String dbSyncMapping;
+    public final int batchSize;
+    public final int batchInterval;
+    public final int batchQueueSize;
 
     public JpaConfiguration(final Map<String, Object> properties) {
         logger.debug("Update config...");
@@ -77,7 +83,26 @@ public class JpaConfiguration {
         }
         dbSyncMapping = (String) properties.get(CFG_SYNCMAPPING);
 
+        batchSize = getInt(properties, CFG_BATCH_SIZE, 0);
+        batchInterval = Math.max(1, getInt(properties, CFG_BATCH_INTERVAL, 1000));
+        batchQueueSize = Math.max(1, getInt(properties, CFG_BATCH_QUEUE_SIZE, 10000));
+        logger.debug("batchSize: {}, batchInterval: {}, batchQueueSize: {}", batchSize, batchInterval,
+                batchQueueSize);
+
         isInitialized = true;
         logger.debug("Update config... done");
     }
+
+    private int getInt(final Map<String, Object> properties, String key, int defaultValue) {
+        Object param = properties.get(key);
+        if (param == null || param.toString().isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(param.toString().trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid value '{}' for {} in jpa.cfg, using {}", param, key, defaultValue);
+            return defaultValue;
+        }
+    }
 }
@@ -23,7 +23,7 @@ import java.util.Set;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
-import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -65,6 +65,8 @@ public class JpaPersistenceService implements QueryablePersistenceService {
 
     private @NonNullByDefault({}) JpaConfiguration config;
 
+    private @Nullable JpaBatchWriter batchWriter;
+
     @Activate
     public JpaPersistenceService(final @Reference ItemRegistry itemRegistry) {
         this.itemRegistry = itemRegistry;
@@ -75,7 +77,7 @@ public class JpaPersistenceService implements QueryablePersistenceService {
      *
      * @return EntityManagerFactory
      */
-    protected @Nullable EntityManagerFactory getEntityManagerFactory() {
+    protected synchronized @Nullable EntityManagerFactory getEntityManagerFactory() {
         if (emf == null) {
             emf = newEntityManagerFactory();
         }
@@ -86,6 +88,12 @@ public class JpaPersistenceService implements QueryablePersistenceService {
     public void activate(BundleContext context, Map<String, Object> properties) {
         logger.debug("Activating jpa persistence service");
         config = new JpaConfiguration(properties);
+        if (config.batchSize > 1) {
+            JpaBatchWriter writer = new JpaBatchWriter(config.batchSize, config.batchInterval, config.batchQueueSize,
+                    this::getEntityManagerFactory);
+            writer.start();
+            batchWriter = writer;
+        }
     }
 
     /**
@@ -94,6 +102,11 @@ public class JpaPersistenceService implements QueryablePersistenceService {
     @Deactivate
     public void deactivate() {
         logger.debug("Deactivating jpa persistence service");
+        JpaBatchWriter writer = batchWriter;
+        if (writer != null) {
+            batchWriter = null;
+            writer.stop();
+        }
         closeEntityManagerFactory();
     }
 
@@ -142,6 +155,13 @@ public class JpaPersistenceService implements QueryablePersistenceService {
         pItem.setRealName(item.getName());
         pItem.setTimestamp(new Date());
 
+        JpaBatchWriter writer = batchWriter;
+        if (writer != null) {
+            writer.add(pItem);
+            logger.debug("Queued item for persisting");
+            return;
+        }
+
         EntityManager em = getEntityManagerFactory().createEntityManager();
         try {
             logger.debug("Persisting item...");
@@ -177,28 +197,21 @@ public class JpaPersistenceService implements QueryablePersistenceService {
         String itemName = filter.getItemName();
         Item item = getItemFromRegistry(itemName);
 
-        String sortOrder;
-        if (filter.getOrdering() == Ordering.ASCENDING) {
-            sortOrder = "ASC";
+        boolean ascending = filter.getOrdering() == Ordering.ASCENDING;
+        boolean hasBeginDate = filter.getBeginDate() != null;
+        boolean hasEndDate = filter.getEndDate() != null;
+        String queryName;
+        if (hasBeginDate && hasEndDate) {
+            queryName = ascending ? JpaPersistentItem.FIND_BETWEEN_ASC : JpaPersistentItem.FIND_BETWEEN_DESC;
+        } else if (hasBeginDate) {
+            queryName = ascending ? JpaPersistentItem.FIND_SINCE_ASC : JpaPersistentItem.FIND_SINCE_DESC;
+        } else if (hasEndDate) {
+            queryName = ascending ? JpaPersistentItem.FIND_UNTIL_ASC : JpaPersistentItem.FIND_UNTIL_DESC;
         } else {
-            sortOrder = "DESC";
+            queryName = ascending ? JpaPersistentItem.FIND_ASC : JpaPersistentItem.FIND_DESC;
         }
 
-        boolean hasBeginDate = false;
-        boolean hasEndDate = false;
-        String queryString = "SELECT n FROM " + JpaPersistentItem.class.getSimpleName()
-                + " n WHERE n.realName = :itemName";
-        if (filter.getBeginDate() != null) {
-            queryString += " AND n.timestamp >= :beginDate";
-            hasBeginDate = true;
-        }
-        if (filter.getEndDate() != null) {
-            queryString += " AND n.timestamp <= :endDate";
-            hasEndDate = true;
-        }
-        queryString += " ORDER BY n.timestamp " + sortOrder;
-
-        logger.debug("The query: {}", queryString);
+        logger.debug("The query: {}", queryName);
 
         EntityManager em = getEntityManagerFactory().createEntityManager();
         try {
@@ -206,7 +219,7 @@ public class JpaPersistenceService implements QueryablePersistenceService {
             em.getTransaction().begin();
 
             logger.debug("Creating query...");
-            Query query = em.createQuery(queryString);
+            TypedQuery<JpaPersistentItem> query = em.createNamedQuery(queryName, JpaPersistentItem.class);
             query.setParameter("itemName", item.getName());
             if (hasBeginDate) {
                 query.setParameter("beginDate", Date.from(filter.getBeginDate().toInstant()));
@@ -220,7 +233,6 @@ public class JpaPersistenceService implements QueryablePersistenceService {
             logger.debug("Creating query...done");
 
             logger.debug("Retrieving result list...");
-            @SuppressWarnings("unchecked")
             List<JpaPersistentItem> result = query.getResultList();
             logger.debug("Retrieving result list...done");
 
@@ -264,6 +276,11 @@ public class JpaPersistenceService implements QueryablePersistenceService {
             logger.warn("You are settings openjpa.jdbc.SynchronizeMappings, I hope you know what you're doing!");
             properties.put("openjpa.jdbc.SynchronizeMappings", config.dbSyncMapping);
         }
+        if (config.batchSize > 1) {
+            // send the inserts of a transaction as JDBC batches
+            properties.put("openjpa.jdbc.DBDictionary", "batchLimit=" + config.batchSize);
+            properties.put("openjpa.jdbc.UpdateManager", "batching-constraint");
+        }
 
         EntityManagerFactory fac = Persistence.createEntityManagerFactory(getPersistenceUnitName(), properties);
         logger.debug("Creating EntityManagerFactory...done");
@@ -274,7 +291,7 @@ public class JpaPersistenceService implements QueryablePersistenceService {
     /**
      * Closes EntityManagerFactory
      */
-    protected void closeEntityManagerFactory() {
+    protected synchronized void closeEntityManagerFactory() {
         if (emf != null) {
             emf.close();
             emf = null;
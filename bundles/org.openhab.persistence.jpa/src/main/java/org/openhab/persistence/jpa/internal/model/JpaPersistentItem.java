@@ -22,6 +22,8 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
@@ -39,8 +41,36 @@ import org.openhab.core.types.UnDefType;
 
 @Entity
 @Table(name = "HISTORIC_ITEM")
+@NamedQueries({
+        @NamedQuery(name = JpaPersistentItem.FIND_ASC, query = "SELECT n FROM JpaPersistentItem n"
+                + " WHERE n.realName = :itemName ORDER BY n.timestamp ASC"),
+        @NamedQuery(name = JpaPersistentItem.FIND_DESC, query = "SELECT n FROM JpaPersistentItem n"
+                + " WHERE n.realName = :itemName ORDER BY n.timestamp DESC"),
+        @NamedQuery(name = JpaPersistentItem.FIND_SINCE_ASC, query = "SELECT n FROM JpaPersistentItem n"
+                + " WHERE n.realName = :itemName AND n.timestamp >= :beginDate ORDER BY n.timestamp ASC"),
+        @NamedQuery(name = JpaPersistentItem.FIND_SINCE_DESC, query = "SELECT n FROM JpaPersistentItem n"
+                + " WHERE n.realName = :itemName AND n.timestamp >= :beginDate ORDER BY n.timestamp DESC"),
+        @NamedQuery(name = JpaPersistentItem.FIND_UNTIL_ASC, query = "SELECT n FROM JpaPersistentItem n"
+                + " WHERE n.realName = :itemName AND n.timestamp <= :endDate ORDER BY n.timestamp ASC"),
+        @NamedQuery(name = JpaPersistentItem.FIND_UNTIL_DESC, query = "SELECT n FROM JpaPersistentItem n"
+                + " WHERE n.realName = :itemName AND n.timestamp <= :endDate ORDER BY n.timestamp DESC"),
+        @NamedQuery(name = JpaPersistentItem.FIND_BETWEEN_ASC, query = "SELECT n FROM JpaPersistentItem n"
+                + " WHERE n.realName = :itemName AND n.timestamp >= :beginDate AND n.timestamp <= :endDate"
+                + " ORDER BY n.timestamp ASC"),
+        @NamedQuery(name = JpaPersistentItem.FIND_BETWEEN_DESC, query = "SELECT n FROM JpaPersistentItem n"
+                + " WHERE n.realName = :itemName AND n.timestamp >= :beginDate AND n.timestamp <= :endDate"
+                + " ORDER BY n.timestamp DESC") })
 public class JpaPersistentItem implements HistoricItem {
 
+    public static final String FIND_ASC = "JpaPersistentItem.findAsc";
+    public static final String FIND_DESC = "JpaPersistentItem.findDesc";
+    public static final String FIND_SINCE_ASC = "JpaPersistentItem.findSinceAsc";
+    public static final String FIND_SINCE_DESC = "JpaPersistentItem.findSinceDesc";
+    public static final String FIND_UNTIL_ASC = "JpaPersistentItem.findUntilAsc";
+    public static final String FIND_UNTIL_DESC = "JpaPersistentItem.findUntilDesc";
+    public static final String FIND_BETWEEN_ASC = "JpaPersistentItem.findBetweenAsc";
+    public static final String FIND_BETWEEN_DESC = "JpaPersistentItem.findBetweenDesc";
+
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
     private Long id;
@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.mapdb.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.library.types.OpenClosedType;
+import org.openhab.core.library.types.PercentType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.types.State;
+import org.openhab.core.types.TypeParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compact binary encoding of {@link MapDbItem}s.
+ *
+ * The encoded item starts with a version byte, the timestamp and the name, followed by a tag for the type of the state
+ * and its value. The most common states are encoded as primitives, all others by their type name and full string, like
+ * {@link StateTypeAdapter} does.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+@NonNullByDefault
+public class MapDbItemCodec {
+    private static final byte VERSION = 1;
+
+    private static final byte TAG_GENERIC = 0;
+    private static final byte TAG_DECIMAL = 1;
+    private static final byte TAG_PERCENT = 2;
+    private static final byte TAG_ON = 3;
+    private static final byte TAG_OFF = 4;
+    private static final byte TAG_OPEN = 5;
+    private static final byte TAG_CLOSED = 6;
+    private static final byte TAG_STRING = 7;
+
+    private static final byte NUMBER_LONG = 0;
+    private static final byte NUMBER_BIG = 1;
+
+    private final Logger logger = LoggerFactory.getLogger(MapDbItemCodec.class);
+
+    /**
+     * Encodes an item.
+     *
+     * @param item the item to encode
+     * @return the encoded item
+     */
+    public byte[] encode(MapDbItem item) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeLong(item.getTimestamp().toInstant().toEpochMilli());
+            writeString(out, item.getName());
+            writeState(out, item.getState());
+        } catch (IOException e) {
+            // writing to a byte array does not fail
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes an item.
+     *
+     * @param data the encoded item
+     * @return the item or null if it cannot be decoded
+     */
+    public @Nullable MapDbItem decode(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte version = in.readByte();
+            if (version != VERSION) {
+                logger.warn("Couldn't decode item: unknown version {}", version);
+                return null;
+            }
+            MapDbItem item = new MapDbItem();
+            item.setTimestamp(new Date(in.readLong()));
+            item.setName(readString(in));
+            State state = readState(in);
+            if (state == null) {
+                return null;
+            }
+            item.setState(state);
+            return item;
+        } catch (IOException e) {
+            logger.warn("Couldn't decode item: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeState(DataOutputStream out, State state) throws IOException {
+        // exact class checks, as e.g. HSBType is a PercentType and PercentType is a DecimalType
+        Class<?> type = state.getClass();
+        if (type == DecimalType.class) {
+            out.writeByte(TAG_DECIMAL);
+            writeNumber(out, ((DecimalType) state).toBigDecimal());
+        } else if (type == PercentType.class) {
+            out.writeByte(TAG_PERCENT);
+            writeNumber(out, ((PercentType) state).toBigDecimal());
+        } else if (state == OnOffType.ON) {
+            out.writeByte(TAG_ON);
+        } else if (state == OnOffType.OFF) {
+            out.writeByte(TAG_OFF);
+        } else if (state == OpenClosedType.OPEN) {
+            out.writeByte(TAG_OPEN);
+        } else if (state == OpenClosedType.CLOSED) {
+            out.writeByte(TAG_CLOSED);
+        } else if (type == StringType.class) {
+            out.writeByte(TAG_STRING);
+            writeString(out, state.toFullString());
+        } else {
+            out.writeByte(TAG_GENERIC);
+            writeString(out, state.getClass().getName());
+            writeString(out, state.toFullString());
+        }
+    }
+
+    private @Nullable State readState(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case TAG_DECIMAL:
+                return new DecimalType(readNumber(in));
+            case TAG_PERCENT:
+                return new PercentType(readNumber(in));
+            case TAG_ON:
+                return OnOffType.ON;
+            case TAG_OFF:
+                return OnOffType.OFF;
+            case TAG_OPEN:
+                return OpenClosedType.OPEN;
+            case TAG_CLOSED:
+                return OpenClosedType.CLOSED;
+            case TAG_STRING:
+                return new StringType(readString(in));
+            case TAG_GENERIC:
+                String typeName = readString(in);
+                String value = readString(in);
+                try {
+                    @SuppressWarnings("unchecked")
+                    Class<? extends State> stateType = (Class<? extends State>) Class.forName(typeName);
+                    return TypeParser.parseState(List.of(stateType), value);
+                } catch (ClassNotFoundException | ClassCastException e) {
+                    logger.warn("Couldn't decode state '{}' of type '{}': {}", value, typeName, e.getMessage());
+                    return null;
+                }
+            default:
+                logger.warn("Couldn't decode state: unknown type tag {}", tag);
+                return null;
+        }
+    }
+
+    private void writeNumber(DataOutputStream out, BigDecimal value) throws IOException {
+        BigInteger unscaled = value.unscaledValue();
+        if (unscaled.bitLength() < 64) {
+            out.writeByte(NUMBER_LONG);
+            out.writeLong(unscaled.longValue());
+        } else {
+            byte[] bytes = unscaled.toByteArray();
+            out.writeByte(NUMBER_BIG);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        out.writeInt(value.scale());
+    }
+
+    private BigDecimal readNumber(DataInputStream in) throws IOException {
+        byte kind = in.readByte();
+        BigInteger unscaled;
+        if (kind == NUMBER_LONG) {
+            unscaled = BigInteger.valueOf(in.readLong());
+        } else {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            unscaled = new BigInteger(bytes);
+        }
+        return new BigDecimal(unscaled, in.readInt());
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException {
+        // not writeUTF, which is limited to 64k
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
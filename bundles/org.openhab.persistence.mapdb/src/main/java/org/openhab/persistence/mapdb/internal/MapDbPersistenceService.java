@@ -19,14 +19,18 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
 import org.openhab.core.OpenHAB;
 import org.openhab.core.common.ThreadPoolManager;
 import org.openhab.core.items.Item;
@@ -63,18 +67,30 @@ public class MapDbPersistenceService implements QueryablePersistenceService {
     private static final String DB_FOLDER_NAME = OpenHAB.getUserDataFolder() + File.separator + "persistence"
             + File.separator + "mapdb";
     private static final String DB_FILE_NAME = "storage.mapdb";
+    /** the map of the JSON encoded items written by former versions */
+    private static final String JSON_MAP_NAME = "itemStore";
+    private static final String MAP_NAME = "items";
+
+    /** stored values are committed together, at the latest after this time */
+    private static final long COMMIT_INTERVAL_MS = 1000;
+    /** ... or as soon as this number of values has been stored */
+    private static final int COMMIT_BATCH_SIZE = 500;
 
     private final Logger logger = LoggerFactory.getLogger(MapDbPersistenceService.class);
 
-    private final ExecutorService threadPool = ThreadPoolManager.getPool(getClass().getSimpleName());
+    private final ScheduledExecutorService scheduler = ThreadPoolManager.getScheduledPool(getClass().getSimpleName());
 
     /** holds the local instance of the MapDB database */
 
     private @NonNullByDefault({}) DB db;
-    private @NonNullByDefault({}) Map<String, String> map;
+    private @NonNullByDefault({}) Map<String, byte[]> map;
+
+    /** all stored items, read in one pass on activation, so that queries do not need to read the database */
+    private final Map<String, MapDbItem> items = new ConcurrentHashMap<>();
 
-    private transient Gson mapper = new GsonBuilder().registerTypeHierarchyAdapter(State.class, new StateTypeAdapter())
-            .create();
+    private final MapDbItemCodec codec = new MapDbItemCodec();
+    private final AtomicInteger uncommitted = new AtomicInteger();
+    private final AtomicBoolean commitScheduled = new AtomicBoolean();
 
     @Activate
     public void activate() {
@@ -91,7 +107,9 @@ public class MapDbPersistenceService implements QueryablePersistenceService {
 
         File dbFile = new File(DB_FOLDER_NAME, DB_FILE_NAME);
         db = DBMaker.newFileDB(dbFile).closeOnJvmShutdown().make();
-        map = db.createTreeMap("itemStore").makeOrGet();
+        map = db.createTreeMap(MAP_NAME).valueSerializer(Serializer.BYTE_ARRAY).makeOrGet();
+        migrateJsonItems();
+        loadItems();
         logger.debug("MapDB persistence service is now activated");
     }
 
@@ -99,7 +117,10 @@ public class MapDbPersistenceService implements QueryablePersistenceService {
     public void deactivate() {
         logger.debug("MapDB persistence service deactivated");
         if (db != null) {
-            db.close();
+            synchronized (this) {
+                commit();
+                db.close();
+            }
         }
     }
 
@@ -115,8 +136,7 @@ public class MapDbPersistenceService implements QueryablePersistenceService {
 
     @Override
     public Set<PersistenceItemInfo> getItemInfo() {
-        return map.values().stream().map(this::deserialize).flatMap(MapDbPersistenceService::streamOptional)
-                .collect(Collectors.<PersistenceItemInfo> toUnmodifiableSet());
+        return items.values().stream().collect(Collectors.<PersistenceItemInfo> toUnmodifiableSet());
     }
 
     @Override
@@ -139,30 +159,65 @@ public class MapDbPersistenceService implements QueryablePersistenceService {
         mItem.setName(localAlias);
         mItem.setState(state);
         mItem.setTimestamp(new Date());
-        String json = serialize(mItem);
-        map.put(localAlias, json);
-        commit();
+        items.put(localAlias, mItem);
+        map.put(localAlias, codec.encode(mItem));
+        scheduleCommit();
         if (logger.isDebugEnabled()) {
-            logger.debug("Stored '{}' with state '{}' as '{}' in MapDB database", localAlias, state, json);
+            logger.debug("Stored '{}' with state '{}' in MapDB database", localAlias, state);
         }
     }
 
     @Override
     public Iterable<HistoricItem> query(FilterCriteria filter) {
-        String json = map.get(filter.getItemName());
-        if (json == null) {
-            return List.of();
+        MapDbItem item = items.get(filter.getItemName());
+        return item != null ? List.of(item) : List.of();
+    }
+
+    /**
+     * Reads all stored items in a single pass.
+     */
+    private void loadItems() {
+        long start = System.currentTimeMillis();
+        items.clear();
+        for (Map.Entry<String, byte[]> entry : map.entrySet()) {
+            MapDbItem item = codec.decode(entry.getValue());
+            if (item == null || !item.isValid()) {
+                logger.warn("Decoded invalid item for '{}'", entry.getKey());
+            } else {
+                items.put(entry.getKey(), item);
+            }
         }
-        Optional<MapDbItem> item = deserialize(json);
-        return item.isPresent() ? List.of(item.get()) : List.of();
+        logger.debug("Loaded {} items from MapDB database in {} ms", items.size(),
+                System.currentTimeMillis() - start);
     }
 
-    private String serialize(MapDbItem item) {
-        return mapper.toJson(item);
+    /**
+     * Converts the items that have been stored as JSON by former versions to the binary encoding. This is done only
+     * once, when there are no binary items yet. The JSON items are kept, so that a former version still finds them
+     * after a downgrade, but they are not updated anymore.
+     */
+    private void migrateJsonItems() {
+        if (!db.exists(JSON_MAP_NAME) || !map.isEmpty()) {
+            return;
+        }
+        Gson mapper = new GsonBuilder().registerTypeHierarchyAdapter(State.class, new StateTypeAdapter()).create();
+        Map<String, String> jsonMap = db.getTreeMap(JSON_MAP_NAME);
+        int migrated = 0;
+        for (Map.Entry<String, String> entry : jsonMap.entrySet()) {
+            Optional<MapDbItem> item = deserialize(mapper, entry.getValue());
+            if (item.isPresent()) {
+                map.put(entry.getKey(), codec.encode(item.get()));
+                migrated++;
+            }
+        }
+        db.commit();
+        logger.info(
+                "Converted {} items of the MapDB database to the binary format, the former items are kept unchanged in '{}'",
+                migrated, JSON_MAP_NAME);
     }
 
     @SuppressWarnings("null")
-    private Optional<MapDbItem> deserialize(String json) {
+    private Optional<MapDbItem> deserialize(Gson mapper, String json) {
         MapDbItem item = mapper.<MapDbItem> fromJson(json, MapDbItem.class);
         if (item == null || !item.isValid()) {
             logger.warn("Deserialized invalid item: {}", item);
@@ -174,12 +229,28 @@ public class MapDbPersistenceService implements QueryablePersistenceService {
         return Optional.of(item);
     }
 
-    private void commit() {
-        threadPool.submit(() -> db.commit());
+    /**
+     * Commits the stored values as a group, either after {@link #COMMIT_INTERVAL_MS} or as soon as
+     * {@link #COMMIT_BATCH_SIZE} values have been stored.
+     */
+    private void scheduleCommit() {
+        int count = uncommitted.incrementAndGet();
+        if (commitScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::commit, count >= COMMIT_BATCH_SIZE ? 0 : COMMIT_INTERVAL_MS,
+                    TimeUnit.MILLISECONDS);
+        } else if (count == COMMIT_BATCH_SIZE) {
+            // a commit is already scheduled, but not soon enough
+            scheduler.execute(this::commit);
+        }
     }
 
-    private static <T> Stream<T> streamOptional(Optional<T> opt) {
-        return opt.isPresent() ? Stream.of(opt.get()) : Stream.empty();
+    private synchronized void commit() {
+        commitScheduled.set(false);
+        int count = uncommitted.getAndSet(0);
+        if (count > 0 && !db.isClosed()) {
+            db.commit();
+            logger.trace("Committed {} stored values", count);
+        }
     }
 
     @Override
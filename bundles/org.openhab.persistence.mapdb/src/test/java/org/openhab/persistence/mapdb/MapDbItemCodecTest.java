@@ -0,0 +1,90 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.mapdb;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.math.BigDecimal;
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.openhab.core.library.types.DateTimeType;
+import org.openhab.core.library.types.DecimalType;
+import org.openhab.core.library.types.HSBType;
+import org.openhab.core.library.types.OnOffType;
+import org.openhab.core.library.types.OpenClosedType;
+import org.openhab.core.library.types.PercentType;
+import org.openhab.core.library.types.QuantityType;
+import org.openhab.core.library.types.StringType;
+import org.openhab.core.library.unit.SIUnits;
+import org.openhab.core.library.unit.SmartHomeUnits;
+import org.openhab.core.types.State;
+import org.openhab.persistence.mapdb.internal.MapDbItem;
+import org.openhab.persistence.mapdb.internal.MapDbItemCodec;
+
+/**
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+@NonNullByDefault
+public class MapDbItemCodecTest {
+    private MapDbItemCodec codec = new MapDbItemCodec();
+
+    private static final List<State> VALUES = Stream.of(
+            List.of(DecimalType.ZERO, new DecimalType(1.123), new DecimalType(-10000000),
+                    new DecimalType(new BigDecimal("123456789012345678901234567890.123456789"))),
+            List.of(PercentType.ZERO, PercentType.HUNDRED, PercentType.valueOf("0.0000001"),
+                    PercentType.valueOf("99.999")),
+            List.of(HSBType.BLACK, HSBType.fromRGB(11, 22, 33)), List.of(OnOffType.ON, OnOffType.OFF),
+            List.of(OpenClosedType.OPEN, OpenClosedType.CLOSED),
+            List.of(QuantityType.valueOf("1 kW"), new QuantityType<>(new BigDecimal("21.23"), SIUnits.CELSIUS),
+                    QuantityType.valueOf(20, SmartHomeUnits.AMPERE)),
+            List.of(StringType.valueOf(""), StringType.valueOf("a b c 1 2 3"), StringType.valueOf("@@@###   äöü")),
+            List.of(new DateTimeType(ZonedDateTime.now()))).flatMap(list -> list.stream())
+            .collect(Collectors.toList());
+
+    @ParameterizedTest
+    @MethodSource
+    public void encodeDecodeRoundtripShouldRecreateTheItem(State state) {
+        MapDbItem item = new MapDbItem();
+        item.setName("item_name");
+        item.setState(state);
+        item.setTimestamp(new Date(1600000000123L));
+
+        MapDbItem actual = codec.decode(codec.encode(item));
+
+        assertThat(actual, is(notNullValue()));
+        assertThat(actual.getName(), is(equalTo("item_name")));
+        assertThat(actual.getState(), is(equalTo(state)));
+        assertThat(actual.getState().getClass(), is(equalTo(state.getClass())));
+        assertThat(actual.getTimestamp(), is(equalTo(item.getTimestamp())));
+    }
+
+    public static Stream<State> encodeDecodeRoundtripShouldRecreateTheItem() {
+        return VALUES.stream();
+    }
+
+    @Test
+    public void decodeShouldRejectUnknownData() {
+        assertThat(codec.decode(new byte[] { 42 }), is(nullValue()));
+        assertThat(codec.decode(new byte[0]), is(nullValue()));
+    }
+}
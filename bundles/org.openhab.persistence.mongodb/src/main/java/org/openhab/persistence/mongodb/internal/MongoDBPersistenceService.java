@@ -17,6 +17,7 @@ import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -60,11 +61,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteException;
+import com.mongodb.BulkWriteOperation;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoClientURI;
+import com.mongodb.MongoException;
 
 /**
  * This is the implementation of the MongoDB {@link PersistenceService}.
@@ -82,6 +87,15 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
     private static final String FIELD_TIMESTAMP = "timestamp";
     private static final String FIELD_VALUE = "value";
 
+    private static final String INDEX_ITEM_TIMESTAMP = "item_timestamp";
+    private static final String INDEX_REALNAME_TIMESTAMP = "realName_timestamp";
+
+    private static final int DUPLICATE_KEY_ERROR = 11000;
+
+    private static final int DEFAULT_BULK_SIZE = 0;
+    private static final int DEFAULT_BULK_INTERVAL = 1000;
+    private static final int DEFAULT_BULK_BUFFER_SIZE = 10000;
+
     private final Logger logger = LoggerFactory.getLogger(MongoDBPersistenceService.class);
 
     private @NonNullByDefault({}) String url;
@@ -93,7 +107,8 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
     protected final ItemRegistry itemRegistry;
 
     private @NonNullByDefault({}) MongoClient cl;
-    private @NonNullByDefault({}) DBCollection mongoCollection;
+    private volatile @NonNullByDefault({}) DBCollection mongoCollection;
+    private volatile @Nullable MongoDBWriteQueue writeQueue;
 
     @Activate
     public MongoDBPersistenceService(final @Reference ItemRegistry itemRegistry) {
@@ -122,9 +137,21 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
             return;
         }
 
+        int bulkSize = getIntConfig(config, "bulkSize", DEFAULT_BULK_SIZE);
+        int bulkInterval = Math.max(1, getIntConfig(config, "bulkInterval", DEFAULT_BULK_INTERVAL));
+        int bulkBufferSize = Math.max(1, getIntConfig(config, "bulkBufferSize", DEFAULT_BULK_BUFFER_SIZE));
+
+        stopWriteQueue();
         disconnectFromDatabase();
         connectToDatabase();
 
+        if (bulkSize > 0) {
+            MongoDBWriteQueue queue = new MongoDBWriteQueue(bulkSize, bulkInterval, bulkBufferSize,
+                    this::writeBulk);
+            queue.start();
+            writeQueue = queue;
+        }
+
         // connection has been established... initialization completed!
         initialized = true;
     }
@@ -132,9 +159,31 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
     @Deactivate
     public void deactivate(final int reason) {
         logger.debug("MongoDB persistence bundle stopping. Disconnecting from database.");
+        stopWriteQueue();
         disconnectFromDatabase();
     }
 
+    private int getIntConfig(Map<String, Object> config, String key, int defaultValue) {
+        Object value = config.get(key);
+        if (value == null || value.toString().isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Invalid value '{}' for mongodb:{}, using {}", value, key, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private void stopWriteQueue() {
+        MongoDBWriteQueue queue = writeQueue;
+        if (queue != null) {
+            writeQueue = null;
+            queue.stop();
+        }
+    }
+
     @Override
     public String getId() {
         return "mongodb";
@@ -181,9 +230,48 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
         obj.put(FIELD_REALNAME, realName);
         obj.put(FIELD_TIMESTAMP, new Date());
         obj.put(FIELD_VALUE, value);
-        this.mongoCollection.save(obj);
 
-        logger.debug("MongoDB save {}={}", name, value);
+        MongoDBWriteQueue queue = writeQueue;
+        if (queue != null) {
+            queue.add(obj);
+            logger.debug("MongoDB queued {}={}", name, value);
+        } else {
+            this.mongoCollection.save(obj);
+            logger.debug("MongoDB save {}={}", name, value);
+        }
+    }
+
+    /**
+     * Inserts a bulk of documents with a single unordered bulk operation.
+     *
+     * @return the documents that could not be inserted
+     */
+    private List<DBObject> writeBulk(List<DBObject> documents) {
+        DBCollection collection = mongoCollection;
+        if (collection == null) {
+            throw new IllegalStateException("not connected to database");
+        }
+        BulkWriteOperation bulk = collection.initializeUnorderedBulkOperation();
+        for (DBObject document : documents) {
+            bulk.insert(document);
+        }
+        try {
+            bulk.execute();
+            logger.debug("MongoDB bulk insert of {} documents", documents.size());
+            return List.of();
+        } catch (BulkWriteException e) {
+            // with an unordered bulk operation the documents without a write error have been inserted
+            List<DBObject> failed = new ArrayList<>();
+            for (BulkWriteError error : e.getWriteErrors()) {
+                // the ids are set before inserting, so a duplicate key means it has been inserted by a former attempt
+                if (error.getCode() != DUPLICATE_KEY_ERROR) {
+                    failed.add(documents.get(error.getIndex()));
+                }
+            }
+            logger.warn("MongoDB bulk insert: {} of {} documents failed: {}", failed.size(), documents.size(),
+                    e.getMessage());
+            return failed;
+        }
     }
 
     private Object convertValue(State state) {
@@ -234,6 +322,13 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
             BasicDBObject idx = new BasicDBObject();
             idx.append(FIELD_TIMESTAMP, 1).append(FIELD_ITEM, 1);
             this.mongoCollection.createIndex(idx);
+            try {
+                ensureIndexes();
+            } catch (MongoException e) {
+                // queries work without the indexes, only slower
+                logger.warn("Failed to create MongoDB indexes on collection '{}': {}", this.collection,
+                        e.getMessage());
+            }
             logger.debug("Connect MongoDB ... done");
         } catch (Exception e) {
             logger.error("Failed to connect to database {}", this.url);
@@ -241,6 +336,28 @@ public class MongoDBPersistenceService implements QueryablePersistenceService {
         }
     }
 
+    /**
+     * Creates the compound indexes used by queries, which select by item (or real name) and sort by timestamp, and
+     * verifies that they exist.
+     */
+    private void ensureIndexes() {
+        mongoCollection.createIndex(new BasicDBObject(FIELD_ITEM, 1).append(FIELD_TIMESTAMP, 1),
+                new BasicDBObject("name", INDEX_ITEM_TIMESTAMP).append("background", true));
+        mongoCollection.createIndex(new BasicDBObject(FIELD_REALNAME, 1).append(FIELD_TIMESTAMP, 1),
+                new BasicDBObject("name", INDEX_REALNAME_TIMESTAMP).append("background", true));
+
+        Set<String> indexes = new HashSet<>();
+        for (DBObject index : mongoCollection.getIndexInfo()) {
+            indexes.add(String.valueOf(index.get("name")));
+        }
+        for (String index : List.of(INDEX_ITEM_TIMESTAMP, INDEX_REALNAME_TIMESTAMP)) {
+            if (!indexes.contains(index)) {
+                logger.warn("MongoDB index '{}' is missing on collection '{}', queries will be slow", index,
+                        this.collection);
+            }
+        }
+    }
+
     /**
      * Disconnects from the database
      */
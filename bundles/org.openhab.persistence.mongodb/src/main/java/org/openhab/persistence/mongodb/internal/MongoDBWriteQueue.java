@@ -0,0 +1,206 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.mongodb.internal;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.core.common.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.DBObject;
+
+/**
+ * Buffers the documents to be inserted and writes them with bulk operations from a single writer thread, as soon as
+ * the bulk size is reached or after the configured interval.
+ *
+ * The buffer is bounded: if it is full, the storing thread waits for up to one interval until the writer has made
+ * room, and the document is dropped if it still cannot be buffered. Documents that could not be written are buffered
+ * again and written with the next flush, up to {@link #MAX_ATTEMPTS} times.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+@NonNullByDefault
+public class MongoDBWriteQueue {
+    private final Logger logger = LoggerFactory.getLogger(MongoDBWriteQueue.class);
+
+    /**
+     * Writes a bulk of documents.
+     */
+    @FunctionalInterface
+    public interface BulkWriter {
+        /**
+         * @return the documents that could not be written
+         * @throws RuntimeException if none of the documents could be written
+         */
+        List<DBObject> write(List<DBObject> documents);
+    }
+
+    /** How often the writing of a document is attempted before it is dropped */
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final int bulkSize;
+    private final int interval;
+    private final BulkWriter writer;
+
+    private final BlockingDeque<DBObject> buffer;
+    private final Object flushLock = new Object();
+    // failed attempts of the buffered documents, only accessed while holding the flushLock
+    private Map<DBObject, Integer> attempts = new IdentityHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler = Executors
+            .newSingleThreadScheduledExecutor(new NamedThreadFactory("MongoDBWriter"));
+
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    public MongoDBWriteQueue(int bulkSize, int interval, int bufferSize, BulkWriter writer) {
+        this.bulkSize = bulkSize;
+        this.interval = interval;
+        this.buffer = new LinkedBlockingDeque<>(Math.max(bufferSize, bulkSize));
+        this.writer = writer;
+    }
+
+    public void start() {
+        logger.debug("Starting MongoDB bulk writer with bulkSize={} interval={} ms", bulkSize, interval);
+        scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the writer and writes all documents that are still buffered.
+     */
+    public void stop() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(interval + 5000L, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        logger.debug("Stopped MongoDB bulk writer, written={} dropped={} failed={}", writtenCount.get(),
+                droppedCount.get(), failedCount.get());
+    }
+
+    /**
+     * Adds a document to the buffer, waiting for up to one interval if the buffer is full.
+     *
+     * @param document the document to insert
+     * @return false if the document has been dropped
+     */
+    public boolean add(DBObject document) {
+        boolean added = buffer.offer(document);
+        if (!added) {
+            scheduleFlush();
+            try {
+                added = buffer.offer(document, interval, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!added) {
+                droppedCount.incrementAndGet();
+                logger.warn("MongoDB write buffer is full, dropping document {}", document);
+                return false;
+            }
+        }
+        if (buffer.size() >= bulkSize) {
+            scheduleFlush();
+        }
+        return true;
+    }
+
+    /**
+     * Writes all buffered documents in bulks of at most the configured bulk size.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            flushScheduled.set(false);
+            List<DBObject> bulk = new ArrayList<>(bulkSize);
+            List<DBObject> failed = new ArrayList<>();
+            while (buffer.drainTo(bulk, bulkSize) > 0) {
+                try {
+                    List<DBObject> notWritten = writer.write(bulk);
+                    writtenCount.addAndGet(bulk.size() - notWritten.size());
+                    failed.addAll(notWritten);
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to write {} documents to MongoDB: {}", bulk.size(), e.getMessage());
+                    failed.addAll(bulk);
+                }
+                bulk.clear();
+            }
+            requeue(failed);
+        }
+    }
+
+    /**
+     * Puts documents that could not be written back to the head of the buffer, so that they are written with the next
+     * flush. Documents that have failed too often, or that do not fit into the buffer anymore, are dropped.
+     */
+    private void requeue(List<DBObject> failed) {
+        Map<DBObject, Integer> previousAttempts = attempts;
+        attempts = new IdentityHashMap<>();
+        int dropped = 0;
+        for (int i = failed.size() - 1; i >= 0; i--) {
+            DBObject document = failed.get(i);
+            int attempt = previousAttempts.getOrDefault(document, 0) + 1;
+            if (attempt < MAX_ATTEMPTS && buffer.offerFirst(document)) {
+                attempts.put(document, attempt);
+            } else {
+                dropped++;
+            }
+        }
+        if (dropped > 0) {
+            failedCount.addAndGet(dropped);
+            logger.warn("Dropping {} documents that could not be written to MongoDB", dropped);
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                // the writer has been stopped, the documents are written by stop()
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    public int getBufferedCount() {
+        return buffer.size();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+}
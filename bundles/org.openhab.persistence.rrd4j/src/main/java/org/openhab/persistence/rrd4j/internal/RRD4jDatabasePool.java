@@ -0,0 +1,224 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.rrd4j.internal;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.rrd4j.core.RrdDb;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@link RRD4jDatabasePool} keeps a bounded number of {@link RrdDb} handles open, so that the database files do
+ * not have to be opened and parsed again for every sample that is stored or queried.
+ *
+ * Each database has its own lock, i.e. operations on different databases can run concurrently, while operations on the
+ * same database are serialized. When the pool exceeds its capacity, the least recently used handles that are not in
+ * use are closed. A database is not opened again before its evicted handle has been closed, so that a file is never
+ * open twice.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+@NonNullByDefault
+public class RRD4jDatabasePool {
+
+    /**
+     * Opens (or creates) the database for a given alias.
+     */
+    @FunctionalInterface
+    public interface DatabaseOpener {
+        @Nullable
+        RrdDb open(String alias) throws IOException;
+    }
+
+    /**
+     * An operation that is executed while holding the lock of a single database.
+     */
+    @FunctionalInterface
+    public interface DatabaseOperation<T> {
+        T execute(RrdDb db) throws IOException;
+    }
+
+    private static class Handle {
+        private final String alias;
+        private final ReentrantLock lock = new ReentrantLock();
+        private @Nullable RrdDb db;
+        private int users;
+        private boolean evicted;
+
+        private Handle(String alias) {
+            this.alias = alias;
+        }
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(RRD4jDatabasePool.class);
+
+    private final int capacity;
+    private final DatabaseOpener opener;
+    private final LinkedHashMap<String, Handle> handles = new LinkedHashMap<>(16, 0.75f, true);
+    // evicted handles that have not been closed yet, guarded by handles
+    private final Map<String, Handle> closing = new HashMap<>();
+
+    public RRD4jDatabasePool(int capacity, DatabaseOpener opener) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The pool capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.opener = opener;
+    }
+
+    /**
+     * Executes an operation on the database for the given alias. The database is opened (or created) if it is not yet
+     * held by the pool.
+     *
+     * @param alias the alias of the database
+     * @param operation the operation to execute
+     * @return the result of the operation or <code>null</code> if no database could be opened for the alias
+     * @throws IOException if opening the database or executing the operation fails, or if the thread is interrupted
+     *             while the database is closed by another thread
+     */
+    public <T> @Nullable T execute(String alias, DatabaseOperation<T> operation) throws IOException {
+        Handle handle = acquire(alias);
+        try {
+            handle.lock.lock();
+            try {
+                RrdDb db = handle.db;
+                if (db == null || db.isClosed()) {
+                    db = opener.open(alias);
+                    handle.db = db;
+                }
+                if (db == null) {
+                    return null;
+                }
+                return operation.execute(db);
+            } finally {
+                handle.lock.unlock();
+            }
+        } finally {
+            release(alias, handle);
+        }
+    }
+
+    /**
+     * Returns the number of database handles currently held by the pool.
+     *
+     * @return the number of handles
+     */
+    public int size() {
+        synchronized (handles) {
+            return handles.size();
+        }
+    }
+
+    /**
+     * Closes all database handles held by the pool.
+     */
+    public void close() {
+        List<Handle> toClose = new ArrayList<>();
+        synchronized (handles) {
+            for (Handle handle : handles.values()) {
+                evict(handle);
+                // handles in use are closed when they are released
+                if (handle.users == 0) {
+                    toClose.add(handle);
+                }
+            }
+            handles.clear();
+        }
+        for (Handle handle : toClose) {
+            closeHandle(handle);
+        }
+    }
+
+    private Handle acquire(String alias) throws IOException {
+        synchronized (handles) {
+            while (closing.containsKey(alias)) {
+                try {
+                    handles.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for rrd4j database " + alias);
+                }
+            }
+            Handle handle = handles.computeIfAbsent(alias, Handle::new);
+            handle.users++;
+            return handle;
+        }
+    }
+
+    /**
+     * Marks a handle as evicted, it has to be removed from the handles and closed by the caller or by its last user.
+     * Must be called while holding the lock of the handles.
+     */
+    private void evict(Handle handle) {
+        handle.evicted = true;
+        closing.put(handle.alias, handle);
+    }
+
+    private void release(String alias, Handle handle) {
+        List<Handle> toClose = new ArrayList<>();
+        synchronized (handles) {
+            handle.users--;
+            if (handle.db == null && handle.users == 0 && handles.get(alias) == handle) {
+                // nothing could be opened for this alias, so do not keep an empty handle around
+                handles.remove(alias);
+            }
+            if (handle.evicted && handle.users == 0) {
+                // the pool has been closed while the handle was in use
+                toClose.add(handle);
+            }
+            Iterator<Map.Entry<String, Handle>> iterator = handles.entrySet().iterator();
+            while (handles.size() > capacity && iterator.hasNext()) {
+                Handle eldest = iterator.next().getValue();
+                if (eldest.users == 0) {
+                    iterator.remove();
+                    evict(eldest);
+                    toClose.add(eldest);
+                }
+            }
+        }
+        for (Handle evicted : toClose) {
+            closeHandle(evicted);
+        }
+    }
+
+    private void closeHandle(Handle handle) {
+        handle.lock.lock();
+        try {
+            RrdDb db = handle.db;
+            handle.db = null;
+            if (db != null && !db.isClosed()) {
+                db.close();
+            }
+        } catch (IOException e) {
+            logger.debug("Error closing rrd4j database: {}", e.getMessage());
+        } finally {
+            handle.lock.unlock();
+            synchronized (handles) {
+                if (closing.remove(handle.alias, handle)) {
+                    handles.notifyAll();
+                }
+            }
+        }
+    }
+}
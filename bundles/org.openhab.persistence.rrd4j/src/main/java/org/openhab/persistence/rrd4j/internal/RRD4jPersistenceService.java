@@ -18,7 +18,6 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
@@ -28,8 +27,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.measure.Quantity;
 import javax.measure.Unit;
@@ -62,15 +61,19 @@ import org.openhab.core.persistence.QueryablePersistenceService;
 import org.openhab.core.persistence.strategy.PersistenceCronStrategy;
 import org.openhab.core.persistence.strategy.PersistenceStrategy;
 import org.openhab.core.types.State;
+import org.openhab.persistence.rrd4j.internal.RRD4jDatabasePool.DatabaseOperation;
+import org.openhab.persistence.rrd4j.internal.RRD4jSampleQueue.PendingSample;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.ConfigurationPolicy;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
 import org.rrd4j.ConsolFun;
 import org.rrd4j.DsType;
 import org.rrd4j.core.FetchData;
 import org.rrd4j.core.FetchRequest;
+import org.rrd4j.core.RrdBackendFactory;
 import org.rrd4j.core.RrdDb;
 import org.rrd4j.core.RrdDef;
 import org.rrd4j.core.Sample;
@@ -87,8 +90,9 @@ import org.slf4j.LoggerFactory;
  * @author Karel Goderis - remove TimerThread dependency
  */
 @NonNullByDefault
-@Component(service = { PersistenceService.class,
-        QueryablePersistenceService.class }, configurationPid = "org.openhab.rrd4j", configurationPolicy = ConfigurationPolicy.OPTIONAL)
+@Component(service = { PersistenceService.class, QueryablePersistenceService.class,
+        RRD4jPersistenceService.class }, configurationPid = "org.openhab.rrd4j", //
+        configurationPolicy = ConfigurationPolicy.OPTIONAL)
 public class RRD4jPersistenceService implements QueryablePersistenceService {
 
     private static final String DEFAULT_OTHER = "default_other";
@@ -98,8 +102,8 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
     private static final Set<String> SUPPORTED_TYPES = Set.of(CoreItemFactory.SWITCH, CoreItemFactory.CONTACT,
             CoreItemFactory.DIMMER, CoreItemFactory.NUMBER, CoreItemFactory.ROLLERSHUTTER);
 
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(3,
-            new NamedThreadFactory("RRD4j"));
+    private final ScheduledExecutorService scheduler = Executors
+            .newSingleThreadScheduledExecutor(new NamedThreadFactory("RRD4j"));
 
     private final Map<String, RrdDefConfig> rrdDefs = new ConcurrentHashMap<>();
 
@@ -109,7 +113,15 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
 
     private final Logger logger = LoggerFactory.getLogger(RRD4jPersistenceService.class);
 
-    private final Map<String, ScheduledFuture<?>> scheduledJobs = new HashMap<>();
+    private static final String CONFIG_POOL_SIZE = "poolSize";
+    private static final String CONFIG_BACKEND = "backend";
+    private static final int DEFAULT_POOL_SIZE = 256;
+
+    private final RRD4jSampleQueue sampleQueue = new RRD4jSampleQueue();
+    private final AtomicBoolean writerScheduled = new AtomicBoolean();
+
+    private volatile RrdBackendFactory backendFactory = RrdBackendFactory.getDefaultFactory();
+    private volatile RRD4jDatabasePool pool = new RRD4jDatabasePool(DEFAULT_POOL_SIZE, this::openDB);
 
     protected final ItemRegistry itemRegistry;
 
@@ -129,96 +141,152 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
     }
 
     @Override
-    public synchronized void store(final Item item, @Nullable final String alias) {
+    public void store(final Item item, @Nullable final String alias) {
         if (!isSupportedItemType(item)) {
             logger.trace("Ignoring item '{}' since its type {} is not supported", item.getName(), item.getType());
             return;
         }
         final String name = alias == null ? item.getName() : alias;
-        RrdDb db = getDB(name);
-        if (db != null) {
-            ConsolFun function = getConsolidationFunction(db);
-            long now = System.currentTimeMillis() / 1000;
-            if (function != ConsolFun.AVERAGE) {
+        Double value = getValue(item);
+        if (value != null) {
+            long now = System.currentTimeMillis();
+            sampleQueue.add(name, now / 1000, value);
+            scheduleWriter(now);
+        }
+    }
+
+    private @Nullable Double getValue(Item item) {
+        Double value = null;
+        if (item instanceof NumberItem && item.getState() instanceof QuantityType) {
+            NumberItem nItem = (NumberItem) item;
+            QuantityType<?> qState = (QuantityType<?>) item.getState();
+            Unit<? extends Quantity<?>> unit = nItem.getUnit();
+            if (unit != null) {
+                QuantityType<?> convertedState = qState.toUnit(unit);
+                if (convertedState != null) {
+                    value = convertedState.doubleValue();
+                } else {
+                    logger.warn(
+                            "Failed to convert state '{}' to unit '{}'. Please check your item definition for correctness.",
+                            qState, unit);
+                }
+            } else {
+                value = qState.doubleValue();
+            }
+        } else {
+            DecimalType state = item.getStateAs(DecimalType.class);
+            if (state != null) {
+                value = state.toBigDecimal().doubleValue();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Schedules the writer for the start of the second following the given time, so that all values of a second have
+     * been merged in the queue before the second is written.
+     */
+    private void scheduleWriter(long now) {
+        if (writerScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.schedule(this::writeSamples, 1000 - now % 1000, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // this happens if the system is shut down
+                writerScheduled.set(false);
+                logger.debug("Could not schedule rrd4j writer: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void writeSamples() {
+        writerScheduled.set(false);
+        writeSamples(System.currentTimeMillis() / 1000);
+        if (sampleQueue.size() > 0) {
+            // values of the current second are written when it is over
+            scheduleWriter(System.currentTimeMillis());
+        }
+        logger.trace("rrd4j sample queue depth is {}, {} samples have been coalesced", sampleQueue.size(),
+                sampleQueue.getCoalescedCount());
+    }
+
+    private void writeSamples(long before) {
+        for (Map.Entry<String, List<PendingSample>> entry : sampleQueue.drain(before).entrySet()) {
+            String name = entry.getKey();
+            List<PendingSample> samples = entry.getValue();
+            try {
+                pool.execute(name, db -> storeInDB(db, name, samples));
+            } catch (IOException e) {
+                logger.warn("Could not persist '{}' to rrd4j database: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes a batch of samples to a database. Samples for a second that has already been written to the database
+     * are dropped, as rrd4j only accepts one sample per second.
+     */
+    private @Nullable Void storeInDB(RrdDb db, String name, List<PendingSample> samples) throws IOException {
+        boolean storeLastValueAgain = getConsolidationFunction(db) != ConsolFun.AVERAGE;
+        boolean isCounter = db.getDatasource(DATASOURCE_STATE).getType() == DsType.COUNTER;
+        long lastUpdateTime = db.getLastUpdateTime();
+        double lastValue = db.getLastDatasourceValue(DATASOURCE_STATE);
+        for (PendingSample pending : samples) {
+            if (pending.time <= lastUpdateTime) {
+                logger.debug("Dropped value '{}' for '{}', rrd4j database has already been updated at {}",
+                        pending.value, name, lastUpdateTime);
+                sampleQueue.countCoalesced();
+                continue;
+            }
+            if (storeLastValueAgain && pending.time - 1 > lastUpdateTime && !Double.isNaN(lastValue)) {
                 try {
                     // we store the last value again, so that the value change
                     // in the database is not interpolated, but
                     // happens right at this spot
-                    if (now - 1 > db.getLastUpdateTime()) {
-                        // only do it if there is not already a value
-                        double lastValue = db.getLastDatasourceValue(DATASOURCE_STATE);
-                        if (!Double.isNaN(lastValue)) {
-                            Sample sample = db.createSample();
-                            sample.setTime(now - 1);
-                            sample.setValue(DATASOURCE_STATE, lastValue);
-                            sample.update();
-                            logger.debug("Stored '{}' as value '{}' in rrd4j database (again)", name, lastValue);
-                        }
-                    }
-                } catch (IOException e) {
+                    Sample sample = db.createSample();
+                    sample.setTime(pending.time - 1);
+                    sample.setValue(DATASOURCE_STATE, lastValue);
+                    sample.update();
+                    logger.debug("Stored '{}' as value '{}' in rrd4j database (again)", name, lastValue);
+                } catch (IllegalArgumentException e) {
                     logger.debug("Error storing last value (again): {}", e.getMessage());
                 }
             }
             try {
-                Sample sample = db.createSample();
-                sample.setTime(now);
-
-                Double value = null;
-
-                if (item instanceof NumberItem && item.getState() instanceof QuantityType) {
-                    NumberItem nItem = (NumberItem) item;
-                    QuantityType<?> qState = (QuantityType<?>) item.getState();
-                    Unit<? extends Quantity<?>> unit = nItem.getUnit();
-                    if (unit != null) {
-                        QuantityType<?> convertedState = qState.toUnit(unit);
-                        if (convertedState != null) {
-                            value = convertedState.doubleValue();
-                        } else {
-                            logger.warn(
-                                    "Failed to convert state '{}' to unit '{}'. Please check your item definition for correctness.",
-                                    qState, unit);
-                        }
-                    } else {
-                        value = qState.doubleValue();
-                    }
-                } else {
-                    DecimalType state = item.getStateAs(DecimalType.class);
-                    if (state != null) {
-                        value = state.toBigDecimal().doubleValue();
-                    }
-                }
-                if (value != null) {
-                    if (db.getDatasource(DATASOURCE_STATE).getType() == DsType.COUNTER) { // counter values must be
-                                                                                          // adjusted by stepsize
-                        value = value * db.getRrdDef().getStep();
-                    }
-                    sample.setValue(DATASOURCE_STATE, value);
-                    sample.update();
-                    logger.debug("Stored '{}' as value '{}' in rrd4j database", name, value);
+                double value = pending.value;
+                if (isCounter) { // counter values must be adjusted by stepsize
+                    value = value * db.getRrdDef().getStep();
                 }
+                Sample sample = db.createSample();
+                sample.setTime(pending.time);
+                sample.setValue(DATASOURCE_STATE, value);
+                sample.update();
+                logger.debug("Stored '{}' as value '{}' in rrd4j database", name, value);
+                lastUpdateTime = pending.time;
+                lastValue = value;
             } catch (IllegalArgumentException e) {
-                String message = e.getMessage();
-                if (message != null && message.contains("at least one second step is required")) {
-                    // we try to store the value one second later
-                    ScheduledFuture<?> job = scheduledJobs.get(name);
-                    if (job != null) {
-                        job.cancel(true);
-                        scheduledJobs.remove(name);
-                    }
-                    job = scheduler.schedule(() -> store(item, name), 1, TimeUnit.SECONDS);
-                    scheduledJobs.put(name, job);
-                } else {
-                    logger.warn("Could not persist '{}' to rrd4j database: {}", name, e.getMessage());
-                }
-            } catch (Exception e) {
                 logger.warn("Could not persist '{}' to rrd4j database: {}", name, e.getMessage());
             }
-            try {
-                db.close();
-            } catch (IOException e) {
-                logger.debug("Error closing rrd4j database: {}", e.getMessage());
-            }
         }
+        return null;
+    }
+
+    /**
+     * Returns the number of values waiting to be written to the rrd4j databases.
+     *
+     * @return the write queue depth
+     */
+    public int getQueueDepth() {
+        return sampleQueue.size();
+    }
+
+    /**
+     * Returns the number of values that have not been written, because a newer value for the same item was stored in
+     * the same second.
+     *
+     * @return the number of coalesced values
+     */
+    public long getCoalescedCount() {
+        return sampleQueue.getCoalescedCount();
     }
 
     @Override
@@ -230,12 +298,6 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
     public Iterable<HistoricItem> query(FilterCriteria filter) {
         String itemName = filter.getItemName();
 
-        RrdDb db = getDB(itemName);
-        if (db == null) {
-            logger.debug("Could not find item '{}' in rrd4j database", itemName);
-            return List.of();
-        }
-
         Item item = null;
         Unit<?> unit = null;
         try {
@@ -249,61 +311,74 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
             logger.debug("Could not find item '{}' in registry", itemName);
         }
 
+        final Item queryItem = item;
+        final Unit<?> queryUnit = unit;
+        try {
+            List<HistoricItem> items = pool.execute(itemName,
+                    db -> queryDB(db, filter, itemName, queryItem, queryUnit));
+            if (items == null) {
+                logger.debug("Could not find item '{}' in rrd4j database", itemName);
+                return List.of();
+            }
+            return items;
+        } catch (IOException e) {
+            logger.warn("Could not query rrd4j database for item '{}': {}", itemName, e.getMessage());
+            return List.of();
+        }
+    }
+
+    private List<HistoricItem> queryDB(RrdDb db, FilterCriteria filter, String itemName, @Nullable Item item,
+            @Nullable Unit<?> unit) throws IOException {
         long start = 0L;
         long end = filter.getEndDate() == null ? System.currentTimeMillis() / 1000
                 : filter.getEndDate().toInstant().getEpochSecond();
 
-        try {
-            if (filter.getBeginDate() == null) {
-                // as rrd goes back for years and gets more and more
-                // inaccurate, we only support descending order
-                // and a single return value
-                // if there is no begin date is given - this case is
-                // required specifically for the historicState()
-                // query, which we want to support
-                if (filter.getOrdering() == Ordering.DESCENDING && filter.getPageSize() == 1
-                        && filter.getPageNumber() == 0) {
-                    if (filter.getEndDate() == null) {
-                        // we are asked only for the most recent value!
-                        double lastValue = db.getLastDatasourceValue(DATASOURCE_STATE);
-                        if (!Double.isNaN(lastValue)) {
-                            HistoricItem rrd4jItem = new RRD4jItem(itemName, mapToState(lastValue, item, unit),
-                                    ZonedDateTime.ofInstant(Instant.ofEpochMilli(db.getLastArchiveUpdateTime() * 1000),
-                                            ZoneId.systemDefault()));
-                            return List.of(rrd4jItem);
-                        } else {
-                            return List.of();
-                        }
+        if (filter.getBeginDate() == null) {
+            // as rrd goes back for years and gets more and more
+            // inaccurate, we only support descending order
+            // and a single return value
+            // if there is no begin date is given - this case is
+            // required specifically for the historicState()
+            // query, which we want to support
+            if (filter.getOrdering() == Ordering.DESCENDING && filter.getPageSize() == 1
+                    && filter.getPageNumber() == 0) {
+                if (filter.getEndDate() == null) {
+                    // we are asked only for the most recent value!
+                    double lastValue = db.getLastDatasourceValue(DATASOURCE_STATE);
+                    if (!Double.isNaN(lastValue)) {
+                        HistoricItem rrd4jItem = new RRD4jItem(itemName, mapToState(lastValue, item, unit),
+                                ZonedDateTime.ofInstant(Instant.ofEpochMilli(db.getLastArchiveUpdateTime() * 1000),
+                                        ZoneId.systemDefault()));
+                        return List.of(rrd4jItem);
                     } else {
-                        start = end;
+                        return List.of();
                     }
                 } else {
-                    throw new UnsupportedOperationException("rrd4j does not allow querys without a begin date, "
-                            + "unless order is descending and a single value is requested");
+                    start = end;
                 }
             } else {
-                start = filter.getBeginDate().toInstant().getEpochSecond();
+                throw new UnsupportedOperationException("rrd4j does not allow querys without a begin date, "
+                        + "unless order is descending and a single value is requested");
             }
+        } else {
+            start = filter.getBeginDate().toInstant().getEpochSecond();
+        }
 
-            FetchRequest request = db.createFetchRequest(getConsolidationFunction(db), start, end, 1);
-            FetchData result = request.fetchData();
-
-            List<HistoricItem> items = new ArrayList<>();
-            long ts = result.getFirstTimestamp();
-            long step = result.getRowCount() > 1 ? result.getStep() : 0;
-            for (double value : result.getValues(DATASOURCE_STATE)) {
-                if (!Double.isNaN(value) && (((ts >= start) && (ts <= end)) || (start == end))) {
-                    RRD4jItem rrd4jItem = new RRD4jItem(itemName, mapToState(value, item, unit),
-                            ZonedDateTime.ofInstant(Instant.ofEpochMilli(ts * 1000), ZoneId.systemDefault()));
-                    items.add(rrd4jItem);
-                }
-                ts += step;
+        FetchRequest request = db.createFetchRequest(getConsolidationFunction(db), start, end, 1);
+        FetchData result = request.fetchData();
+
+        List<HistoricItem> items = new ArrayList<>();
+        long ts = result.getFirstTimestamp();
+        long step = result.getRowCount() > 1 ? result.getStep() : 0;
+        for (double value : result.getValues(DATASOURCE_STATE)) {
+            if (!Double.isNaN(value) && (((ts >= start) && (ts <= end)) || (start == end))) {
+                RRD4jItem rrd4jItem = new RRD4jItem(itemName, mapToState(value, item, unit),
+                        ZonedDateTime.ofInstant(Instant.ofEpochMilli(ts * 1000), ZoneId.systemDefault()));
+                items.add(rrd4jItem);
             }
-            return items;
-        } catch (IOException e) {
-            logger.warn("Could not query rrd4j database for item '{}': {}", itemName, e.getMessage());
-            return List.of();
+            ts += step;
         }
+        return items;
     }
 
     @Override
@@ -311,13 +386,28 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
         return Set.of();
     }
 
-    protected synchronized @Nullable RrdDb getDB(String alias) {
+    /**
+     * Executes an operation on the existing database of an item, using the open database of the pool.
+     *
+     * @param itemName the name of the item
+     * @param operation the operation to execute
+     * @return the result of the operation or <code>null</code> if there is no database for the item
+     * @throws IOException if opening the database or executing the operation fails
+     */
+    public <T> @Nullable T executeOnDB(String itemName, DatabaseOperation<T> operation) throws IOException {
+        if (!new File(DB_FOLDER + File.separator + itemName + ".rrd").exists()) {
+            return null;
+        }
+        return pool.execute(itemName, operation);
+    }
+
+    private @Nullable RrdDb openDB(String alias) {
         RrdDb db = null;
         File file = new File(DB_FOLDER + File.separator + alias + ".rrd");
         try {
             if (file.exists()) {
                 // recreate the RrdDb instance from the file
-                db = new RrdDb(file.getAbsolutePath());
+                db = new RrdDb(file.getAbsolutePath(), backendFactory);
             } else {
                 File folder = new File(DB_FOLDER);
                 if (!folder.exists()) {
@@ -326,7 +416,7 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
                 RrdDef rrdDef = getRrdDef(alias, file);
                 if (rrdDef != null) {
                     // create a new database file
-                    db = new RrdDb(rrdDef);
+                    db = new RrdDb(rrdDef, backendFactory);
                 } else {
                     logger.debug(
                             "Did not create rrd4j database for item '{}' since no rrd definition could be determined. This is likely due to an unsupported item type.",
@@ -430,8 +520,23 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
         modified(config);
     }
 
+    @Deactivate
+    protected void deactivate() {
+        scheduler.shutdown();
+        try {
+            // let the writer finish, then write what is still pending
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeSamples(Long.MAX_VALUE);
+        pool.close();
+    }
+
     @Modified
     protected void modified(final Map<String, Object> config) {
+        configurePool(config);
+
         // clean existing definitions
         rrdDefs.clear();
 
@@ -483,8 +588,9 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
         while (keys.hasNext()) {
             String key = keys.next();
 
-            if (key.equals("service.pid") || key.equals("component.name")) {
-                // ignore service.pid and name
+            if (key.equals("service.pid") || key.equals("component.name") || key.equals(CONFIG_POOL_SIZE)
+                    || key.equals(CONFIG_BACKEND)) {
+                // ignore service.pid and name as well as the pool settings
                 continue;
             }
 
@@ -541,6 +647,39 @@ public class RRD4jPersistenceService implements QueryablePersistenceService {
         }
     }
 
+    private void configurePool(final Map<String, Object> config) {
+        int poolSize = DEFAULT_POOL_SIZE;
+        Object poolSizeConfig = config.get(CONFIG_POOL_SIZE);
+        if (poolSizeConfig != null) {
+            try {
+                poolSize = Integer.parseInt(poolSizeConfig.toString().trim());
+                if (poolSize < 1) {
+                    logger.warn("Ignoring illegal pool size {}, using {}", poolSize, DEFAULT_POOL_SIZE);
+                    poolSize = DEFAULT_POOL_SIZE;
+                }
+            } catch (NumberFormatException e) {
+                logger.warn("Ignoring illegal pool size '{}', using {}", poolSizeConfig, DEFAULT_POOL_SIZE);
+            }
+        }
+
+        RrdBackendFactory factory = RrdBackendFactory.getDefaultFactory();
+        Object backendConfig = config.get(CONFIG_BACKEND);
+        if (backendConfig != null && !backendConfig.toString().isBlank()) {
+            try {
+                factory = RrdBackendFactory.getFactory(backendConfig.toString().trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                logger.warn("Ignoring unknown rrd4j backend '{}', using {}", backendConfig, factory.getName());
+            }
+        }
+
+        // close all open handles, they will be reopened with the new settings on demand
+        RRD4jDatabasePool oldPool = pool;
+        backendFactory = factory;
+        pool = new RRD4jDatabasePool(poolSize, this::openDB);
+        oldPool.close();
+        logger.debug("Using rrd4j backend {} with a pool of {} open databases", factory.getName(), poolSize);
+    }
+
     private class RrdArchiveDef {
         public @Nullable ConsolFun fcn;
         public double xff;
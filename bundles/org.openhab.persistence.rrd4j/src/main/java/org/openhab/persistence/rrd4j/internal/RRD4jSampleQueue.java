@@ -0,0 +1,125 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.rrd4j.internal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+
+/**
+ * The {@link RRD4jSampleQueue} collects the samples that still have to be written to the rrd4j databases.
+ *
+ * As rrd4j only accepts one sample per second and database, only the last value per second is kept for each alias.
+ * Values that are replaced this way are counted as coalesced.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+@NonNullByDefault
+public class RRD4jSampleQueue {
+
+    /**
+     * A single value to be stored at a given time (in seconds).
+     */
+    public static class PendingSample {
+        public final long time;
+        public final double value;
+
+        public PendingSample(long time, double value) {
+            this.time = time;
+            this.value = value;
+        }
+    }
+
+    private final Map<String, List<PendingSample>> samples = new LinkedHashMap<>();
+    private final AtomicLong coalesced = new AtomicLong();
+    private int size;
+
+    /**
+     * Adds a sample for the given alias. If there is already a pending sample for the same or a later second, it is
+     * replaced by the new one.
+     *
+     * @param alias the alias of the database
+     * @param time the time of the sample in seconds
+     * @param value the value of the sample
+     */
+    public synchronized void add(String alias, long time, double value) {
+        List<PendingSample> pending = samples.computeIfAbsent(alias, a -> new ArrayList<>(2));
+        while (!pending.isEmpty() && pending.get(pending.size() - 1).time >= time) {
+            pending.remove(pending.size() - 1);
+            size--;
+            coalesced.incrementAndGet();
+        }
+        pending.add(new PendingSample(time, value));
+        size++;
+    }
+
+    /**
+     * Counts a sample that has been dropped by the writer, because the database has already been updated in the same
+     * second.
+     */
+    public void countCoalesced() {
+        coalesced.incrementAndGet();
+    }
+
+    /**
+     * Removes the pending samples for the seconds before the given time from the queue. Samples of later seconds are
+     * kept, as further values for them may still arrive.
+     *
+     * @param before the time in seconds of the first sample to keep
+     * @return the removed samples per alias, each list ordered by time
+     */
+    public synchronized Map<String, List<PendingSample>> drain(long before) {
+        Map<String, List<PendingSample>> drained = new LinkedHashMap<>();
+        for (Iterator<Map.Entry<String, List<PendingSample>>> it = samples.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, List<PendingSample>> entry = it.next();
+            List<PendingSample> pending = entry.getValue();
+            int due = 0;
+            while (due < pending.size() && pending.get(due).time < before) {
+                due++;
+            }
+            if (due == pending.size()) {
+                drained.put(entry.getKey(), pending);
+                it.remove();
+            } else if (due > 0) {
+                List<PendingSample> head = pending.subList(0, due);
+                drained.put(entry.getKey(), new ArrayList<>(head));
+                head.clear();
+            }
+            size -= due;
+        }
+        return drained;
+    }
+
+    /**
+     * Returns the number of samples waiting to be written.
+     *
+     * @return the queue depth
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of samples that have been dropped because a newer value for the same second was queued.
+     *
+     * @return the number of coalesced samples
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.persistence.rrd4j.internal.charts;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import javax.imageio.ImageIO;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+import org.openhab.core.items.ItemNotFoundException;
+
+/**
+ * The {@link RRD4jChartCache} keeps recently rendered charts, so that identical chart requests (e.g. from several
+ * clients showing the same dashboard) are only rendered once per RRD step.
+ *
+ * Concurrent requests for a chart that is currently being rendered wait for that rendering instead of starting their
+ * own.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+@NonNullByDefault
+public class RRD4jChartCache {
+
+    /**
+     * Identifies a chart by everything that influences its rendering.
+     */
+    public static class ChartKey {
+        private final @Nullable String items;
+        private final @Nullable String groups;
+        private final long period;
+        private final long end;
+        private final int width;
+        private final int height;
+
+        /**
+         * @param items the comma separated item names
+         * @param groups the comma separated group names
+         * @param period the time span of the chart in seconds
+         * @param end the end of the chart in seconds, or -1 if the chart ends now
+         * @param width the width of the chart in pixels
+         * @param height the height of the chart in pixels
+         */
+        public ChartKey(@Nullable String items, @Nullable String groups, long period, long end, int width,
+                int height) {
+            this.items = items;
+            this.groups = groups;
+            this.period = period;
+            this.end = end;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(items, groups, period, end, width, height);
+        }
+
+        @Override
+        public boolean equals(@Nullable Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ChartKey)) {
+                return false;
+            }
+            ChartKey other = (ChartKey) obj;
+            return Objects.equals(items, other.items) && Objects.equals(groups, other.groups)
+                    && period == other.period && end == other.end && width == other.width && height == other.height;
+        }
+    }
+
+    /**
+     * A rendered chart together with the time until which it is up to date.
+     */
+    public static class RenderedChart {
+        private final BufferedImage image;
+        private final long validUntil;
+        private byte @Nullable [] png;
+
+        /**
+         * @param image the rendered chart
+         * @param validUntil the time in milliseconds until which the chart does not change
+         */
+        public RenderedChart(BufferedImage image, long validUntil) {
+            this.image = image;
+            this.validUntil = validUntil;
+        }
+
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        /**
+         * Returns the chart encoded as PNG. The image is only encoded once.
+         *
+         * @return the PNG bytes
+         * @throws IOException if the image cannot be encoded
+         */
+        public synchronized byte[] getPng() throws IOException {
+            byte[] encoded = png;
+            if (encoded == null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ImageIO.write(image, "png", out);
+                encoded = out.toByteArray();
+                png = encoded;
+            }
+            return encoded;
+        }
+    }
+
+    /**
+     * Renders a chart that is not in the cache.
+     */
+    @FunctionalInterface
+    public interface ChartRenderer {
+        RenderedChart render() throws ItemNotFoundException, IOException;
+    }
+
+    private final Map<ChartKey, CompletableFuture<RenderedChart>> charts;
+
+    public RRD4jChartCache(int capacity) {
+        charts = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.@Nullable Entry<ChartKey, CompletableFuture<RenderedChart>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the chart for the given key, rendering it if it is not cached or out of date.
+     *
+     * @param key the chart key
+     * @param renderer renders the chart if necessary
+     * @return the rendered chart
+     * @throws ItemNotFoundException if an item of the chart cannot be found
+     * @throws IOException if the chart cannot be rendered
+     */
+    public RenderedChart get(ChartKey key, ChartRenderer renderer) throws ItemNotFoundException, IOException {
+        CompletableFuture<RenderedChart> future;
+        boolean render = false;
+        synchronized (charts) {
+            future = charts.get(key);
+            if (future == null || isExpired(future)) {
+                future = new CompletableFuture<>();
+                charts.put(key, future);
+                render = true;
+            }
+        }
+
+        if (render) {
+            try {
+                future.complete(renderer.render());
+            } catch (Throwable e) {
+                // complete the future in any case, so that threads waiting for the chart do not hang
+                synchronized (charts) {
+                    charts.remove(key, future);
+                }
+                future.completeExceptionally(e);
+            }
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for chart", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ItemNotFoundException) {
+                throw (ItemNotFoundException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Removes all cached charts.
+     */
+    public void clear() {
+        synchronized (charts) {
+            charts.clear();
+        }
+    }
+
+    private boolean isExpired(CompletableFuture<RenderedChart> future) {
+        // charts that are still being rendered are never expired
+        RenderedChart chart = future.getNow(null);
+        return chart != null && chart.validUntil <= System.currentTimeMillis();
+    }
+}
@@ -15,14 +15,14 @@ package org.openhab.persistence.rrd4j.internal.charts;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
 
-import javax.imageio.ImageIO;
 import javax.servlet.Servlet;
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -36,6 +36,8 @@ import org.openhab.core.library.items.NumberItem;
 import org.openhab.core.ui.chart.ChartProvider;
 import org.openhab.core.ui.items.ItemUIRegistry;
 import org.openhab.persistence.rrd4j.internal.RRD4jPersistenceService;
+import org.openhab.persistence.rrd4j.internal.charts.RRD4jChartCache.ChartKey;
+import org.openhab.persistence.rrd4j.internal.charts.RRD4jChartCache.RenderedChart;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
@@ -43,7 +45,9 @@ import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.http.HttpService;
 import org.osgi.service.http.NamespaceException;
 import org.rrd4j.ConsolFun;
-import org.rrd4j.core.RrdDb;
+import org.rrd4j.core.ArcDef;
+import org.rrd4j.core.FetchData;
+import org.rrd4j.core.RrdDef;
 import org.rrd4j.graph.RrdGraph;
 import org.rrd4j.graph.RrdGraphDef;
 import org.slf4j.Logger;
@@ -97,12 +101,25 @@ public class RRD4jChartServlet implements Servlet, ChartProvider {
         PERIODS.put("Y", -31536000000L);
     }
 
+    private static final String DATASOURCE_STATE = "state";
+
+    /** the number of rendered charts to keep */
+    private static final int CHART_CACHE_SIZE = 50;
+
+    /** the maximum difference in seconds between the end of a chart and now, for which it is treated as ending now */
+    private static final long LIVE_CHART_TOLERANCE = 5;
+
+    private final RRD4jChartCache chartCache = new RRD4jChartCache(CHART_CACHE_SIZE);
+
     @Reference
     protected HttpService httpService;
 
     @Reference
     protected ItemUIRegistry itemUIRegistry;
 
+    @Reference
+    protected RRD4jPersistenceService persistenceService;
+
     @Activate
     protected void activate() {
         try {
@@ -118,6 +135,7 @@ public class RRD4jChartServlet implements Servlet, ChartProvider {
     @Deactivate
     protected void deactivate() {
         httpService.unregister(SERVLET_NAME);
+        chartCache.clear();
     }
 
     @Override
@@ -146,9 +164,9 @@ public class RRD4jChartServlet implements Servlet, ChartProvider {
         // Set the content type to that provided by the chart provider
         res.setContentType("image/" + getChartType());
         try {
-            BufferedImage chart = createChart(null, null, timeBegin, timeEnd, height, width, req.getParameter("items"),
-                    req.getParameter("groups"), null, null);
-            ImageIO.write(chart, getChartType().toString(), res.getOutputStream());
+            RenderedChart chart = getChart(timeBegin, timeEnd, height, width, req.getParameter("items"),
+                    req.getParameter("groups"));
+            res.getOutputStream().write(chart.getPng());
         } catch (ItemNotFoundException e) {
             logger.debug("Item not found error while generating chart.");
         } catch (IllegalArgumentException e) {
@@ -164,29 +182,20 @@ public class RRD4jChartServlet implements Servlet, ChartProvider {
      * @param graphDef the graph definition to fill
      * @param item the item to add a line for
      * @param counter defines the number of the datasource and is used to determine the line color
+     * @param data the data fetched from the database of the item
      */
-    protected void addLine(RrdGraphDef graphDef, Item item, int counter) {
+    protected void addLine(RrdGraphDef graphDef, Item item, int counter, FetchData data) {
         Color color = LINECOLORS[counter % LINECOLORS.length];
         String label = itemUIRegistry.getLabel(item.getName());
-        String rrdName = RRD4jPersistenceService.DB_FOLDER + File.separator + item.getName() + ".rrd";
-        ConsolFun consolFun;
         if (label != null && label.contains("[") && label.contains("]")) {
             label = label.substring(0, label.indexOf('['));
         }
-        try {
-            RrdDb db = new RrdDb(rrdName);
-            consolFun = db.getRrdDef().getArcDefs()[0].getConsolFun();
-            db.close();
-        } catch (IOException e) {
-            consolFun = ConsolFun.MAX;
-        }
+        graphDef.datasource(Integer.toString(counter), DATASOURCE_STATE, data);
         if (item instanceof NumberItem) {
             // we only draw a line
-            graphDef.datasource(Integer.toString(counter), rrdName, "state", consolFun); // RRD4jService.getConsolidationFunction(item));
             graphDef.line(Integer.toString(counter), color, label, 2);
         } else {
             // we draw a line and fill the area beneath it with a transparent color
-            graphDef.datasource(Integer.toString(counter), rrdName, "state", consolFun); // RRD4jService.getConsolidationFunction(item));
             Color areaColor = AREACOLORS[counter % LINECOLORS.length];
 
             graphDef.area(Integer.toString(counter), areaColor);
@@ -194,6 +203,49 @@ public class RRD4jChartServlet implements Servlet, ChartProvider {
         }
     }
 
+    /**
+     * Reads the data of an item for the chart from its database, which is shared with the persistence service.
+     *
+     * @param itemName the name of the item
+     * @param start the start of the chart in seconds
+     * @param end the end of the chart in seconds
+     * @param resolution the time span in seconds covered by one pixel
+     * @return the fetched data and the time span until it changes
+     * @throws IOException if the database cannot be read
+     */
+    private SeriesData fetchSeries(String itemName, long start, long end, long resolution) throws IOException {
+        SeriesData series = persistenceService.executeOnDB(itemName, db -> {
+            RrdDef rrdDef = db.getRrdDef();
+            ArcDef[] arcDefs = rrdDef.getArcDefs();
+            ConsolFun consolFun = arcDefs.length > 0 ? arcDefs[0].getConsolFun() : ConsolFun.MAX;
+            // the chart only changes when the archive that is used for the given resolution is updated
+            long step = rrdDef.getStep();
+            long validity = step;
+            for (ArcDef arcDef : arcDefs) {
+                long arcStep = step * arcDef.getSteps();
+                if (arcStep <= resolution && arcStep > validity) {
+                    validity = arcStep;
+                }
+            }
+            FetchData data = db.createFetchRequest(consolFun, start, end, resolution).fetchData();
+            return new SeriesData(data, validity);
+        });
+        if (series == null) {
+            throw new IOException("There is no rrd4j database for item '" + itemName + "'");
+        }
+        return series;
+    }
+
+    private static class SeriesData {
+        private final FetchData data;
+        private final long validity;
+
+        private SeriesData(FetchData data, long validity) {
+            this.data = data;
+            this.validity = validity;
+        }
+    }
+
     @Override
     public void init(ServletConfig config) throws ServletException {
     }
@@ -223,27 +275,46 @@ public class RRD4jChartServlet implements Servlet, ChartProvider {
     @Override
     public BufferedImage createChart(String service, String theme, Date startTime, Date endTime, int height, int width,
             String items, String groups, Integer dpi, Boolean legend) throws ItemNotFoundException {
-        RrdGraphDef graphDef = new RrdGraphDef();
+        try {
+            return getChart(startTime, endTime, height, width, items, groups).getImage();
+        } catch (IOException e) {
+            logger.error("Error generating graph.", e);
+        }
 
-        long period = (startTime.getTime() - endTime.getTime()) / 1000;
+        return null;
+    }
+
+    private RenderedChart getChart(Date startTime, Date endTime, int height, int width, String items, String groups)
+            throws ItemNotFoundException, IOException {
+        long start = startTime.getTime() / 1000;
+        long end = endTime.getTime() / 1000;
+        // charts ending now are identified by their period only, so that they can be shared between requests
+        boolean live = Math.abs(System.currentTimeMillis() / 1000 - end) <= LIVE_CHART_TOLERANCE;
+        ChartKey key = new ChartKey(items, groups, end - start, live ? -1 : end, width, height);
+        return chartCache.get(key, () -> renderChart(start, end, height, width, items, groups));
+    }
+
+    private RenderedChart renderChart(long start, long end, int height, int width, String items, String groups)
+            throws ItemNotFoundException, IOException {
+        RrdGraphDef graphDef = new RrdGraphDef();
 
         graphDef.setWidth(width);
         graphDef.setHeight(height);
         graphDef.setAntiAliasing(true);
         graphDef.setImageFormat("PNG");
-        graphDef.setStartTime(period);
+        graphDef.setStartTime(start);
+        graphDef.setEndTime(end);
         graphDef.setTextAntiAliasing(true);
         graphDef.setLargeFont(new Font("SansSerif", Font.PLAIN, 15));
         graphDef.setSmallFont(new Font("SansSerif", Font.PLAIN, 11));
 
-        int seriesCounter = 0;
+        List<Item> chartItems = new ArrayList<>();
 
         // Loop through all the items
         if (items != null) {
             String[] itemNames = items.split(",");
             for (String itemName : itemNames) {
-                Item item = itemUIRegistry.getItem(itemName);
-                addLine(graphDef, item, seriesCounter++);
+                chartItems.add(itemUIRegistry.getItem(itemName));
             }
         }
 
@@ -254,29 +325,40 @@ public class RRD4jChartServlet implements Servlet, ChartProvider {
                 Item item = itemUIRegistry.getItem(groupName);
                 if (item instanceof GroupItem) {
                     GroupItem groupItem = (GroupItem) item;
-                    for (Item member : groupItem.getMembers()) {
-                        addLine(graphDef, member, seriesCounter++);
-                    }
+                    chartItems.addAll(groupItem.getMembers());
                 } else {
                     throw new ItemNotFoundException("Item '" + item.getName() + "' defined in groups is not a group.");
                 }
             }
         }
 
-        // Write the chart as a PNG image
-        RrdGraph graph;
-        try {
-            graph = new RrdGraph(graphDef);
-            BufferedImage bi = new BufferedImage(graph.getRrdGraphInfo().getWidth(),
-                    graph.getRrdGraphInfo().getHeight(), BufferedImage.TYPE_INT_RGB);
-            graph.render(bi.getGraphics());
-
-            return bi;
-        } catch (IOException e) {
-            logger.error("Error generating graph.", e);
+        // read each database only once, even if an item is part of several series
+        long resolution = Math.max(1, (end - start) / Math.max(1, width));
+        long validity = Long.MAX_VALUE;
+        Map<String, SeriesData> series = new HashMap<>();
+        int seriesCounter = 0;
+        for (Item item : chartItems) {
+            SeriesData data = series.get(item.getName());
+            if (data == null) {
+                data = fetchSeries(item.getName(), start, end, resolution);
+                series.put(item.getName(), data);
+                validity = Math.min(validity, data.validity);
+            }
+            addLine(graphDef, item, seriesCounter++, data.data);
+        }
+        if (validity == Long.MAX_VALUE) {
+            validity = 0;
         }
 
-        return null;
+        // Write the chart as a PNG image
+        RrdGraph graph = new RrdGraph(graphDef);
+        BufferedImage bi = new BufferedImage(graph.getRrdGraphInfo().getWidth(), graph.getRrdGraphInfo().getHeight(),
+                BufferedImage.TYPE_INT_RGB);
+        graph.render(bi.getGraphics());
+
+        // the chart stays valid until the next step of its databases begins
+        long validUntil = (System.currentTimeMillis() / 1000 / Math.max(1, validity) + 1) * validity * 1000;
+        return new RenderedChart(bi, validUntil);
     }
 
     @Override
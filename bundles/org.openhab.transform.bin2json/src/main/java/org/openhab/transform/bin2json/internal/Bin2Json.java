@@ -14,6 +14,7 @@ package org.openhab.transform.bin2json.internal;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.time.LocalDateTime;
 
@@ -21,9 +22,6 @@ import org.openhab.core.util.HexUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonPrimitive;
 import com.igormaznitsa.jbbp.JBBPParser;
 import com.igormaznitsa.jbbp.exceptions.JBBPException;
 import com.igormaznitsa.jbbp.model.JBBPAbstractArrayField;
@@ -50,7 +48,8 @@ import com.igormaznitsa.jbbp.model.JBBPFieldUShort;
 /**
  * This class converts binary data to JSON format.
  *
- * Parser rules follows Java Binary Block Parser syntax.
+ * Parser rules follows Java Binary Block Parser syntax. The rule is compiled once, so that an instance can be reused
+ * for any number of conversions, also concurrently. The JSON text is written directly from the parsed fields.
  *
  * <p>
  *
@@ -62,18 +61,21 @@ import com.igormaznitsa.jbbp.model.JBBPFieldUShort;
  *
  * <pre>
  * {@code
- * JsonObject json = new Bin2Json("byte a; byte b; ubyte c;").convert("03FAFF");
- * json.toString() = {"a":3,"b":-6,"c":255}
+ * String json = new Bin2Json("byte a; byte b; ubyte c;").convert("03FAFF");
+ * json = {"a":3,"b":-6,"c":255}
  * </pre>
  *
  * @author Pauli Anttila - Initial contribution
+ * @author Karel Goderis - Direct JSON emission
  *
  */
 public class Bin2Json {
 
+    private static final String NONAMED = "nonamed";
+
     private final Logger logger = LoggerFactory.getLogger(Bin2Json.class);
 
-    private JBBPParser parser;
+    private final JBBPParser parser;
 
     /**
      *
@@ -89,13 +91,13 @@ public class Bin2Json {
     }
 
     /**
-     * Convert {@link String} in hexadecimal string format to JSON object.
+     * Convert {@link String} in hexadecimal string format to JSON.
      *
      * @param hexString Data in hexadecimal string format. Example data: 03FAFF
-     * @return Gson {@link JsonObject}
+     * @return JSON text
      * @throws ConversionException
      */
-    public JsonObject convert(String hexString) throws ConversionException {
+    public String convert(String hexString) throws ConversionException {
         try {
             return convert(HexUtils.hexToBytes(hexString));
         } catch (IllegalArgumentException e) {
@@ -104,13 +106,13 @@ public class Bin2Json {
     }
 
     /**
-     * Convert byte array to JSON object.
+     * Convert byte array to JSON.
      *
      * @param data Data in byte array format.
-     * @return Gson {@link JsonObject}
+     * @return JSON text
      * @throws ConversionException
      */
-    public JsonObject convert(byte[] data) throws ConversionException {
+    public String convert(byte[] data) throws ConversionException {
         try {
             return convert(parser.parse(data));
         } catch (IOException e) {
@@ -121,13 +123,29 @@ public class Bin2Json {
     }
 
     /**
-     * Convert data from {@link InputStream} to JSON object.
+     * Convert the remaining bytes of a {@link ByteBuffer} to JSON. The position of the buffer is not changed.
+     *
+     * @param data Data in byte buffer format.
+     * @return JSON text
+     * @throws ConversionException
+     */
+    public String convert(ByteBuffer data) throws ConversionException {
+        if (data.hasArray() && data.arrayOffset() == 0 && data.position() == 0 && data.limit() == data.array().length) {
+            return convert(data.array());
+        }
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+        return convert(bytes);
+    }
+
+    /**
+     * Convert data from {@link InputStream} to JSON.
      *
      * @param inputStream
-     * @return Gson {@link JsonObject}
+     * @return JSON text
      * @throws ConversionException
      */
-    public JsonObject convert(InputStream inputStream) throws ConversionException {
+    public String convert(InputStream inputStream) throws ConversionException {
         try {
             return convert(parser.parse(inputStream));
         } catch (IOException e) {
@@ -137,103 +155,160 @@ public class Bin2Json {
         }
     }
 
-    private JsonObject convert(JBBPFieldStruct data) throws ConversionException {
+    private String convert(JBBPFieldStruct data) throws ConversionException {
         try {
             LocalDateTime start = LocalDateTime.now();
-            final JsonObject json = convertToJSon(data);
+            final StringBuilder json = new StringBuilder(256);
+            appendFields(json, data);
             if (logger.isTraceEnabled()) {
                 Duration duration = Duration.between(start, LocalDateTime.now());
-                logger.trace("Conversion time={}, json={}", duration, json.toString());
+                logger.trace("Conversion time={}, json={}", duration, json);
             }
-            return json;
+            return json.toString();
         } catch (JBBPException e) {
             throw new ConversionException(String.format("Unexpected error, reason: %s", e.getMessage(), e));
         }
     }
 
-    private JsonObject convertToJSon(final JBBPAbstractField field) throws ConversionException {
-        return convertToJSon(null, field);
+    /**
+     * Appends the fields of a structure as a JSON object. Fields without a name are all named 'nonamed', and like
+     * in a map the last field named 'nonamed' takes the place of the first.
+     */
+    private void appendFields(final StringBuilder json, final JBBPFieldStruct struct) throws ConversionException {
+        final JBBPAbstractField[] fields = struct.getArray();
+        JBBPAbstractField lastNonamed = null;
+        for (final JBBPAbstractField field : fields) {
+            if (NONAMED.equals(getName(field))) {
+                lastNonamed = field;
+            }
+        }
+
+        json.append('{');
+        boolean first = true;
+        boolean nonamedAppended = false;
+        for (final JBBPAbstractField field : fields) {
+            final String fieldName = getName(field);
+            final JBBPAbstractField value;
+            if (NONAMED.equals(fieldName)) {
+                if (nonamedAppended) {
+                    continue;
+                }
+                nonamedAppended = true;
+                value = lastNonamed;
+            } else {
+                value = field;
+            }
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendString(json, fieldName);
+            json.append(':');
+            appendValue(json, value);
+        }
+        json.append('}');
     }
 
-    private JsonObject convertToJSon(final JsonObject json, final JBBPAbstractField field) throws ConversionException {
-        JsonObject jsn = json == null ? new JsonObject() : json;
+    private static String getName(final JBBPAbstractField field) {
+        return field.getFieldName() == null ? NONAMED : field.getFieldName();
+    }
 
-        final String fieldName = field.getFieldName() == null ? "nonamed" : field.getFieldName();
+    private void appendValue(final StringBuilder json, final JBBPAbstractField field) throws ConversionException {
         if (field instanceof JBBPAbstractArrayField) {
-            final JsonArray jsonArray = new JsonArray();
+            json.append('[');
             if (field instanceof JBBPFieldArrayBit) {
-                for (final byte b : ((JBBPFieldArrayBit) field).getArray()) {
-                    jsonArray.add(new JsonPrimitive(b));
+                final byte[] array = ((JBBPFieldArrayBit) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(json, i).append(array[i]);
                 }
             } else if (field instanceof JBBPFieldArrayBoolean) {
-                for (final boolean b : ((JBBPFieldArrayBoolean) field).getArray()) {
-                    jsonArray.add(new JsonPrimitive(b));
+                final boolean[] array = ((JBBPFieldArrayBoolean) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(json, i).append(array[i]);
                 }
             } else if (field instanceof JBBPFieldArrayByte) {
-                for (final byte b : ((JBBPFieldArrayByte) field).getArray()) {
-                    jsonArray.add(new JsonPrimitive(b));
+                final byte[] array = ((JBBPFieldArrayByte) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(json, i).append(array[i]);
                 }
             } else if (field instanceof JBBPFieldArrayInt) {
-                for (final int b : ((JBBPFieldArrayInt) field).getArray()) {
-                    jsonArray.add(new JsonPrimitive(b));
+                final int[] array = ((JBBPFieldArrayInt) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(json, i).append(array[i]);
                 }
             } else if (field instanceof JBBPFieldArrayLong) {
-                for (final long b : ((JBBPFieldArrayLong) field).getArray()) {
-                    jsonArray.add(new JsonPrimitive(b));
+                final long[] array = ((JBBPFieldArrayLong) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(json, i).append(array[i]);
                 }
             } else if (field instanceof JBBPFieldArrayShort) {
-                for (final short b : ((JBBPFieldArrayShort) field).getArray()) {
-                    jsonArray.add(new JsonPrimitive(b));
+                final short[] array = ((JBBPFieldArrayShort) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(json, i).append(array[i]);
                 }
             } else if (field instanceof JBBPFieldArrayStruct) {
                 final JBBPFieldArrayStruct array = (JBBPFieldArrayStruct) field;
                 for (int i = 0; i < array.size(); i++) {
-                    jsonArray.add(convertToJSon(new JsonObject(), array.getElementAt(i)));
+                    // every element is an object that holds the structure by its name
+                    final JBBPFieldStruct element = array.getElementAt(i);
+                    appendSeparator(json, i).append('{');
+                    appendString(json, getName(element));
+                    json.append(':');
+                    appendFields(json, element);
+                    json.append('}');
                 }
             } else if (field instanceof JBBPFieldArrayUByte) {
-                for (final byte b : ((JBBPFieldArrayUByte) field).getArray()) {
-                    jsonArray.add(new JsonPrimitive(b & 0xFF));
+                final byte[] array = ((JBBPFieldArrayUByte) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(json, i).append(array[i] & 0xFF);
                 }
             } else if (field instanceof JBBPFieldArrayUShort) {
-                for (final short b : ((JBBPFieldArrayUShort) field).getArray()) {
-                    jsonArray.add(new JsonPrimitive(b & 0xFFFF));
+                final short[] array = ((JBBPFieldArrayUShort) field).getArray();
+                for (int i = 0; i < array.length; i++) {
+                    appendSeparator(json, i).append(array[i] & 0xFFFF);
                 }
             } else {
                 throw new ConversionException(String.format("Unexpected field type '%s'", field));
             }
-            jsn.add(fieldName, jsonArray);
+            json.append(']');
         } else {
             if (field instanceof JBBPFieldBit) {
-                jsn.addProperty(fieldName, ((JBBPFieldBit) field).getAsInt());
+                json.append(((JBBPFieldBit) field).getAsInt());
             } else if (field instanceof JBBPFieldBoolean) {
-                jsn.addProperty(fieldName, ((JBBPFieldBoolean) field).getAsBool());
+                json.append(((JBBPFieldBoolean) field).getAsBool());
             } else if (field instanceof JBBPFieldByte) {
-                jsn.addProperty(fieldName, ((JBBPFieldByte) field).getAsInt());
+                json.append(((JBBPFieldByte) field).getAsInt());
             } else if (field instanceof JBBPFieldInt) {
-                jsn.addProperty(fieldName, ((JBBPFieldInt) field).getAsInt());
+                json.append(((JBBPFieldInt) field).getAsInt());
             } else if (field instanceof JBBPFieldLong) {
-                jsn.addProperty(fieldName, ((JBBPFieldLong) field).getAsLong());
+                json.append(((JBBPFieldLong) field).getAsLong());
             } else if (field instanceof JBBPFieldShort) {
-                jsn.addProperty(fieldName, ((JBBPFieldShort) field).getAsInt());
+                json.append(((JBBPFieldShort) field).getAsInt());
             } else if (field instanceof JBBPFieldStruct) {
-                final JBBPFieldStruct struct = (JBBPFieldStruct) field;
-                final JsonObject obj = new JsonObject();
-                for (final JBBPAbstractField f : struct.getArray()) {
-                    convertToJSon(obj, f);
-                }
-                if (json == null) {
-                    return obj;
-                } else {
-                    jsn.add(fieldName, obj);
-                }
+                appendFields(json, (JBBPFieldStruct) field);
             } else if (field instanceof JBBPFieldUByte) {
-                jsn.addProperty(fieldName, ((JBBPFieldUByte) field).getAsInt());
+                json.append(((JBBPFieldUByte) field).getAsInt());
             } else if (field instanceof JBBPFieldUShort) {
-                jsn.addProperty(fieldName, ((JBBPFieldUShort) field).getAsInt());
+                json.append(((JBBPFieldUShort) field).getAsInt());
             } else {
                 throw new ConversionException(String.format("Unexpected field '%s'", field));
             }
         }
-        return jsn;
+    }
+
+    private static StringBuilder appendSeparator(final StringBuilder json, final int index) {
+        return index == 0 ? json : json.append(',');
+    }
+
+    private static void appendString(final StringBuilder json, final String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\');
+            }
+            json.append(c);
+        }
+        json.append('"');
     }
 }
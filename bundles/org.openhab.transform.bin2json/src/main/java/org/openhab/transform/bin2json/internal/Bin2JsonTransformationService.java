@@ -12,6 +12,10 @@
  */
 package org.openhab.transform.bin2json.internal;
 
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
 import org.openhab.core.transform.TransformationException;
@@ -25,13 +29,28 @@ import org.slf4j.LoggerFactory;
  * hexa string formatted binary data by Binary Block Parser syntax to JSON format.
  *
  * @author Pauli Anttila - Initial contribution
+ * @author Karel Goderis - Cache compiled parsers
  */
 @NonNullByDefault
 @Component(property = { "smarthome.transform=BIN2JSON" })
 public class Bin2JsonTransformationService implements TransformationService {
 
+    private static final int MAX_CACHED_PARSERS = 64;
+
     private Logger logger = LoggerFactory.getLogger(Bin2JsonTransformationService.class);
 
+    /**
+     * The compiled parsers by their syntax, least recently used first
+     */
+    private final Map<String, Bin2Json> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Bin2Json> eldest) {
+            return size() > MAX_CACHED_PARSERS;
+        }
+    };
+
     /**
      * Transforms the input <code>source</code> by Java Binary Block Parser syntax.
      *
@@ -46,7 +65,7 @@ public class Bin2JsonTransformationService implements TransformationService {
         String result = "";
 
         try {
-            result = String.valueOf(new Bin2Json(syntax).convert(source));
+            result = getBin2Json(syntax).convert(source);
             logger.debug("transformation resulted '{}'", result);
             return result;
         } catch (ConversionException e) {
@@ -56,4 +75,43 @@ public class Bin2JsonTransformationService implements TransformationService {
                     result);
         }
     }
+
+    /**
+     * Transforms binary data by Java Binary Block Parser syntax, without encoding it as a hexadecimal string first.
+     *
+     * @param syntax Java Binary Block Parser syntax.
+     * @param source the binary data to transform
+     */
+    public String transform(String syntax, byte[] source) throws TransformationException {
+        try {
+            return getBin2Json(syntax).convert(source);
+        } catch (ConversionException e) {
+            throw new TransformationException("An error occurred while executing the converter. " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Transforms the remaining bytes of a buffer by Java Binary Block Parser syntax.
+     *
+     * @param syntax Java Binary Block Parser syntax.
+     * @param source the binary data to transform
+     */
+    public String transform(String syntax, ByteBuffer source) throws TransformationException {
+        try {
+            return getBin2Json(syntax).convert(source);
+        } catch (ConversionException e) {
+            throw new TransformationException("An error occurred while executing the converter. " + e.getMessage(), e);
+        }
+    }
+
+    private Bin2Json getBin2Json(String syntax) throws ConversionException {
+        synchronized (cache) {
+            Bin2Json bin2Json = cache.get(syntax);
+            if (bin2Json == null) {
+                bin2Json = new Bin2Json(syntax);
+                cache.put(syntax, bin2Json);
+            }
+            return bin2Json;
+        }
+    }
 }
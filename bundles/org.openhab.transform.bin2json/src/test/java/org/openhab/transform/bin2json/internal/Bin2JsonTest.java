@@ -0,0 +1,210 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.bin2json.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Test;
+import org.openhab.core.util.HexUtils;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.igormaznitsa.jbbp.JBBPParser;
+import com.igormaznitsa.jbbp.model.JBBPAbstractArrayField;
+import com.igormaznitsa.jbbp.model.JBBPAbstractField;
+import com.igormaznitsa.jbbp.model.JBBPFieldArrayBit;
+import com.igormaznitsa.jbbp.model.JBBPFieldArrayBoolean;
+import com.igormaznitsa.jbbp.model.JBBPFieldArrayByte;
+import com.igormaznitsa.jbbp.model.JBBPFieldArrayInt;
+import com.igormaznitsa.jbbp.model.JBBPFieldArrayLong;
+import com.igormaznitsa.jbbp.model.JBBPFieldArrayShort;
+import com.igormaznitsa.jbbp.model.JBBPFieldArrayStruct;
+import com.igormaznitsa.jbbp.model.JBBPFieldArrayUByte;
+import com.igormaznitsa.jbbp.model.JBBPFieldArrayUShort;
+import com.igormaznitsa.jbbp.model.JBBPFieldBit;
+import com.igormaznitsa.jbbp.model.JBBPFieldBoolean;
+import com.igormaznitsa.jbbp.model.JBBPFieldByte;
+import com.igormaznitsa.jbbp.model.JBBPFieldInt;
+import com.igormaznitsa.jbbp.model.JBBPFieldLong;
+import com.igormaznitsa.jbbp.model.JBBPFieldShort;
+import com.igormaznitsa.jbbp.model.JBBPFieldStruct;
+import com.igormaznitsa.jbbp.model.JBBPFieldUByte;
+import com.igormaznitsa.jbbp.model.JBBPFieldUShort;
+
+/**
+ * Compares the JSON of {@link Bin2Json} with the JSON of the former implementation, which built it with Gson.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+public class Bin2JsonTest {
+
+    // 64 bytes with both signs, so that every rule below has enough data
+    private static final byte[] DATA = new byte[64];
+
+    static {
+        for (int i = 0; i < DATA.length; i++) {
+            DATA[i] = (byte) (0x85 + i * 37);
+        }
+    }
+
+    @Test
+    public void testExample() throws Exception {
+        assertEquals("{\"a\":3,\"b\":-6,\"c\":255}", new Bin2Json("byte a; byte b; ubyte c;").convert("03FAFF"));
+    }
+
+    @Test
+    public void testScalars() throws Exception {
+        assertSameAsGson("bit:4 a; bit:4 b; bool c; byte d; ubyte e; short f; ushort g; int h; long i;");
+    }
+
+    @Test
+    public void testArrays() throws Exception {
+        assertSameAsGson("bit:3 [4] a; bool [2] b; byte [2] c; ubyte [2] d; short [2] e; ushort [2] f; int [2] g; "
+                + "long [2] h;");
+        assertSameAsGson("byte a; ubyte [_] rest;");
+    }
+
+    @Test
+    public void testNestedStructs() throws Exception {
+        assertSameAsGson("byte a; s { byte b; t { ushort c; bool [2] d; } int e; } long f;");
+    }
+
+    @Test
+    public void testUnnamedFields() throws Exception {
+        assertSameAsGson("byte; byte a; ubyte; short b; short;");
+        assertSameAsGson("byte [2]; byte a; int;");
+        assertSameAsGson("byte a; s { byte; byte b; ushort; } byte;");
+        // a field named 'nonamed' is replaced by the fields without a name
+        assertSameAsGson("byte nonamed; byte a; byte;");
+        assertSameAsGson("byte; byte a; byte nonamed;");
+    }
+
+    @Test
+    public void testStructArrays() throws Exception {
+        assertSameAsGson("byte a; sa [2] { byte b; ubyte [2] c; } byte d;");
+        assertSameAsGson("s { sa [3] { bit:4 a; bit:4; } } sb [1] { t { short b; } }");
+    }
+
+    @Test
+    public void testInputFormats() throws Exception {
+        Bin2Json bin2Json = new Bin2Json("byte a; ubyte [2] b; s { short c; }");
+        String expected = bin2Json.convert(DATA);
+
+        assertEquals(expected, bin2Json.convert(HexUtils.bytesToHex(DATA)));
+        assertEquals(expected, bin2Json.convert(new ByteArrayInputStream(DATA)));
+        assertEquals(expected, bin2Json.convert(ByteBuffer.wrap(DATA)));
+
+        byte[] shifted = new byte[DATA.length + 2];
+        System.arraycopy(DATA, 0, shifted, 1, DATA.length);
+        ByteBuffer buffer = ByteBuffer.wrap(shifted, 1, DATA.length);
+        assertEquals(expected, bin2Json.convert(buffer));
+        assertEquals(1, buffer.position());
+    }
+
+    @Test
+    public void testIllegalRule() {
+        assertThrows(ConversionException.class, () -> new Bin2Json("byte a"));
+    }
+
+    private static void assertSameAsGson(String rule) throws Exception {
+        JsonObject gson = convertToJson(null, JBBPParser.prepare(rule).parse(DATA));
+        assertEquals(gson.toString(), new Bin2Json(rule).convert(DATA), rule);
+    }
+
+    /**
+     * The conversion of the former implementation.
+     */
+    private static JsonObject convertToJson(final JsonObject json, final JBBPAbstractField field) {
+        JsonObject jsn = json == null ? new JsonObject() : json;
+
+        final String fieldName = field.getFieldName() == null ? "nonamed" : field.getFieldName();
+        if (field instanceof JBBPAbstractArrayField) {
+            final JsonArray jsonArray = new JsonArray();
+            if (field instanceof JBBPFieldArrayBit) {
+                for (final byte b : ((JBBPFieldArrayBit) field).getArray()) {
+                    jsonArray.add(new JsonPrimitive(b));
+                }
+            } else if (field instanceof JBBPFieldArrayBoolean) {
+                for (final boolean b : ((JBBPFieldArrayBoolean) field).getArray()) {
+                    jsonArray.add(new JsonPrimitive(b));
+                }
+            } else if (field instanceof JBBPFieldArrayByte) {
+                for (final byte b : ((JBBPFieldArrayByte) field).getArray()) {
+                    jsonArray.add(new JsonPrimitive(b));
+                }
+            } else if (field instanceof JBBPFieldArrayInt) {
+                for (final int b : ((JBBPFieldArrayInt) field).getArray()) {
+                    jsonArray.add(new JsonPrimitive(b));
+                }
+            } else if (field instanceof JBBPFieldArrayLong) {
+                for (final long b : ((JBBPFieldArrayLong) field).getArray()) {
+                    jsonArray.add(new JsonPrimitive(b));
+                }
+            } else if (field instanceof JBBPFieldArrayShort) {
+                for (final short b : ((JBBPFieldArrayShort) field).getArray()) {
+                    jsonArray.add(new JsonPrimitive(b));
+                }
+            } else if (field instanceof JBBPFieldArrayStruct) {
+                final JBBPFieldArrayStruct array = (JBBPFieldArrayStruct) field;
+                for (int i = 0; i < array.size(); i++) {
+                    jsonArray.add(convertToJson(new JsonObject(), array.getElementAt(i)));
+                }
+            } else if (field instanceof JBBPFieldArrayUByte) {
+                for (final byte b : ((JBBPFieldArrayUByte) field).getArray()) {
+                    jsonArray.add(new JsonPrimitive(b & 0xFF));
+                }
+            } else if (field instanceof JBBPFieldArrayUShort) {
+                for (final short b : ((JBBPFieldArrayUShort) field).getArray()) {
+                    jsonArray.add(new JsonPrimitive(b & 0xFFFF));
+                }
+            } else {
+                fail("Unexpected field type " + field);
+            }
+            jsn.add(fieldName, jsonArray);
+        } else {
+            if (field instanceof JBBPFieldBit) {
+                jsn.addProperty(fieldName, ((JBBPFieldBit) field).getAsInt());
+            } else if (field instanceof JBBPFieldBoolean) {
+                jsn.addProperty(fieldName, ((JBBPFieldBoolean) field).getAsBool());
+            } else if (field instanceof JBBPFieldByte) {
+                jsn.addProperty(fieldName, ((JBBPFieldByte) field).getAsInt());
+            } else if (field instanceof JBBPFieldInt) {
+                jsn.addProperty(fieldName, ((JBBPFieldInt) field).getAsInt());
+            } else if (field instanceof JBBPFieldLong) {
+                jsn.addProperty(fieldName, ((JBBPFieldLong) field).getAsLong());
+            } else if (field instanceof JBBPFieldShort) {
+                jsn.addProperty(fieldName, ((JBBPFieldShort) field).getAsInt());
+            } else if (field instanceof JBBPFieldStruct) {
+                final JsonObject obj = new JsonObject();
+                for (final JBBPAbstractField f : ((JBBPFieldStruct) field).getArray()) {
+                    convertToJson(obj, f);
+                }
+                if (json == null) {
+                    return obj;
+                }
+                jsn.add(fieldName, obj);
+            } else if (field instanceof JBBPFieldUByte) {
+                jsn.addProperty(fieldName, ((JBBPFieldUByte) field).getAsInt());
+            } else if (field instanceof JBBPFieldUShort) {
+                jsn.addProperty(fieldName, ((JBBPFieldUShort) field).getAsInt());
+            } else {
+                fail("Unexpected field " + field);
+            }
+        }
+        return jsn;
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.exec.internal;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.core.transform.TransformationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A command that keeps running and transforms one value after the other. Each value is written as a line to the
+ * standard input of the process, and the process answers with one line on its standard output. Line breaks and
+ * backslashes in values and results are escaped as <code>\n</code>, <code>\r</code> and <code>\\</code>.
+ *
+ * A co-process handles one call at a time.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+@NonNullByDefault
+public class ExecCoProcess {
+
+    private final Logger logger = LoggerFactory.getLogger(ExecCoProcess.class);
+
+    private final String commandLine;
+    private final Process process;
+    private final Writer input;
+    /** The lines of the output, or an empty value once the output has ended */
+    private final BlockingQueue<Optional<String>> output = new LinkedBlockingQueue<>();
+    private volatile boolean broken;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * Starts the co-process.
+     *
+     * @param commandLine the command to start, with its arguments separated by spaces
+     * @throws IOException if the process could not be started
+     */
+    public ExecCoProcess(String commandLine) throws IOException {
+        this.commandLine = commandLine;
+        this.process = new ProcessBuilder(commandLine.split(" ")).redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        this.input = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+
+        Thread reader = new Thread(this::readOutput, "OH-transform-exec-" + process.pid());
+        reader.setDaemon(true);
+        reader.start();
+        logger.debug("Started co-process {} for '{}'", process.pid(), commandLine);
+    }
+
+    private void readOutput() {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.add(Optional.of(line));
+            }
+        } catch (IOException e) {
+            logger.debug("Error reading the output of co-process '{}': {}", commandLine, e.getMessage());
+        } finally {
+            broken = true;
+            output.add(Optional.empty());
+        }
+    }
+
+    /**
+     * Transforms a value.
+     *
+     * @param value the value to transform
+     * @param timeout the time to wait for the result
+     * @return the result
+     * @throws TransformationException if the process did not respond in time or has terminated. The process can not be
+     *             used anymore in that case.
+     */
+    public String call(String value, Duration timeout) throws TransformationException {
+        try {
+            // drop anything that was written outside of the protocol
+            output.removeIf(Optional::isPresent);
+            input.write(escape(value));
+            input.write('\n');
+            input.flush();
+
+            Optional<String> line = output.poll(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            if (line == null) {
+                close();
+                throw new TransformationException(
+                        "Co-process '" + commandLine + "' did not respond within " + timeout.toMillis() + " ms");
+            }
+            if (line.isEmpty()) {
+                close();
+                throw new TransformationException("Co-process '" + commandLine + "' has terminated");
+            }
+            return unescape(line.get());
+        } catch (IOException e) {
+            close();
+            throw new TransformationException("Cannot write to co-process '" + commandLine + "'", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new TransformationException("Interrupted while waiting for co-process '" + commandLine + "'", e);
+        }
+    }
+
+    public boolean isAlive() {
+        return !broken && process.isAlive();
+    }
+
+    /**
+     * Stops the process. Does nothing if it has been stopped already.
+     */
+    public void close() {
+        broken = true;
+        if (closed.getAndSet(true)) {
+            return;
+        }
+        try {
+            input.close();
+        } catch (IOException e) {
+            // the process is destroyed anyway
+        }
+        process.destroy();
+        logger.debug("Stopped co-process {} for '{}'", process.pid(), commandLine);
+    }
+
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    static String unescape(String line) {
+        if (line.indexOf('\\') < 0) {
+            return line;
+        }
+        StringBuilder result = new StringBuilder(line.length());
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '\\' && i + 1 < line.length()) {
+                char next = line.charAt(++i);
+                switch (next) {
+                    case 'n':
+                        result.append('\n');
+                        break;
+                    case 'r':
+                        result.append('\r');
+                        break;
+                    default:
+                        result.append(next);
+                        break;
+                }
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
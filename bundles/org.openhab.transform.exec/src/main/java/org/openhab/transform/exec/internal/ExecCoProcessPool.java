@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.exec.internal;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.openhab.core.transform.TransformationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The running {@link ExecCoProcess}es of a command. Processes are started on demand up to the maximum size of the
+ * pool, and replaced when they have failed.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+@NonNullByDefault
+public class ExecCoProcessPool {
+
+    private final Logger logger = LoggerFactory.getLogger(ExecCoProcessPool.class);
+
+    private final String commandLine;
+    private final int maxSize;
+    private final BlockingQueue<ExecCoProcess> idle = new LinkedBlockingQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile boolean closed;
+
+    public ExecCoProcessPool(String commandLine, int maxSize) {
+        this.commandLine = commandLine;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Transforms a value by one of the processes of the pool.
+     *
+     * The time to wait for a process and the time the process may take are separate, so that a process is not
+     * stopped because the call had to wait for it.
+     *
+     * @param value the value to transform
+     * @param waitTimeout the time to wait for a process to become available
+     * @param callTimeout the time to wait for the result of the process
+     * @return the result
+     * @throws TransformationException if no process was available in time, or the process failed
+     */
+    public String call(String value, Duration waitTimeout, Duration callTimeout) throws TransformationException {
+        ExecCoProcess process = borrow(System.nanoTime() + waitTimeout.toNanos());
+        try {
+            return process.call(value, callTimeout);
+        } finally {
+            release(process);
+        }
+    }
+
+    private ExecCoProcess borrow(long deadline) throws TransformationException {
+        try {
+            for (;;) {
+                if (closed) {
+                    throw new TransformationException("Co-processes for '" + commandLine + "' have been stopped");
+                }
+                ExecCoProcess process = idle.poll();
+                if (process != null) {
+                    if (process.isAlive()) {
+                        return process;
+                    }
+                    logger.debug("Co-process for '{}' has terminated, restarting it", commandLine);
+                    discard(process);
+                    continue;
+                }
+                if (size.incrementAndGet() <= maxSize) {
+                    try {
+                        return new ExecCoProcess(commandLine);
+                    } catch (IOException e) {
+                        size.decrementAndGet();
+                        throw new TransformationException("Cannot start co-process '" + commandLine + "'", e);
+                    }
+                }
+                size.decrementAndGet();
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TransformationException("No co-process for '" + commandLine + "' became available");
+                }
+                process = idle.poll(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(50)), TimeUnit.NANOSECONDS);
+                if (process != null) {
+                    if (process.isAlive()) {
+                        return process;
+                    }
+                    discard(process);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransformationException("Interrupted while waiting for co-process '" + commandLine + "'", e);
+        }
+    }
+
+    private void release(ExecCoProcess process) {
+        if (!closed && process.isAlive()) {
+            idle.offer(process);
+        } else {
+            discard(process);
+        }
+    }
+
+    private void discard(ExecCoProcess process) {
+        process.close();
+        size.decrementAndGet();
+    }
+
+    /**
+     * Stops all processes of the pool. Processes that are in use are stopped when they are released.
+     */
+    public void close() {
+        closed = true;
+        ExecCoProcess process;
+        while ((process = idle.poll()) != null) {
+            discard(process);
+        }
+    }
+}
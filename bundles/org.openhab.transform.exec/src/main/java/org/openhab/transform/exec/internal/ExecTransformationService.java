@@ -13,6 +13,8 @@
 package org.openhab.transform.exec.internal;
 
 import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -21,6 +23,7 @@ import org.openhab.core.transform.TransformationException;
 import org.openhab.core.transform.TransformationService;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Deactivate;
 import org.osgi.service.component.annotations.Reference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,24 +34,57 @@ import org.slf4j.LoggerFactory;
  *
  * @author Pauli Anttila - Initial contribution
  * @author Jan N. Klug - added command whitelist service
+ * @author Karel Goderis - co-process mode
  */
 @NonNullByDefault
 @Component(property = { "smarthome.transform=EXEC" })
 public class ExecTransformationService implements TransformationService {
+    /** Prefix of the command lines that are run as co-processes */
+    static final String CO_PROCESS_PREFIX = "coprocess:";
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+    private static final int MAX_CO_PROCESSES = 4;
+
     private final Logger logger = LoggerFactory.getLogger(ExecTransformationService.class);
     private final ExecTransformationWhitelistWatchService execTransformationWhitelistWatchService;
+    private final Map<String, ExecCoProcessPool> coProcessPools = new ConcurrentHashMap<>();
+    private final Runnable whitelistListener = this::pruneCoProcessPools;
 
     @Activate
     public ExecTransformationService(
             @Reference ExecTransformationWhitelistWatchService execTransformationWhitelistWatchService) {
         this.execTransformationWhitelistWatchService = execTransformationWhitelistWatchService;
+        execTransformationWhitelistWatchService.addWhitelistListener(whitelistListener);
+    }
+
+    @Deactivate
+    public void deactivate() {
+        execTransformationWhitelistWatchService.removeWhitelistListener(whitelistListener);
+        coProcessPools.values().forEach(ExecCoProcessPool::close);
+        coProcessPools.clear();
+    }
+
+    /**
+     * Stops the co-processes of the command lines that are not whitelisted anymore. Calls that are waiting for them
+     * fail.
+     */
+    private void pruneCoProcessPools() {
+        coProcessPools.entrySet().removeIf(entry -> {
+            if (execTransformationWhitelistWatchService.isWhitelisted(entry.getKey())) {
+                return false;
+            }
+            logger.debug("'{}' is not whitelisted anymore, stopping its co-processes", entry.getKey());
+            entry.getValue().close();
+            return true;
+        });
     }
 
     /**
      * Transforms the input <code>source</code> by the command line.
      *
      * @param commandLine the command to execute. Command line should contain %s string, which will be replaced by the
-     *            input data.
+     *            input data. A command line that starts with 'coprocess:' is started once and kept running, and
+     *            the input data is written to its standard input instead, see {@link ExecCoProcess}.
      * @param source the input to transform
      */
     @Override
@@ -65,9 +101,16 @@ public class ExecTransformationService implements TransformationService {
 
         long startTime = System.currentTimeMillis();
 
-        String formattedCommandLine = String.format(commandLine, source);
-        String result = ExecUtil.executeCommandLineAndWaitResponse(Duration.ofSeconds(5),
-                formattedCommandLine.split(" "));
+        @Nullable
+        String result;
+        if (commandLine.startsWith(CO_PROCESS_PREFIX)) {
+            ExecCoProcessPool pool = coProcessPools.computeIfAbsent(commandLine, key -> new ExecCoProcessPool(
+                    key.substring(CO_PROCESS_PREFIX.length()).trim(), MAX_CO_PROCESSES));
+            result = pool.call(source, TIMEOUT, TIMEOUT);
+        } else {
+            String formattedCommandLine = String.format(commandLine, source);
+            result = ExecUtil.executeCommandLineAndWaitResponse(TIMEOUT, formattedCommandLine.split(" "));
+        }
         logger.trace("command line execution elapsed {} ms", System.currentTimeMillis() - startTime);
 
         return result;
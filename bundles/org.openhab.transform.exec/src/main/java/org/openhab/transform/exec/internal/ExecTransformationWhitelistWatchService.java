@@ -23,6 +23,7 @@ import java.nio.file.WatchEvent;
 import java.nio.file.WatchEvent.Kind;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
 import org.eclipse.jdt.annotation.Nullable;
@@ -46,6 +47,7 @@ public class ExecTransformationWhitelistWatchService extends AbstractWatchServic
 
     private final Logger logger = LoggerFactory.getLogger(ExecTransformationWhitelistWatchService.class);
     private final Set<String> commandWhitelist = new HashSet<>();
+    private final Set<Runnable> listeners = new CopyOnWriteArraySet<>();
 
     @Activate
     public ExecTransformationWhitelistWatchService() {
@@ -73,9 +75,28 @@ public class ExecTransformationWhitelistWatchService extends AbstractWatchServic
             } catch (IOException e) {
                 logger.warn("Cannot read whitelist file, exec transformations won't be processed: {}", e.getMessage());
             }
+            listeners.forEach(Runnable::run);
         }
     }
 
+    /**
+     * Adds a listener that is notified after the whitelist has been reloaded
+     *
+     * @param listener the listener to add
+     */
+    public void addWhitelistListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added by {@link #addWhitelistListener(Runnable)}
+     *
+     * @param listener the listener to remove
+     */
+    public void removeWhitelistListener(Runnable listener) {
+        listeners.remove(listener);
+    }
+
     /**
      * Check if a command is whitelisted
      *
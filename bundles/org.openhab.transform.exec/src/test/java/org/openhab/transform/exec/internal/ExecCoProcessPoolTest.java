@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.exec.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openhab.core.transform.TransformationException;
+
+/**
+ * Runs real co-processes, a shell script echoes each line and sleeps first for lines like "sleep 1".
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+public class ExecCoProcessPoolTest {
+
+    private static final String SCRIPT = "while IFS= read -r line; do\n" //
+            + "  case \"$line\" in\n" //
+            + "    sleep\\ *) sleep \"${line#sleep }\" ;;\n" //
+            + "  esac\n" //
+            + "  echo \"$line\"\n" //
+            + "done\n";
+    private static final Duration LONG = Duration.ofSeconds(10);
+
+    private @TempDir File tempDir;
+    private ExecCoProcessPool pool;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private ExecCoProcessPool createPool(int maxSize) throws IOException {
+        File script = new File(tempDir, "coprocess.sh");
+        Files.write(script.toPath(), SCRIPT.getBytes(StandardCharsets.UTF_8));
+        pool = new ExecCoProcessPool("sh " + script.getAbsolutePath(), maxSize);
+        return pool;
+    }
+
+    private Future<String> callInBackground(String value) throws InterruptedException {
+        Future<String> result = executor.submit(() -> pool.call(value, LONG, LONG));
+        // give the call the time to take the process
+        Thread.sleep(200);
+        return result;
+    }
+
+    @Test
+    public void testCall() throws Exception {
+        pool = new ExecCoProcessPool("cat", 1);
+
+        assertEquals("value", pool.call("value", LONG, LONG));
+        assertEquals("two\nlines", pool.call("two\nlines", LONG, LONG));
+    }
+
+    @Test
+    public void testCallTimeoutRestartsProcess() throws Exception {
+        createPool(1);
+
+        assertThrows(TransformationException.class, () -> pool.call("sleep 10", LONG, Duration.ofMillis(200)));
+        assertEquals("value", pool.call("value", LONG, LONG));
+    }
+
+    @Test
+    public void testWaitDoesNotCountAgainstCallTimeout() throws Exception {
+        createPool(1);
+
+        Future<String> first = callInBackground("sleep 1");
+        // waits about 800 ms for the process and then needs 1000 ms for its own call
+        assertEquals("sleep 1", pool.call("sleep 1", LONG, Duration.ofMillis(1500)));
+        assertEquals("sleep 1", first.get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testWaitTimeoutKeepsBusyProcess() throws Exception {
+        createPool(1);
+
+        Future<String> first = callInBackground("sleep 1");
+        assertThrows(TransformationException.class, () -> pool.call("value", Duration.ofMillis(200), LONG));
+        assertEquals("sleep 1", first.get(10, TimeUnit.SECONDS));
+        assertEquals("value", pool.call("value", LONG, LONG));
+    }
+}
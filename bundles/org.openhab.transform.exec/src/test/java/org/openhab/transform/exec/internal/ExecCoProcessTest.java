@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.exec.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Karel Goderis - Initial contribution
+ */
+public class ExecCoProcessTest {
+
+    private static final String[] VALUES = { "", "plain", "two\nlines", "windows\r\nline", "back\\slash",
+            "trailing\\", "\\n is not a line break", "\n\r\\\\\n", "\\" };
+
+    @Test
+    public void testEscapeRoundTrip() {
+        for (String value : VALUES) {
+            String escaped = ExecCoProcess.escape(value);
+            assertFalse(escaped.contains("\n"), escaped);
+            assertFalse(escaped.contains("\r"), escaped);
+            assertEquals(value, ExecCoProcess.unescape(escaped));
+        }
+    }
+
+    @Test
+    public void testEscape() {
+        assertEquals("", ExecCoProcess.escape(""));
+        assertEquals("a\\nb", ExecCoProcess.escape("a\nb"));
+        assertEquals("a\\r\\nb", ExecCoProcess.escape("a\r\nb"));
+        assertEquals("a\\\\nb", ExecCoProcess.escape("a\\nb"));
+    }
+
+    @Test
+    public void testUnescape() {
+        assertEquals("", ExecCoProcess.unescape(""));
+        assertEquals("plain", ExecCoProcess.unescape("plain"));
+        assertEquals("a\nb", ExecCoProcess.unescape("a\\nb"));
+        assertEquals("a\\b", ExecCoProcess.unescape("a\\\\b"));
+        // a single trailing backslash is kept
+        assertEquals("a\\", ExecCoProcess.unescape("a\\"));
+    }
+}
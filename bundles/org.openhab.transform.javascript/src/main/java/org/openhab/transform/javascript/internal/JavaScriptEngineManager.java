@@ -13,13 +13,18 @@
 package org.openhab.transform.javascript.internal;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.script.Bindings;
 import javax.script.Compilable;
 import javax.script.CompiledScript;
 import javax.script.ScriptEngine;
@@ -27,55 +32,187 @@ import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
 import org.openhab.core.transform.TransformationException;
+import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
+import org.osgi.service.component.annotations.Modified;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Simple cache for compiled JavaScript files.
+ * Cache for compiled JavaScript files.
+ *
+ * Script engines are not safe for concurrent evaluation, so every file has a pool of engines with the script compiled
+ * on each of them. The pool grows on demand up to the configured size, which defaults to the number of processors, so
+ * that transformations run in parallel instead of waiting for a single engine.
  *
  * @author Thomas Kordelle - pre compiled scripts
+ * @author Karel Goderis - pooled script engines
  *
  */
 @NonNullByDefault
-@Component(service = JavaScriptEngineManager.class)
+@Component(service = JavaScriptEngineManager.class, configurationPid = "org.openhab.transform.javascript")
 public class JavaScriptEngineManager {
 
+    private static final String DEFAULT_ENGINE = "javascript";
+    private static final long POOL_WAIT_MILLIS = 50;
+
     private final Logger logger = LoggerFactory.getLogger(JavaScriptEngineManager.class);
     private final ScriptEngineManager manager = new ScriptEngineManager();
-    /* keep memory foot print low. max 2 concurrent threads are estimated */
-    private final Map<String, CompiledScript> compiledScriptMap = new ConcurrentHashMap<>(4, 0.5f, 2);
+    private final Map<String, ScriptPool> scriptPools = new ConcurrentHashMap<>();
+
+    private String engineName = DEFAULT_ENGINE;
+    private int poolSize = Runtime.getRuntime().availableProcessors();
 
     /**
-     * Get a pre compiled script {@link CompiledScript} from cache. If it is not in the cache, then load it from
-     * storage and put a pre compiled version into the cache.
-     *
-     * @param filename name of the JavaScript file to load
-     * @return a pre compiled script {@link CompiledScript}
-     * @throws TransformationException if compile of JavaScript failed
+     * The compiled versions of a single script, each on its own engine.
      */
-    protected CompiledScript getScript(final String filename) throws TransformationException {
-        synchronized (compiledScriptMap) {
-            CompiledScript compiledScript = compiledScriptMap.get(filename);
-            if (compiledScript != null) {
-                logger.debug("Loading JavaScript {} from cache.", filename);
-                return compiledScript;
-            } else {
-                final String path = TransformationScriptWatcher.TRANSFORM_FOLDER + File.separator + filename;
-                logger.debug("Loading script {} from storage ", path);
-                try (final Reader reader = new InputStreamReader(new FileInputStream(path))) {
-                    final ScriptEngine engine = manager.getEngineByName("javascript");
-                    final CompiledScript cScript = ((Compilable) engine).compile(reader);
-                    logger.debug("Putting compiled JavaScript {} to cache.", cScript);
-                    compiledScriptMap.put(filename, cScript);
-                    return cScript;
-                } catch (IOException | ScriptException e) {
-                    throw new TransformationException("An error occurred while loading JavaScript. " + e.getMessage(),
-                            e);
+    class ScriptPool {
+        private final String filename;
+        private final String script;
+        private final BlockingQueue<CompiledScript> idle = new LinkedBlockingQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final int maxSize;
+
+        private ScriptPool(String filename, String script, int maxSize) throws TransformationException {
+            this.filename = filename;
+            this.script = script;
+            this.maxSize = maxSize;
+            // compile once up front, so that errors in the script are reported before it is cached
+            size.incrementAndGet();
+            idle.add(compile());
+        }
+
+        private CompiledScript compile() throws TransformationException {
+            final ScriptEngine engine = manager.getEngineByName(engineName);
+            if (!(engine instanceof Compilable)) {
+                throw new TransformationException("No JavaScript engine '" + engineName + "' available.");
+            }
+            try {
+                return ((Compilable) engine).compile(script);
+            } catch (ScriptException e) {
+                throw new TransformationException("An error occurred while loading JavaScript. " + e.getMessage(), e);
+            }
+        }
+
+        private CompiledScript borrow() throws TransformationException {
+            try {
+                for (;;) {
+                    CompiledScript compiledScript = idle.poll();
+                    if (compiledScript != null) {
+                        return compiledScript;
+                    }
+                    if (size.incrementAndGet() <= maxSize) {
+                        logger.debug("Compiling JavaScript {} on engine {} of {}.", filename, size.get(), maxSize);
+                        try {
+                            return compile();
+                        } catch (TransformationException e) {
+                            size.decrementAndGet();
+                            throw e;
+                        }
+                    }
+                    size.decrementAndGet();
+                    compiledScript = idle.poll(POOL_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (compiledScript != null) {
+                        return compiledScript;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TransformationException("Interrupted while waiting for a JavaScript engine.", e);
+            }
+        }
+
+        private void release(CompiledScript compiledScript) {
+            idle.offer(compiledScript);
+        }
+
+        /**
+         * Returns the number of engines the script is compiled on.
+         */
+        int getSize() {
+            return size.get();
+        }
+    }
+
+    @Activate
+    @Modified
+    protected void modified(@Nullable Map<String, Object> config) {
+        String engine = DEFAULT_ENGINE;
+        int size = Runtime.getRuntime().availableProcessors();
+        if (config != null) {
+            Object engineParam = config.get("engine");
+            if (engineParam != null && !engineParam.toString().isBlank()) {
+                engine = engineParam.toString().trim();
+            }
+            Object poolSizeParam = config.get("poolSize");
+            if (poolSizeParam != null && !poolSizeParam.toString().isBlank()) {
+                try {
+                    size = Math.max(1, Integer.parseInt(poolSizeParam.toString().trim()));
+                } catch (NumberFormatException e) {
+                    logger.warn("Invalid poolSize '{}', using {}.", poolSizeParam, size);
                 }
             }
         }
+        if (manager.getEngineByName(engine) == null) {
+            logger.warn("JavaScript engine '{}' is not available, using '{}'.", engine, DEFAULT_ENGINE);
+            engine = DEFAULT_ENGINE;
+        }
+        engineName = engine;
+        poolSize = size;
+        scriptPools.clear();
+        logger.debug("Using JavaScript engine '{}' with up to {} instances per script.", engineName, poolSize);
+    }
+
+    /**
+     * Evaluates a script with the given input. The script is loaded from storage and compiled on first use.
+     *
+     * @param filename name of the JavaScript file to evaluate
+     * @param input the value of the 'input' variable of the script
+     * @return the result of the script
+     * @throws TransformationException if the script could not be loaded or compiled
+     * @throws ScriptException if the evaluation of the script failed
+     */
+    protected @Nullable Object eval(final String filename, final String input)
+            throws TransformationException, ScriptException {
+        ScriptPool pool = getScriptPool(filename);
+        CompiledScript compiledScript = pool.borrow();
+        try {
+            final Bindings bindings = compiledScript.getEngine().createBindings();
+            bindings.put("input", input);
+            return compiledScript.eval(bindings);
+        } finally {
+            pool.release(compiledScript);
+        }
+    }
+
+    ScriptPool getScriptPool(final String filename) throws TransformationException {
+        ScriptPool pool = scriptPools.get(filename);
+        if (pool != null) {
+            return pool;
+        }
+        synchronized (scriptPools) {
+            pool = scriptPools.get(filename);
+            if (pool != null) {
+                return pool;
+            }
+            final String path = getSourcePath() + filename;
+            logger.debug("Loading script {} from storage ", path);
+            try {
+                String script = new String(Files.readAllBytes(Paths.get(path)), Charset.defaultCharset());
+                pool = new ScriptPool(filename, script, poolSize);
+            } catch (IOException e) {
+                throw new TransformationException("An error occurred while loading JavaScript. " + e.getMessage(), e);
+            }
+            logger.debug("Putting compiled JavaScript {} to cache.", filename);
+            scriptPools.put(filename, pool);
+            return pool;
+        }
+    }
+
+    protected String getSourcePath() {
+        return TransformationScriptWatcher.TRANSFORM_FOLDER + File.separator;
     }
 
     /**
@@ -85,6 +222,6 @@ public class JavaScriptEngineManager {
      */
     protected void removeFromCache(String fileName) {
         logger.debug("Removing JavaScript {} from cache.", fileName);
-        compiledScriptMap.remove(fileName);
+        scriptPools.remove(fileName);
     }
 }
@@ -12,8 +12,6 @@
  */
 package org.openhab.transform.javascript.internal;
 
-import javax.script.Bindings;
-import javax.script.CompiledScript;
 import javax.script.ScriptException;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -31,6 +29,7 @@ import org.slf4j.LoggerFactory;
  *
  * @author Pauli Anttila - Initial contribution
  * @author Thomas Kordelle - pre compiled scripts
+ * @author Karel Goderis - pooled script engines
  */
 @NonNullByDefault
 @Component(property = { "smarthome.transform=JS" })
@@ -71,10 +70,7 @@ public class JavaScriptTransformationService implements TransformationService {
         String result = "";
 
         try {
-            final CompiledScript cScript = manager.getScript(filename);
-            final Bindings bindings = cScript.getEngine().createBindings();
-            bindings.put("input", source);
-            result = String.valueOf(cScript.eval(bindings));
+            result = String.valueOf(manager.eval(filename, source));
             return result;
         } catch (ScriptException e) {
             throw new TransformationException("An error occurred while executing script. " + e.getMessage(), e);
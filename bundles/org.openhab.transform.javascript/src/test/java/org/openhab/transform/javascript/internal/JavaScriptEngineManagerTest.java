@@ -0,0 +1,135 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.javascript.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Karel Goderis - Initial contribution
+ */
+public class JavaScriptEngineManagerTest {
+
+    private static final String BASE_FOLDER = "target";
+    private static final String SCRIPT = "test.js";
+    private static final int POOL_SIZE = 2;
+    private static final int THREADS = 8;
+    private static final int EVALUATIONS = 100;
+
+    private final TestableJavaScriptEngineManager manager = new TestableJavaScriptEngineManager();
+    private ExecutorService executor;
+
+    private class TestableJavaScriptEngineManager extends JavaScriptEngineManager {
+        @Override
+        protected String getSourcePath() {
+            return BASE_FOLDER + File.separator + super.getSourcePath();
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        executor = Executors.newFixedThreadPool(THREADS);
+        manager.modified(Map.of("poolSize", String.valueOf(POOL_SIZE)));
+        // the script sleeps a little, so that the evaluations overlap
+        writeScript("java.lang.Thread.sleep(5); input + '!'");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        Path folder = Paths.get(manager.getSourcePath());
+        if (Files.exists(folder)) {
+            try (Stream<Path> paths = Files.walk(folder)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private void writeScript(String script) throws IOException {
+        Path path = Paths.get(manager.getSourcePath() + SCRIPT);
+        Files.createDirectories(path.getParent());
+        Files.write(path, script.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void concurrentEvaluationsShouldReturnTheirOwnResult() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < EVALUATIONS; i++) {
+            String input = "value" + i;
+            results.add(executor.submit(() -> {
+                start.await();
+                return manager.eval(SCRIPT, input);
+            }));
+        }
+        start.countDown();
+
+        for (int i = 0; i < EVALUATIONS; i++) {
+            assertThat(results.get(i).get(10, TimeUnit.SECONDS), is("value" + i + "!"));
+        }
+    }
+
+    @Test
+    public void poolShouldNotGrowBeyondItsSize() throws Exception {
+        assertThat(manager.getScriptPool(SCRIPT).getSize(), is(1));
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Object>> results = new ArrayList<>();
+        for (int i = 0; i < EVALUATIONS; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return manager.eval(SCRIPT, "value");
+            }));
+        }
+        start.countDown();
+        for (Future<Object> result : results) {
+            result.get(10, TimeUnit.SECONDS);
+        }
+
+        assertThat(manager.getScriptPool(SCRIPT).getSize(), is(POOL_SIZE));
+    }
+
+    @Test
+    public void removedScriptShouldBeLoadedAgain() throws Exception {
+        assertThat(manager.eval(SCRIPT, "value"), is("value!"));
+
+        writeScript("input + '?'");
+        // the compiled script is used until it is removed from the cache
+        assertThat(manager.eval(SCRIPT, "value"), is("value!"));
+
+        manager.removeFromCache(SCRIPT);
+        assertThat(manager.eval(SCRIPT, "value"), is("value?"));
+        assertThat(manager.getScriptPool(SCRIPT).getSize(), is(1));
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.jinja.internal;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Binds a JSON tree to a template. Objects and arrays are exposed as read-only {@link Map} and {@link java.util.List}
+ * views of the tree, so that a value is only converted when the template accesses it.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+@NonNullByDefault
+public class LazyJson {
+
+    private LazyJson() {
+        // static utility
+    }
+
+    /**
+     * Converts a JSON node to the object that is bound to the template.
+     *
+     * @param node the JSON node
+     * @return a map view for objects, a list view for arrays, a {@link java.math.BigDecimal} for numbers, a String,
+     *         a Boolean or null
+     */
+    public static @Nullable Object toObject(JsonNode node) {
+        switch (node.getNodeType()) {
+            case ARRAY:
+                return new JsonArray(node);
+            case NUMBER:
+                return node.decimalValue();
+            case OBJECT:
+                return new JsonObject(node);
+            case STRING:
+                return node.asText();
+            case BOOLEAN:
+                return node.asBoolean();
+            case NULL:
+            default:
+                return null;
+        }
+    }
+
+    private static class JsonObject extends AbstractMap<String, @Nullable Object> {
+        private final JsonNode node;
+
+        private JsonObject(JsonNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public @Nullable Object get(@Nullable Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            JsonNode field = node.get((String) key);
+            return field == null ? null : toObject(field);
+        }
+
+        @Override
+        public boolean containsKey(@Nullable Object key) {
+            return key instanceof String && node.has((String) key);
+        }
+
+        @Override
+        public int size() {
+            return node.size();
+        }
+
+        @Override
+        public Set<Map.Entry<String, @Nullable Object>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Map.Entry<String, @Nullable Object>> iterator() {
+                    Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+                    return new Iterator<>() {
+                        @Override
+                        public boolean hasNext() {
+                            return fields.hasNext();
+                        }
+
+                        @Override
+                        public Map.Entry<String, @Nullable Object> next() {
+                            Map.Entry<String, JsonNode> field = fields.next();
+                            return new AbstractMap.SimpleImmutableEntry<>(field.getKey(),
+                                    toObject(field.getValue()));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return node.size();
+                }
+            };
+        }
+    }
+
+    private static class JsonArray extends AbstractList<@Nullable Object> {
+        private final JsonNode node;
+
+        private JsonArray(JsonNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public @Nullable Object get(int index) {
+            if (index < 0 || index >= node.size()) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + node.size());
+            }
+            return toObject(node.get(index));
+        }
+
+        @Override
+        public int size() {
+            return node.size();
+        }
+    }
+}
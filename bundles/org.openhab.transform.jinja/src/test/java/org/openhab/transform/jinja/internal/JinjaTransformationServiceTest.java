@@ -59,4 +59,22 @@ public class JinjaTransformationServiceTest {
         // Asserts
         assertEquals("Hello world!", transformedResponse);
     }
+
+    @Test
+    public void testTemplateIsReused() throws TransformationException {
+        String template = "{{value_json.state}}";
+
+        assertEquals("ON", processor.transform(template, "{\"state\":\"ON\"}"));
+        assertEquals("OFF", processor.transform(template, "{\"state\":\"OFF\"}"));
+    }
+
+    @Test
+    public void testJsonArray() throws TransformationException {
+        String json = "{\"readings\":[1,{\"name\":\"b\"},3],\"valid\":true}";
+
+        assertEquals("b", processor.transform("{{value_json.readings[1].name}}", json));
+        assertEquals("3", processor.transform("{{value_json['readings']|length}}", json));
+        assertEquals("123", processor.transform("{% for v in value_json.readings %}{{loop.index}}{% endfor %}", json));
+        assertEquals("yes", processor.transform("{{'yes' if value_json.valid else 'no'}}", json));
+    }
 }
@@ -12,7 +12,9 @@
  */
 package org.openhab.transform.jsonpath.internal;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -24,6 +26,7 @@ import org.osgi.service.component.annotations.Component;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.jayway.jsonpath.Configuration;
 import com.jayway.jsonpath.InvalidJsonException;
 import com.jayway.jsonpath.InvalidPathException;
 import com.jayway.jsonpath.JsonPath;
@@ -43,6 +46,34 @@ public class JSonPathTransformationService implements TransformationService {
 
     private final Logger logger = LoggerFactory.getLogger(JSonPathTransformationService.class);
 
+    private static final int MAX_CACHED_PATHS = 256;
+    private static final int MAX_CACHED_DOCUMENTS = 8;
+
+    /**
+     * The compiled expressions by their JsonPath expression, least recently used first
+     */
+    private final Map<String, JsonPath> pathCache = new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, JsonPath> eldest) {
+            return size() > MAX_CACHED_PATHS;
+        }
+    };
+
+    /**
+     * The most recently parsed documents by their source. All the channels fed by the same payload are transformed
+     * shortly after each other, so they can share a single parse of the payload.
+     */
+    private final Map<String, Object> documentCache = new LinkedHashMap<>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+            return size() > MAX_CACHED_DOCUMENTS;
+        }
+    };
+
     /**
      * Transforms the input <code>source</code> by JSonPath expression.
      *
@@ -60,7 +91,7 @@ public class JSonPathTransformationService implements TransformationService {
         logger.debug("about to transform '{}' by the function '{}'", source, jsonPathExpression);
 
         try {
-            Object transformationResult = JsonPath.read(source, jsonPathExpression);
+            Object transformationResult = getJsonPath(jsonPathExpression).read(getDocument(source));
             logger.debug("transformation resulted in '{}'", transformationResult);
             if (transformationResult == null) {
                 return null;
@@ -76,6 +107,32 @@ public class JSonPathTransformationService implements TransformationService {
         }
     }
 
+    private JsonPath getJsonPath(String jsonPathExpression) {
+        synchronized (pathCache) {
+            JsonPath jsonPath = pathCache.get(jsonPathExpression);
+            if (jsonPath == null) {
+                jsonPath = JsonPath.compile(jsonPathExpression);
+                pathCache.put(jsonPathExpression, jsonPath);
+            }
+            return jsonPath;
+        }
+    }
+
+    private Object getDocument(String source) {
+        synchronized (documentCache) {
+            Object document = documentCache.get(source);
+            if (document != null) {
+                return document;
+            }
+        }
+        // parse outside of the lock, the documents are only read from afterwards
+        Object document = Configuration.defaultConfiguration().jsonProvider().parse(source);
+        synchronized (documentCache) {
+            documentCache.put(source, document);
+        }
+        return document;
+    }
+
     private String flattenList(List<?> list) {
         if (list.size() == 1) {
             return list.get(0).toString();
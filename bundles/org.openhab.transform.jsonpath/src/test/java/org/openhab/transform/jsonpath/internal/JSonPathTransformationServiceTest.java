@@ -57,6 +57,16 @@ public class JSonPathTransformationServiceTest {
         assertEquals("2", transformedResponse);
     }
 
+    @Test
+    public void testSharedDocument() throws TransformationException {
+        // the channels fed by the same payload share its parse
+        assertEquals("bob", processor.transform("$[0].name", jsonArray));
+        assertEquals("alice", processor.transform("$[1].name", jsonArray));
+        assertEquals("1", processor.transform("$[0].id", new String(jsonArray)));
+        assertEquals("3", processor.transform("$[0].id", "[{ \"id\":3 }]"));
+        assertEquals("bob", processor.transform("$[0].name", jsonArray));
+    }
+
     @Test
     public void testInvalidPathThrowsException() {
         assertThrows(TransformationException.class, () -> processor.transform("$$", jsonArray));
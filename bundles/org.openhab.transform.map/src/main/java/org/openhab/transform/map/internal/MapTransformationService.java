@@ -14,6 +14,8 @@ package org.openhab.transform.map.internal;
 
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 import org.openhab.core.transform.AbstractFileTransformationService;
@@ -29,9 +31,10 @@ import org.slf4j.LoggerFactory;
  *
  * @author Kai Kreuzer - Initial contribution and API
  * @author Gaël L'hopital - Make it localizable
+ * @author Karel Goderis - Unsynchronized lookup map
  */
 @Component(service = TransformationService.class, property = { "smarthome.transform=MAP" })
-public class MapTransformationService extends AbstractFileTransformationService<Properties> {
+public class MapTransformationService extends AbstractFileTransformationService<Map<String, String>> {
 
     private final Logger logger = LoggerFactory.getLogger(MapTransformationService.class);
 
@@ -41,15 +44,15 @@ public class MapTransformationService extends AbstractFileTransformationService<
      * a file which is stored under the 'configurations/transform' folder. This file should be in property syntax, i.e.
      * simple lines with "key=value" pairs. To organize the various transformations one might use subfolders.
      *
-     * @param properties the list of properties which contains the key value pairs for the mapping.
+     * @param mappings the key value pairs for the mapping.
      * @param source the input to transform
      */
     @Override
-    protected String internalTransform(Properties properties, String source) throws TransformationException {
-        String target = properties.getProperty(source);
+    protected String internalTransform(Map<String, String> mappings, String source) throws TransformationException {
+        String target = mappings.get(source);
 
         if (target == null) {
-            target = properties.getProperty("");
+            target = mappings.get("");
             if (target == null) {
                 throw new TransformationException("Target value not found in map for '" + source + "'");
             }
@@ -59,11 +62,19 @@ public class MapTransformationService extends AbstractFileTransformationService<
         return target;
     }
 
+    /**
+     * Loads the mappings into a plain map. {@link Properties} is a synchronized {@link java.util.Hashtable}, whereas the
+     * loaded mappings are never modified and can be read concurrently without locking.
+     */
     @Override
-    protected Properties internalLoadTransform(String filename) throws TransformationException {
-        Properties result = new Properties();
+    protected Map<String, String> internalLoadTransform(String filename) throws TransformationException {
+        Properties properties = new Properties();
         try (FileReader reader = new FileReader(filename)) {
-            result.load(reader);
+            properties.load(reader);
+            Map<String, String> result = new HashMap<>(properties.size() * 4 / 3 + 1);
+            for (String key : properties.stringPropertyNames()) {
+                result.put(key, properties.getProperty(key));
+            }
             return result;
         } catch (IOException e) {
             throw new TransformationException("An error occurred while opening file.", e);
@@ -75,4 +75,14 @@ public class RegExTransformationServiceTest extends AbstractTransformationServic
         // Asserts
         assertEquals("varX=12 varY=54 ", transformedResponse);
     }
+
+    @Test
+    public void testTransformByRegex_cachedExpression() throws TransformationException {
+        // the compiled expressions are reused for other content
+        assertEquals("42", processor.transform("value=(\\d+)", "value=42"));
+        assertEquals("43", processor.transform("value=(\\d+)", " value=43 "));
+        assertNull(processor.transform("value=(\\d+)", "value=x"));
+        assertEquals("a-b", processor.transform("s/_/-/g", "a_b"));
+        assertEquals("c-d", processor.transform("s/_/-/g", "c_d"));
+    }
 }
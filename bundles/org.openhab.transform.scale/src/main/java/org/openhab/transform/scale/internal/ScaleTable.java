@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.scale.internal;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Immutable lookup structure for the ranges of a scale file.
+ *
+ * The bounds of all ranges split the number line into segments: the open intervals between two consecutive bounds and
+ * the bounds themselves. Every range either contains a whole segment or none of it, so the label of the first range in
+ * file order that matches is resolved once per segment when the table is built. A lookup is then a binary search of
+ * the value in the sorted bounds.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+@NonNullByDefault
+public class ScaleTable {
+
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+
+    private final BigDecimal[] bounds;
+    private final @Nullable String[] labels;
+    private final String format;
+    private final @Nullable String nonNumeric;
+
+    private ScaleTable(BigDecimal[] bounds, @Nullable String[] labels, String format, @Nullable String nonNumeric) {
+        this.bounds = bounds;
+        this.labels = labels;
+        this.format = format;
+        this.nonNumeric = nonNumeric;
+    }
+
+    /**
+     * Builds the table.
+     *
+     * @param ranges the ranges and their labels, in the order of the scale file
+     * @param format the presentation format
+     * @param nonNumeric the label for non numeric values, or null if there is none
+     * @return the table
+     */
+    public static ScaleTable build(LinkedHashMap<Range, String> ranges, String format, @Nullable String nonNumeric) {
+        TreeSet<BigDecimal> sortedBounds = new TreeSet<>();
+        for (Range range : ranges.keySet()) {
+            if (range.min != null) {
+                sortedBounds.add(range.min);
+            }
+            if (range.max != null) {
+                sortedBounds.add(range.max);
+            }
+        }
+        BigDecimal[] bounds = sortedBounds.toArray(new BigDecimal[0]);
+
+        // segment 2 * i + 1 is bounds[i], segment 2 * i is the open interval below it
+        @Nullable
+        String[] labels = new String[2 * bounds.length + 1];
+        for (int segment = 0; segment < labels.length; segment++) {
+            BigDecimal representative = representative(bounds, segment);
+            for (Map.Entry<Range, String> entry : ranges.entrySet()) {
+                if (entry.getKey().contains(representative)) {
+                    labels[segment] = entry.getValue();
+                    break;
+                }
+            }
+        }
+        return new ScaleTable(bounds, labels, format, nonNumeric);
+    }
+
+    private static BigDecimal representative(BigDecimal[] bounds, int segment) {
+        if (bounds.length == 0) {
+            return BigDecimal.ZERO;
+        }
+        int index = segment / 2;
+        if (segment % 2 == 1) {
+            return bounds[index];
+        } else if (index == 0) {
+            return bounds[0].subtract(BigDecimal.ONE);
+        } else if (index == bounds.length) {
+            return bounds[index - 1].add(BigDecimal.ONE);
+        } else {
+            return bounds[index - 1].add(bounds[index]).divide(TWO);
+        }
+    }
+
+    /**
+     * @param value the value to look up
+     * @return the label of the first range that contains the value, or null if there is none
+     */
+    public @Nullable String lookup(BigDecimal value) {
+        int index = Arrays.binarySearch(bounds, value);
+        return labels[index >= 0 ? 2 * index + 1 : -2 * (index + 1)];
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public @Nullable String getNonNumeric() {
+        return nonNumeric;
+    }
+}
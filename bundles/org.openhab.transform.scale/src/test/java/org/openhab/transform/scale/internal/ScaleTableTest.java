@@ -0,0 +1,81 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.scale.internal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * @author Karel Goderis - Initial contribution
+ */
+public class ScaleTableTest {
+
+    private static String linearLookup(Map<Range, String> ranges, BigDecimal value) {
+        for (Map.Entry<Range, String> entry : ranges.entrySet()) {
+            if (entry.getKey().contains(value)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testBounds() {
+        LinkedHashMap<Range, String> ranges = new LinkedHashMap<>();
+        ranges.put(Range.lessThan(BigDecimal.TEN), "low");
+        ranges.put(Range.closedOpen(BigDecimal.TEN, new BigDecimal(20)), "middle");
+        ranges.put(Range.openClosed(new BigDecimal(20), new BigDecimal(30)), "high");
+        ScaleTable table = ScaleTable.build(ranges, "%label%", null);
+
+        assertEquals("low", table.lookup(new BigDecimal("9.99")));
+        assertEquals("middle", table.lookup(new BigDecimal("10.0")));
+        assertEquals("middle", table.lookup(new BigDecimal("19.99")));
+        assertNull(table.lookup(new BigDecimal(20)));
+        assertEquals("high", table.lookup(new BigDecimal("20.001")));
+        assertEquals("high", table.lookup(new BigDecimal(30)));
+        assertNull(table.lookup(new BigDecimal("30.5")));
+    }
+
+    @Test
+    public void testEmptyAndCatchAll() {
+        assertNull(ScaleTable.build(new LinkedHashMap<>(), "%label%", null).lookup(BigDecimal.ONE));
+
+        LinkedHashMap<Range, String> ranges = new LinkedHashMap<>();
+        ranges.put(Range.all(), "catchall");
+        assertEquals("catchall", ScaleTable.build(ranges, "%label%", null).lookup(new BigDecimal(-1000)));
+    }
+
+    @Test
+    public void testSameResultAsLinearScan() {
+        Random random = new Random(42);
+        for (int run = 0; run < 50; run++) {
+            LinkedHashMap<Range, String> ranges = new LinkedHashMap<>();
+            for (int i = 0; i < 20; i++) {
+                BigDecimal low = random.nextInt(5) == 0 ? null : BigDecimal.valueOf(random.nextInt(100) - 50, 1);
+                BigDecimal high = random.nextInt(5) == 0 ? null : BigDecimal.valueOf(random.nextInt(100) - 50, 1);
+                ranges.put(Range.range(low, random.nextBoolean(), high, random.nextBoolean()), "label" + i);
+            }
+            ScaleTable table = ScaleTable.build(ranges, "%label%", null);
+            for (int i = -600; i <= 600; i++) {
+                BigDecimal value = BigDecimal.valueOf(i, 2);
+                assertEquals(linearLookup(ranges, value), table.lookup(value), "value " + value);
+            }
+        }
+    }
+}
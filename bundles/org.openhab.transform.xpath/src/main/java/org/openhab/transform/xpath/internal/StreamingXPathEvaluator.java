@@ -0,0 +1,176 @@
+/**
+ * Copyright (c) 2010-2020 Contributors to the openHAB project
+ *
+ * See the NOTICE file(s) distributed with this work for additional
+ * information.
+ *
+ * This program and the accompanying materials are made available under the
+ * terms of the Eclipse Public License 2.0 which is available at
+ * http://www.eclipse.org/legal/epl-2.0
+ *
+ * SPDX-License-Identifier: EPL-2.0
+ */
+package org.openhab.transform.xpath.internal;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.eclipse.jdt.annotation.NonNullByDefault;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Evaluates simple XPath expressions on a stream of XML events, without building a DOM of the document. The reading
+ * stops as soon as the result is known.
+ *
+ * The supported expressions are location paths of element names with the child and descendant axes, optionally
+ * ending with an attribute, such as <code>/status/power</code>, <code>//current_conditions/temp_c/@data</code> or
+ * <code>/a//b</code>. The result is the string value of the first matching node in document order, or an empty string
+ * if no node matches, like the XPath string() function.
+ *
+ * @author Karel Goderis - Initial contribution
+ */
+@NonNullByDefault
+public class StreamingXPathEvaluator {
+
+    private static final String NAME = "[A-Za-z_][A-Za-z0-9_.\\-]*";
+    private static final Pattern SIMPLE_PATH = Pattern.compile("^(?://?" + NAME + ")+(?:/@" + NAME + ")?$");
+    private static final Pattern STEP = Pattern.compile("(//?)(@?" + NAME + ")");
+
+    private final String[] names;
+    private final boolean[] descendant;
+    private final @Nullable String attribute;
+
+    private StreamingXPathEvaluator(String[] names, boolean[] descendant, @Nullable String attribute) {
+        this.names = names;
+        this.descendant = descendant;
+        this.attribute = attribute;
+    }
+
+    /**
+     * Compiles the expression, if it is simple enough to be evaluated on a stream.
+     *
+     * @param expression the XPath expression
+     * @return the evaluator, or null if the expression is not supported
+     */
+    public static @Nullable StreamingXPathEvaluator compile(String expression) {
+        String trimmed = expression.trim();
+        if (!SIMPLE_PATH.matcher(trimmed).matches()) {
+            return null;
+        }
+        List<String> names = new ArrayList<>();
+        List<Boolean> descendant = new ArrayList<>();
+        String attribute = null;
+        Matcher matcher = STEP.matcher(trimmed);
+        while (matcher.find()) {
+            String name = matcher.group(2);
+            if (name.startsWith("@")) {
+                attribute = name.substring(1);
+            } else {
+                names.add(name);
+                descendant.add(matcher.group(1).length() == 2);
+            }
+        }
+        boolean[] descendantSteps = new boolean[descendant.size()];
+        for (int i = 0; i < descendantSteps.length; i++) {
+            descendantSteps[i] = descendant.get(i);
+        }
+        return new StreamingXPathEvaluator(names.toArray(new String[0]), descendantSteps, attribute);
+    }
+
+    /**
+     * Evaluates the expression on the document.
+     *
+     * @param factory the factory to create the stream reader with
+     * @param source the XML document
+     * @return the string value of the first matching node, or an empty string
+     * @throws XMLStreamException if the document could not be read up to the first matching node
+     */
+    public String evaluate(XMLInputFactory factory, String source) throws XMLStreamException {
+        XMLStreamReader reader = factory.createXMLStreamReader(new StringReader(source));
+        try {
+            List<String> path = new ArrayList<>();
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String namespace = reader.getNamespaceURI();
+                    // unprefixed names only match elements without a namespace
+                    path.add(namespace == null || namespace.isEmpty() ? reader.getLocalName() : "");
+                    if (matches(path, 0, 0)) {
+                        String result = attribute == null ? readElementText(reader) : getAttribute(reader);
+                        if (result != null) {
+                            return result;
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    path.remove(path.size() - 1);
+                }
+            }
+            return "";
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Checks whether the element path from index pathIndex on matches the steps from index stepIndex on.
+     */
+    private boolean matches(List<String> path, int pathIndex, int stepIndex) {
+        if (stepIndex == names.length) {
+            return pathIndex == path.size();
+        }
+        if (pathIndex == path.size()) {
+            return false;
+        }
+        if (descendant[stepIndex]) {
+            for (int i = pathIndex; i < path.size(); i++) {
+                if (names[stepIndex].equals(path.get(i)) && matches(path, i + 1, stepIndex + 1)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return names[stepIndex].equals(path.get(pathIndex)) && matches(path, pathIndex + 1, stepIndex + 1);
+    }
+
+    private @Nullable String getAttribute(XMLStreamReader reader) {
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            String namespace = reader.getAttributeNamespace(i);
+            if ((namespace == null || namespace.isEmpty()) && reader.getAttributeLocalName(i).equals(attribute)) {
+                return reader.getAttributeValue(i);
+            }
+        }
+        return null;
+    }
+
+    private String readElementText(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            int event = reader.next();
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    depth--;
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    text.append(reader.getText());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return text.toString();
+    }
+}
@@ -13,12 +13,19 @@
 package org.openhab.transform.xpath.internal;
 
 import java.io.StringReader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
 import javax.xml.xpath.XPathFactory;
 
 import org.eclipse.jdt.annotation.NonNullByDefault;
@@ -43,6 +50,58 @@ public class XPathTransformationService implements TransformationService {
 
     private final Logger logger = LoggerFactory.getLogger(XPathTransformationService.class);
 
+    private static final int MAX_CACHED_EXPRESSIONS = 64;
+    private static final int MAX_POOLED_EVALUATORS = 8;
+
+    /**
+     * A set of parsers and compiled expressions. Neither the JAXP factories and builders nor the compiled expressions
+     * are thread-safe, so each transformation borrows a set from the pool and returns it afterwards.
+     */
+    private static class Evaluators {
+        private final DocumentBuilder builder;
+        private final XPath xpath;
+        private final XMLInputFactory inputFactory;
+
+        /**
+         * The compiled expressions by their XPath expression, either a {@link StreamingXPathEvaluator} or an
+         * {@link XPathExpression}, least recently used first
+         */
+        private final Map<String, Object> expressions = new LinkedHashMap<>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                return size() > MAX_CACHED_EXPRESSIONS;
+            }
+        };
+
+        private Evaluators() throws ParserConfigurationException {
+            DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
+            domFactory.setNamespaceAware(true);
+            domFactory.setValidating(false);
+            builder = domFactory.newDocumentBuilder();
+            xpath = XPathFactory.newInstance().newXPath();
+            inputFactory = XMLInputFactory.newInstance();
+            inputFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+            inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        }
+
+        private Object getExpression(String xpathExpression) throws XPathExpressionException {
+            Object expression = expressions.get(xpathExpression);
+            if (expression == null) {
+                expression = StreamingXPathEvaluator.compile(xpathExpression);
+                if (expression == null) {
+                    expression = xpath.compile(xpathExpression);
+                }
+                expressions.put(xpathExpression, expression);
+            }
+            return expression;
+        }
+    }
+
+    // the idle evaluators, unlike thread locals they do not outlive the service on the threads that used them
+    private final BlockingQueue<Evaluators> evaluators = new ArrayBlockingQueue<>(MAX_POOLED_EVALUATORS);
+
     @Override
     public @Nullable String transform(String xpathExpression, String source) throws TransformationException {
         if (xpathExpression == null || source == null) {
@@ -51,24 +110,24 @@ public class XPathTransformationService implements TransformationService {
 
         logger.debug("about to transform '{}' by the function '{}'", source, xpathExpression);
 
-        StringReader stringReader = null;
-
+        @Nullable Evaluators borrowed = null;
         try {
-            DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
-            domFactory.setNamespaceAware(true);
-            domFactory.setValidating(false);
-            DocumentBuilder builder = domFactory.newDocumentBuilder();
-
-            stringReader = new StringReader(source);
-            InputSource inputSource = new InputSource(stringReader);
-            inputSource.setEncoding("UTF-8");
+            borrowed = borrowEvaluators();
+            Object expression = borrowed.getExpression(xpathExpression);
 
-            Document doc = builder.parse(inputSource);
+            String transformationResult;
+            if (expression instanceof StreamingXPathEvaluator) {
+                transformationResult = ((StreamingXPathEvaluator) expression).evaluate(borrowed.inputFactory, source);
+            } else {
+                InputSource inputSource = new InputSource(new StringReader(source));
+                inputSource.setEncoding("UTF-8");
 
-            XPath xpath = XPathFactory.newInstance().newXPath();
-            XPathExpression expr = xpath.compile(xpathExpression);
+                DocumentBuilder builder = borrowed.builder;
+                builder.reset();
+                Document doc = builder.parse(inputSource);
 
-            String transformationResult = (String) expr.evaluate(doc, XPathConstants.STRING);
+                transformationResult = (String) ((XPathExpression) expression).evaluate(doc, XPathConstants.STRING);
+            }
 
             logger.debug("transformation resulted in '{}'", transformationResult);
 
@@ -76,9 +135,15 @@ public class XPathTransformationService implements TransformationService {
         } catch (Exception e) {
             throw new TransformationException("transformation throws exceptions", e);
         } finally {
-            if (stringReader != null) {
-                stringReader.close();
+            if (borrowed != null) {
+                // dropped if the pool is full, e.g. after a burst of concurrent transformations
+                evaluators.offer(borrowed);
             }
         }
     }
+
+    private Evaluators borrowEvaluators() throws ParserConfigurationException {
+        Evaluators idleEvaluators = evaluators.poll();
+        return idleEvaluators != null ? idleEvaluators : new Evaluators();
+    }
 }
@@ -14,9 +14,17 @@ package org.openhab.transform.xpath.internal;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.StringReader;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathFactory;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.openhab.core.transform.TransformationException;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
 
 /**
  * @author Thomas.Eichstaedt-Engelen
@@ -38,4 +46,29 @@ public class XPathTransformationServiceTest extends AbstractTransformationServic
         // Asserts
         assertEquals("8", transformedResponse);
     }
+
+    @Test
+    public void testStreamingEvaluationMatchesDom() throws Exception {
+        String xml = "<?xml version=\"1.0\"?><status><zone id=\"1\"><power>on</power><volume>-30.5</volume></zone>"
+                + "<zone id=\"2\"><power>off</power><name><![CDATA[Living & Dining]]></name></zone>"
+                + "<ns:info xmlns:ns=\"urn:test\"><power>standby</power></ns:info><text>a<b>b</b>c</text></status>";
+        String[] expressions = { "/status/zone/power", "//zone/volume", "//power", "/status/zone/@id", "//name",
+                "/status//power", "//text", "//missing", "//zone/@missing", "/zone/power", "/status/zone[2]/power",
+                "count(//zone)" };
+
+        DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
+        domFactory.setNamespaceAware(true);
+        Document doc = domFactory.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
+        XPath xpath = XPathFactory.newInstance().newXPath();
+
+        for (String expression : expressions) {
+            assertEquals(xpath.evaluate(expression, doc), processor.transform(expression, xml), expression);
+        }
+    }
+
+    @Test
+    public void testInvalidXmlThrowsException() {
+        assertThrows(TransformationException.class, () -> processor.transform("//power", "<status><power>"));
+        assertThrows(TransformationException.class, () -> processor.transform("//power[", "<power>on</power>"));
+    }
 }